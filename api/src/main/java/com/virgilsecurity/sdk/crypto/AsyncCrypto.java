@@ -0,0 +1,460 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.virgilsecurity.sdk.exception.NullArgumentException;
+
+/**
+ * Runs {@link Crypto} operations on a dedicated bounded thread pool, so callers (e.g. I/O threads) don't block on
+ * slow operations like RSA decryption.
+ * 
+ * At most {@code threads} operations run at the same time and at most {@code queueCapacity} operations wait for a
+ * thread. When both are exhausted, new operations are handled according to {@link SaturationPolicy}. Operation
+ * exceptions are reported by {@link Future#get()} as {@link java.util.concurrent.ExecutionException}.
+ * 
+ * The wrapped {@code Crypto} is called from several threads, so it should be thread-safe.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class AsyncCrypto {
+
+    /**
+     * Defines how new operations are handled when all threads are busy and the queue is full.
+     */
+    public enum SaturationPolicy {
+        /** Throw {@link RejectedExecutionException}. */
+        REJECT,
+        /** Block the caller until a queue slot is available. */
+        BLOCK
+    }
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final Crypto crypto;
+    private final int threads;
+    private final int queueCapacity;
+    private final SaturationPolicy saturationPolicy;
+    private final Semaphore permits;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Create a new instance of {@code AsyncCrypto} which rejects operations when saturated.
+     *
+     * @param crypto
+     *            the crypto which performs operations.
+     * @param threads
+     *            the maximum number of concurrently running operations.
+     * @param queueCapacity
+     *            the maximum number of operations waiting for a thread.
+     */
+    public AsyncCrypto(Crypto crypto, int threads, int queueCapacity) {
+        this(crypto, threads, queueCapacity, SaturationPolicy.REJECT);
+    }
+
+    /**
+     * Create a new instance of {@code AsyncCrypto}.
+     *
+     * @param crypto
+     *            the crypto which performs operations.
+     * @param threads
+     *            the maximum number of concurrently running operations.
+     * @param queueCapacity
+     *            the maximum number of operations waiting for a thread.
+     * @param saturationPolicy
+     *            defines how new operations are handled when all threads are busy and the queue is full.
+     */
+    public AsyncCrypto(Crypto crypto, int threads, int queueCapacity, SaturationPolicy saturationPolicy) {
+        if (crypto == null) {
+            throw new NullArgumentException("crypto");
+        }
+        if (saturationPolicy == null) {
+            throw new NullArgumentException("saturationPolicy");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads");
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("queueCapacity");
+        }
+        this.crypto = crypto;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.saturationPolicy = saturationPolicy;
+
+        // Permits bound the queue, so the executor queue itself could be unbounded
+        this.permits = new Semaphore(threads + queueCapacity);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new CryptoThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Encrypt data asynchronously.
+     * 
+     * @param data
+     *            the data to be encrypted.
+     * @param recipient
+     *            the recipient's public key.
+     * @return the future with operation result.
+     * @throws RejectedExecutionException
+     *             if operation is rejected because of saturation or shutdown.
+     * 
+     * @see Crypto#encrypt(byte[], PublicKey)
+     */
+    public Future<byte[]> encrypt(final byte[] data, final PublicKey recipient) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return crypto.encrypt(data, recipient);
+            }
+        });
+    }
+
+    /**
+     * Encrypt data asynchronously.
+     * 
+     * @param data
+     *            the data to be encrypted.
+     * @param recipients
+     *            the recipients' public keys.
+     * @return the future with operation result.
+     * @throws RejectedExecutionException
+     *             if operation is rejected because of saturation or shutdown.
+     * 
+     * @see Crypto#encrypt(byte[], PublicKey[])
+     */
+    public Future<byte[]> encrypt(final byte[] data, final PublicKey[] recipients) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return crypto.encrypt(data, recipients);
+            }
+        });
+    }
+
+    /**
+     * Decrypt data asynchronously.
+     * 
+     * @param data
+     *            the encrypted data.
+     * @param privateKey
+     *            the private key.
+     * @return the future with operation result.
+     * @throws RejectedExecutionException
+     *             if operation is rejected because of saturation or shutdown.
+     * 
+     * @see Crypto#decrypt(byte[], PrivateKey)
+     */
+    public Future<byte[]> decrypt(final byte[] data, final PrivateKey privateKey) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return crypto.decrypt(data, privateKey);
+            }
+        });
+    }
+
+    /**
+     * Sign data asynchronously.
+     * 
+     * @param data
+     *            the data to be signed.
+     * @param privateKey
+     *            the private key.
+     * @return the future with operation result.
+     * @throws RejectedExecutionException
+     *             if operation is rejected because of saturation or shutdown.
+     * 
+     * @see Crypto#sign(byte[], PrivateKey)
+     */
+    public Future<byte[]> sign(final byte[] data, final PrivateKey privateKey) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return crypto.sign(data, privateKey);
+            }
+        });
+    }
+
+    /**
+     * Verify signature asynchronously.
+     * 
+     * @param data
+     *            the signed data.
+     * @param signature
+     *            the signature.
+     * @param signer
+     *            the signer's public key.
+     * @return the future with verification result.
+     * @throws RejectedExecutionException
+     *             if operation is rejected because of saturation or shutdown.
+     * 
+     * @see Crypto#verify(byte[], byte[], PublicKey)
+     */
+    public Future<Boolean> verify(final byte[] data, final byte[] signature, final PublicKey signer) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return crypto.verify(data, signature, signer);
+            }
+        });
+    }
+
+    /**
+     * Sign then encrypt data asynchronously.
+     * 
+     * @param data
+     *            the data to be signed and encrypted.
+     * @param privateKey
+     *            the private key.
+     * @param recipient
+     *            the recipient's public key.
+     * @return the future with operation result.
+     * @throws RejectedExecutionException
+     *             if operation is rejected because of saturation or shutdown.
+     * 
+     * @see Crypto#signThenEncrypt(byte[], PrivateKey, PublicKey)
+     */
+    public Future<byte[]> signThenEncrypt(final byte[] data, final PrivateKey privateKey, final PublicKey recipient) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return crypto.signThenEncrypt(data, privateKey, recipient);
+            }
+        });
+    }
+
+    /**
+     * Sign then encrypt data asynchronously.
+     * 
+     * @param data
+     *            the data to be signed and encrypted.
+     * @param privateKey
+     *            the private key.
+     * @param recipients
+     *            the recipients' public keys.
+     * @return the future with operation result.
+     * @throws RejectedExecutionException
+     *             if operation is rejected because of saturation or shutdown.
+     * 
+     * @see Crypto#signThenEncrypt(byte[], PrivateKey, PublicKey[])
+     */
+    public Future<byte[]> signThenEncrypt(final byte[] data, final PrivateKey privateKey,
+            final PublicKey[] recipients) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return crypto.signThenEncrypt(data, privateKey, recipients);
+            }
+        });
+    }
+
+    /**
+     * Decrypt then verify data asynchronously.
+     * 
+     * @param cipherData
+     *            the encrypted data.
+     * @param privateKey
+     *            the private key.
+     * @param publicKey
+     *            the signer's public key.
+     * @return the future with operation result.
+     * @throws RejectedExecutionException
+     *             if operation is rejected because of saturation or shutdown.
+     * 
+     * @see Crypto#decryptThenVerify(byte[], PrivateKey, PublicKey)
+     */
+    public Future<byte[]> decryptThenVerify(final byte[] cipherData, final PrivateKey privateKey,
+            final PublicKey publicKey) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return crypto.decryptThenVerify(cipherData, privateKey, publicKey);
+            }
+        });
+    }
+
+    /**
+     * @return the wrapped crypto.
+     */
+    public Crypto getCrypto() {
+        return crypto;
+    }
+
+    /**
+     * @return the maximum number of concurrently running operations.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return the maximum number of operations waiting for a thread.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return the saturation policy.
+     */
+    public SaturationPolicy getSaturationPolicy() {
+        return saturationPolicy;
+    }
+
+    /**
+     * @return the approximate number of operations which are running now.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return the approximate number of operations waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the approximate number of operations which are accepted but not completed yet.
+     */
+    public int getPendingCount() {
+        return threads + queueCapacity - permits.availablePermits();
+    }
+
+    /**
+     * @return the approximate number of completed operations.
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return the number of rejected operations.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Stop accepting new operations. Already accepted operations will be completed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Block until all accepted operations are completed after {@link #shutdown()}, or the timeout occurs.
+     * 
+     * @param timeout
+     *            the maximum time to wait.
+     * @param unit
+     *            the time unit of the timeout argument.
+     * @return {@code true} if all operations are completed, {@code false} if the timeout elapsed.
+     * @throws InterruptedException
+     *             if interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private <T> Future<T> submit(Callable<T> operation) {
+        if (saturationPolicy == SaturationPolicy.BLOCK) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejectedCount.incrementAndGet();
+                throw new RejectedExecutionException("Interrupted while waiting for crypto queue", e);
+            }
+        } else if (!permits.tryAcquire()) {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("Crypto queue is full");
+        }
+
+        // Permit is released when operation leaves the pool. A cancelled operation still occupies a thread until it
+        // stops running, or a queue slot until it's removed from the queue
+        FutureTask<T> future = new FutureTask<T>(operation) {
+            @Override
+            public void run() {
+                try {
+                    super.run();
+                } finally {
+                    permits.release();
+                }
+            }
+
+            @Override
+            protected void done() {
+                // A removed operation will never run
+                if (isCancelled() && executor.remove(this)) {
+                    permits.release();
+                }
+            }
+        };
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            rejectedCount.incrementAndGet();
+            throw e;
+        }
+        return future;
+    }
+
+    private static class CryptoThreadFactory implements ThreadFactory {
+
+        private final int poolNumber = POOL_NUMBER.incrementAndGet();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "virgil-crypto-" + poolNumber + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -31,10 +31,14 @@ package com.virgilsecurity.sdk.crypto;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
 
 import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
 import com.virgilsecurity.sdk.crypto.exceptions.DecryptionException;
 import com.virgilsecurity.sdk.crypto.exceptions.EncryptionException;
+import com.virgilsecurity.sdk.crypto.exceptions.SignatureIsNotValidException;
 import com.virgilsecurity.sdk.crypto.exceptions.SigningException;
 import com.virgilsecurity.sdk.crypto.exceptions.VerificationException;
 
@@ -66,6 +70,53 @@ public interface Crypto {
      */
     byte[] computeHash(byte[] data, HashAlgorithm algorithm);
 
+    /**
+     * Compute hash of stream data with algorithm specified. Stream is read to the end, but not closed.
+     * 
+     * @param inputStream
+     *            the stream with data for hashing.
+     * @param algorithm
+     *            the algorithm to be used for hash calculation.
+     * @return the hash code.
+     * @throws CryptoException
+     *             if stream couldn't be read.
+     */
+    byte[] computeHash(InputStream inputStream, HashAlgorithm algorithm) throws CryptoException;
+
+    /**
+     * Compute hash of channel data from the current position to the end with algorithm specified. Channel position is
+     * moved to the end.
+     * 
+     * @param channel
+     *            the channel with data for hashing.
+     * @param algorithm
+     *            the algorithm to be used for hash calculation.
+     * @return the hash code.
+     * @throws CryptoException
+     *             if channel couldn't be read.
+     */
+    byte[] computeHash(FileChannel channel, HashAlgorithm algorithm) throws CryptoException;
+
+    /**
+     * Create hasher which calculates hash of data passed in parts.
+     * 
+     * @param algorithm
+     *            the algorithm to be used for hash calculation.
+     * @return the hasher. It should be closed by the caller.
+     */
+    Hasher createHasher(HashAlgorithm algorithm);
+
+    /**
+     * Create HMAC calculator for data passed in parts.
+     * 
+     * @param key
+     *            the secret key.
+     * @param algorithm
+     *            the hash algorithm.
+     * @return the HMAC calculator. It should be closed by the caller.
+     */
+    Mac createMac(byte[] key, HashAlgorithm algorithm);
+
     /**
      * Decrypt byte array with private key.
      * 
@@ -78,6 +129,39 @@ public interface Crypto {
      */
     byte[] decrypt(byte[] data, PrivateKey privateKey) throws DecryptionException;
 
+    /**
+     * Decrypt a region of byte array with private key.
+     * 
+     * @param data
+     *            the array which contains the data to be decrypted.
+     * @param offset
+     *            the offset of the data in the array.
+     * @param length
+     *            the length of the data.
+     * @param privateKey
+     *            the recipients private key.
+     * @return the decrypted data as byte array.
+     * @throws DecryptionException
+     */
+    byte[] decrypt(byte[] data, int offset, int length, PrivateKey privateKey) throws DecryptionException;
+
+    /**
+     * Decrypt remaining bytes of the buffer with private key and write decrypted data to the output buffer. On success
+     * positions of both buffers are advanced. If output buffer is too small, positions of both buffers are not changed.
+     * 
+     * @param data
+     *            the data to be decrypted.
+     * @param output
+     *            the buffer for decrypted data.
+     * @param privateKey
+     *            the recipients private key.
+     * @return the number of bytes written to the output buffer.
+     * @throws DecryptionException
+     * @throws java.nio.BufferOverflowException
+     *             if output buffer has not enough space for decrypted data.
+     */
+    int decrypt(ByteBuffer data, ByteBuffer output, PrivateKey privateKey) throws DecryptionException;
+
     /**
      * Decrypt stream data with private key.
      * 
@@ -122,6 +206,44 @@ public interface Crypto {
      */
     byte[] encrypt(byte[] data, PublicKey[] recipients) throws EncryptionException;
 
+    /**
+     * Encrypt a region of byte array with public key set.
+     * 
+     * @param data
+     *            the array which contains the data to be encrypted.
+     * @param offset
+     *            the offset of the data in the array.
+     * @param length
+     *            the length of the data.
+     * @param recipients
+     *            the recipients public key set.
+     * @return the encrypted data as byte array.
+     * @throws EncryptionException
+     * 
+     * @see PublicKey
+     */
+    byte[] encrypt(byte[] data, int offset, int length, PublicKey[] recipients) throws EncryptionException;
+
+    /**
+     * Encrypt remaining bytes of the buffer with public key set and write encrypted data to the output buffer. On
+     * success positions of both buffers are advanced. If output buffer is too small, positions of both buffers are not
+     * changed.
+     * 
+     * @param data
+     *            the data to be encrypted.
+     * @param output
+     *            the buffer for encrypted data.
+     * @param recipients
+     *            the recipients public key set.
+     * @return the number of bytes written to the output buffer.
+     * @throws EncryptionException
+     * @throws java.nio.BufferOverflowException
+     *             if output buffer has not enough space for encrypted data.
+     * 
+     * @see PublicKey
+     */
+    int encrypt(ByteBuffer data, ByteBuffer output, PublicKey[] recipients) throws EncryptionException;
+
     /**
      * Encrypt stream data with public key.
      * 
@@ -258,6 +380,36 @@ public interface Crypto {
      */
     byte[] sign(byte[] data, PrivateKey privateKey);
 
+    /**
+     * Sign a region of byte array with private key.
+     * 
+     * @param data
+     *            the array which contains the data to be signed.
+     * @param offset
+     *            the offset of the data in the array.
+     * @param length
+     *            the length of the data.
+     * @param privateKey
+     *            the signer's private key.
+     * @return the signature.
+     * 
+     * @see PrivateKey
+     */
+    byte[] sign(byte[] data, int offset, int length, PrivateKey privateKey);
+
+    /**
+     * Sign remaining bytes of the buffer with private key. Buffer position is advanced to its limit.
+     * 
+     * @param data
+     *            the data to be signed.
+     * @param privateKey
+     *            the signer's private key.
+     * @return the signature.
+     * 
+     * @see PrivateKey
+     */
+    byte[] sign(ByteBuffer data, PrivateKey privateKey);
+
     /**
      * Sign stream data with private key.
      * 
@@ -273,6 +425,21 @@ public interface Crypto {
      */
     byte[] sign(InputStream inputStream, PrivateKey privateKey) throws SigningException;
 
+    /**
+     * Sign a batch of byte arrays with the same private key.
+     * 
+     * @param items
+     *            the data items to be signed.
+     * @param privateKey
+     *            the signer's private key.
+     * @return the signatures in the same order as items.
+     * @throws SigningException
+     *             if any item couldn't be signed.
+     * 
+     * @see PrivateKey
+     */
+    List<byte[]> signBatch(List<byte[]> items, PrivateKey privateKey) throws SigningException;
+
     /**
      * Verify byte array with signature.
      * 
@@ -288,6 +455,56 @@ public interface Crypto {
      */
     boolean verify(byte[] data, byte[] signature, PublicKey signer) throws VerificationException;
 
+    /**
+     * Verify a region of byte array with signature.
+     * 
+     * @param data
+     *            the array which contains the data to be verified.
+     * @param offset
+     *            the offset of the data in the array.
+     * @param length
+     *            the length of the data.
+     * @param signature
+     *            the signature.
+     * @param signer
+     *            the signer's public key.
+     * @return {@code true} if signature is valid. {@code false} in other case.
+     * @throws VerificationException
+     *             if data couldn't be verified.
+     */
+    boolean verify(byte[] data, int offset, int length, byte[] signature, PublicKey signer)
+            throws VerificationException;
+
+    /**
+     * Verify remaining bytes of the buffer with signature. Buffer position is advanced to its limit.
+     * 
+     * @param data
+     *            the data to be verified.
+     * @param signature
+     *            the signature.
+     * @param signer
+     *            the signer's public key.
+     * @return {@code true} if signature is valid. {@code false} in other case.
+     * @throws VerificationException
+     *             if data couldn't be verified.
+     */
+    boolean verify(ByteBuffer data, byte[] signature, PublicKey signer) throws VerificationException;
+
+    /**
+     * Verify a batch of byte arrays signed with the same key.
+     * 
+     * @param items
+     *            the data items to be verified.
+     * @param signatures
+     *            the signatures in the same order as items.
+     * @param signer
+     *            the signer's public key.
+     * @return {@code true} if all signatures are valid. {@code false} in other case.
+     * @throws VerificationException
+     *             if data couldn't be verified.
+     */
+    boolean verifyBatch(List<byte[]> items, List<byte[]> signatures, PublicKey signer) throws VerificationException;
+
     /**
      * Verify stream data with signature.
      * 
@@ -344,4 +561,44 @@ public interface Crypto {
      * @throws CryptoException
      */
     byte[] decryptThenVerify(byte[] cipherData, PrivateKey privateKey, PublicKey publicKey) throws CryptoException;
+
+    /**
+     * Sign stream data and encrypt it in one pass with bounded memory. Signature is encrypted together with data as a
+     * trailer, so encrypted data could be decrypted with
+     * {@link #decryptThenVerify(InputStream, OutputStream, PrivateKey, PublicKey)} only.
+     * 
+     * @param inputStream
+     *            the stream with data to be signed and encrypted.
+     * @param outputStream
+     *            the stream for encrypted data.
+     * @param privateKey
+     *            the private key used for signing.
+     * @param recipients
+     *            the recipient public keys.
+     * @throws CryptoException
+     *             if data couldn't be signed or encrypted.
+     */
+    void signThenEncrypt(InputStream inputStream, OutputStream outputStream, PrivateKey privateKey,
+            PublicKey[] recipients) throws CryptoException;
+
+    /**
+     * Decrypt stream data encrypted with {@link #signThenEncrypt(InputStream, OutputStream, PrivateKey, PublicKey[])}
+     * and verify signature in one pass with bounded memory. Decrypted data is written before signature is verified, so
+     * it should be discarded if exception is thrown.
+     * 
+     * @param inputStream
+     *            the stream with encrypted data.
+     * @param outputStream
+     *            the stream for decrypted data.
+     * @param privateKey
+     *            the private key used for decryption.
+     * @param publicKey
+     *            the signer's public key.
+     * @throws SignatureIsNotValidException
+     *             if signature is not valid.
+     * @throws CryptoException
+     *             if data couldn't be decrypted.
+     */
+    void decryptThenVerify(InputStream inputStream, OutputStream outputStream, PrivateKey privateKey,
+            PublicKey publicKey) throws CryptoException;
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Calculates hash of data which is passed in parts. Hasher holds native resources, so it should be closed when it's
+ * not needed anymore.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public interface Hasher extends AutoCloseable {
+
+    /**
+     * Process the next part of data.
+     * 
+     * @param data
+     *            the data.
+     */
+    void update(byte[] data);
+
+    /**
+     * Process the next part of data.
+     * 
+     * @param data
+     *            the array with data.
+     * @param offset
+     *            the offset of data in the array.
+     * @param length
+     *            the length of data.
+     */
+    void update(byte[] data, int offset, int length);
+
+    /**
+     * Process remaining bytes of the buffer. Buffer position is moved to its limit.
+     * 
+     * @param data
+     *            the data.
+     */
+    void update(ByteBuffer data);
+
+    /**
+     * Complete calculation. Hasher is reset, so it could be used for the next data.
+     * 
+     * @return the hash of all processed data.
+     */
+    byte[] finish();
+
+    /**
+     * Release native resources.
+     */
+    @Override
+    void close();
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.virgilsecurity.sdk.client.model.CardModel;
+import com.virgilsecurity.sdk.client.model.CardScope;
+import com.virgilsecurity.sdk.client.model.dto.PublishCardSnapshotModel;
+import com.virgilsecurity.sdk.crypto.Fingerprint;
+import com.virgilsecurity.sdk.crypto.KeyPair;
+import com.virgilsecurity.sdk.crypto.KeysType;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.utils.ConvertionUtils;
+import com.virgilsecurity.sdk.utils.ParallelCardValidator;
+import com.virgilsecurity.sdk.utils.VirgilCardValidator;
+
+/**
+ * Measures validation of 1,000 cards signed by the card owner and by the application.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardValidatorBenchmark {
+
+    private static final int CARDS_COUNT = 1000;
+    private static final String APP_CARD_ID = "1ef2e45f6100792bc600828f1425b27ce7655a80543118f375bd894d7313aa00";
+
+    private ExecutorService executor;
+    private VirgilCardValidator validator;
+    private ParallelCardValidator parallelValidator;
+    private List<CardModel> cards;
+
+    @Setup
+    public void setup() {
+        VirgilCrypto crypto = new VirgilCrypto(KeysType.FAST_EC_ED25519, true);
+        KeyPair appKeyPair = crypto.generateKeys();
+        byte[] appPublicKey = crypto.exportPublicKey(appKeyPair.getPublicKey());
+
+        // Production service private key is not available, so service signature is not verified
+        validator = new VirgilCardValidator(crypto);
+        validator.removeVerifier(VirgilCardValidator.SERVICE_CARD_ID);
+        validator.addVerifier(APP_CARD_ID, appPublicKey);
+
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        parallelValidator = new ParallelCardValidator(crypto, executor);
+        parallelValidator.removeVerifier(VirgilCardValidator.SERVICE_CARD_ID);
+        parallelValidator.addVerifier(APP_CARD_ID, appPublicKey);
+
+        cards = new ArrayList<>(CARDS_COUNT);
+        for (int i = 0; i < CARDS_COUNT; i++) {
+            cards.add(createCard(crypto, appKeyPair, "user" + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean validate() {
+        boolean valid = true;
+        for (CardModel card : cards) {
+            valid &= validator.validate(card);
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public List<CardModel> findInvalidCardsParallel() {
+        return parallelValidator.findInvalidCards(cards);
+    }
+
+    private static CardModel createCard(VirgilCrypto crypto, KeyPair appKeyPair, String identity) {
+        KeyPair keyPair = crypto.generateKeys();
+
+        PublishCardSnapshotModel snapshotModel = new PublishCardSnapshotModel();
+        snapshotModel.setIdentity(identity);
+        snapshotModel.setIdentityType("username");
+        snapshotModel.setScope(CardScope.APPLICATION);
+        snapshotModel.setPublicKeyData(crypto.exportPublicKey(keyPair.getPublicKey()));
+
+        byte[] snapshot = ConvertionUtils.captureSnapshot(snapshotModel);
+        Fingerprint fingerprint = crypto.calculateFingerprint(snapshot);
+
+        CardModel card = new CardModel();
+        card.setSnapshot(snapshot);
+        card.setId(fingerprint.toHex());
+        card.getMeta().setVersion("4.0");
+
+        Map<String, byte[]> signatures = new HashMap<>();
+        signatures.put(card.getId(), crypto.sign(fingerprint.getValue(), keyPair.getPrivateKey()));
+        signatures.put(APP_CARD_ID, crypto.sign(fingerprint.getValue(), appKeyPair.getPrivateKey()));
+        card.getMeta().setSignatures(signatures);
+
+        return card;
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.virgilsecurity.sdk.crypto.HashAlgorithm;
+import com.virgilsecurity.sdk.crypto.KeyPair;
+import com.virgilsecurity.sdk.crypto.KeysType;
+import com.virgilsecurity.sdk.crypto.PublicKey;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+
+/**
+ * Measures the cost of passing payloads through JNI.
+ * <p>
+ * Every {@code byte[]} argument of the SWIG wrapper is copied three times: {@code GetByteArrayElements} copies it to
+ * native memory, the copy is used to construct {@code VirgilByteArray}, and {@code ReleaseByteArrayElements} with mode
+ * {@code 0} copies it back to the Java array. Every {@code byte[]} result is copied once more with
+ * {@code SetByteArrayRegion}. So encryption of a whole array makes four payload copies plus the cipher's own output,
+ * while stream encryption makes the same copies for a single chunk at a time.
+ * </p>
+ * <p>
+ * Run with {@code -prof gc} to see Java heap bytes allocated per operation ({@code gc.alloc.rate.norm}).
+ * </p>
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class JniMarshallingBenchmark {
+
+    /** 1 KB, 1 MB and 100 MB. */
+    @Param({ "1024", "1048576", "104857600" })
+    private int dataSize;
+
+    private VirgilCrypto crypto;
+    private KeyPair keyPair;
+    private PublicKey[] recipients;
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        crypto = new VirgilCrypto(KeysType.FAST_EC_ED25519, true);
+        keyPair = crypto.generateKeys();
+        recipients = new PublicKey[] { keyPair.getPublicKey() };
+        data = new byte[dataSize];
+    }
+
+    @Benchmark
+    public byte[] encrypt() throws CryptoException {
+        return crypto.encrypt(data, recipients);
+    }
+
+    @Benchmark
+    public void encryptStream() throws CryptoException {
+        crypto.encrypt(new ByteArrayInputStream(data), new NullOutputStream(), recipients);
+    }
+
+    @Benchmark
+    public byte[] sign() {
+        return crypto.sign(data, keyPair.getPrivateKey());
+    }
+
+    @Benchmark
+    public byte[] computeHash() {
+        return crypto.computeHash(data, HashAlgorithm.SHA256);
+    }
+
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.virgilsecurity.sdk.crypto.KeyPair;
+import com.virgilsecurity.sdk.crypto.KeysType;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.crypto.VirgilFileCrypto;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+
+/**
+ * Compares file signing and encryption through memory-mapped windows with the stream-based path.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class MappedFileBenchmark {
+
+    /** 2 GB. */
+    @Param({ "2147483648" })
+    private long fileSize;
+
+    private VirgilCrypto crypto;
+    private VirgilFileCrypto fileCrypto;
+    private KeyPair keyPair;
+    private Path in;
+    private Path out;
+
+    @Setup
+    public void setup() throws IOException {
+        crypto = new VirgilCrypto(KeysType.FAST_EC_ED25519, true);
+        fileCrypto = new VirgilFileCrypto(crypto);
+        keyPair = crypto.generateKeys();
+        in = Files.createTempFile("virgil-benchmark", ".in");
+        out = Files.createTempFile("virgil-benchmark", ".out");
+        try (RandomAccessFile file = new RandomAccessFile(in.toFile(), "rw")) {
+            file.setLength(fileSize);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(in);
+        Files.deleteIfExists(out);
+    }
+
+    @Benchmark
+    public byte[] signMapped() throws CryptoException {
+        return fileCrypto.sign(in, keyPair.getPrivateKey());
+    }
+
+    @Benchmark
+    public byte[] signStream() throws IOException, CryptoException {
+        try (InputStream is = Files.newInputStream(in)) {
+            return crypto.sign(is, keyPair.getPrivateKey());
+        }
+    }
+
+    @Benchmark
+    public void encryptMapped() throws CryptoException {
+        fileCrypto.encryptFile(in, out, keyPair.getPublicKey());
+    }
+
+    @Benchmark
+    public void encryptStream() throws IOException, CryptoException {
+        try (InputStream is = Files.newInputStream(in); OutputStream os = Files.newOutputStream(out)) {
+            crypto.encrypt(is, os, keyPair.getPublicKey());
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.virgilsecurity.sdk.crypto.KeyPair;
+import com.virgilsecurity.sdk.crypto.KeysType;
+import com.virgilsecurity.sdk.crypto.PreparedPrivateKey;
+import com.virgilsecurity.sdk.crypto.PreparedPublicKey;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+
+/**
+ * Compares signing and verification with raw keys and with prepared keys.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedKeyBenchmark {
+
+    @Param({ "FAST_EC_ED25519", "EC_SECP256R1", "RSA_2048" })
+    private KeysType keysType;
+
+    private VirgilCrypto crypto;
+    private KeyPair keyPair;
+    private PreparedPrivateKey preparedPrivateKey;
+    private PreparedPublicKey preparedPublicKey;
+    private byte[] data;
+    private byte[] signature;
+
+    @Setup
+    public void setup() throws CryptoException {
+        crypto = new VirgilCrypto(keysType, true);
+        keyPair = crypto.generateKeys();
+        preparedPrivateKey = crypto.preparePrivateKey(keyPair.getPrivateKey());
+        preparedPublicKey = crypto.preparePublicKey(keyPair.getPublicKey());
+        data = new byte[32];
+        signature = crypto.sign(data, keyPair.getPrivateKey());
+    }
+
+    @Benchmark
+    public byte[] sign() {
+        return crypto.sign(data, keyPair.getPrivateKey());
+    }
+
+    @Benchmark
+    public byte[] signPrepared() {
+        return crypto.sign(data, preparedPrivateKey);
+    }
+
+    @Benchmark
+    public boolean verify() throws CryptoException {
+        return crypto.verify(data, signature, keyPair.getPublicKey());
+    }
+
+    @Benchmark
+    public boolean verifyPrepared() throws CryptoException {
+        return crypto.verify(data, signature, preparedPublicKey);
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.virgilsecurity.crypto.VirgilCipherBase;
+import com.virgilsecurity.sdk.crypto.KeyPair;
+import com.virgilsecurity.sdk.crypto.KeysType;
+import com.virgilsecurity.sdk.crypto.PublicKey;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+
+/**
+ * Measures adding a recipient to encrypted data by re-wrapping content info against full decryption and encryption.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RewrapBenchmark {
+
+    @Param({ "1048576", "16777216" })
+    private int dataSize;
+
+    @Param({ "10" })
+    private int groupSize;
+
+    private VirgilCrypto crypto;
+    private KeyPair holder;
+    private PublicKey[] recipients;
+    private PublicKey[] newRecipients;
+    private PublicKey[] added;
+    private byte[] encrypted;
+    private byte[] contentInfo;
+
+    @Setup
+    public void setup() throws CryptoException {
+        crypto = new VirgilCrypto(KeysType.Default, true);
+        holder = crypto.generateKeys();
+        recipients = new PublicKey[groupSize];
+        recipients[0] = holder.getPublicKey();
+        for (int i = 1; i < groupSize; i++) {
+            recipients[i] = crypto.generateKeys().getPublicKey();
+        }
+        added = new PublicKey[] { crypto.generateKeys().getPublicKey() };
+        newRecipients = Arrays.copyOf(recipients, groupSize + 1);
+        newRecipients[groupSize] = added[0];
+
+        encrypted = crypto.encrypt(new byte[dataSize], recipients);
+        contentInfo = Arrays.copyOf(encrypted, (int) VirgilCipherBase.defineContentInfoSize(encrypted));
+    }
+
+    @Benchmark
+    public byte[] rewrap() throws CryptoException {
+        return crypto.rewrap(contentInfo, holder.getPrivateKey(), added, null);
+    }
+
+    @Benchmark
+    public byte[] decryptThenEncrypt() throws CryptoException {
+        return crypto.encrypt(crypto.decrypt(encrypted, holder.getPrivateKey()), newRecipients);
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.virgilsecurity.sdk.crypto.KeyPair;
+import com.virgilsecurity.sdk.crypto.KeysType;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+
+/**
+ * Compares stream encryption and decryption with and without background prefetching and writing. Streams are
+ * throttled to simulate disk or network I/O.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamPrefetchBenchmark {
+
+    private static final int DATA_SIZE = 16 * 1024 * 1024;
+
+    @Param({ "false", "true" })
+    private boolean prefetch;
+
+    /** Simulated I/O speed, MB per second. */
+    @Param({ "100" })
+    private int ioSpeed;
+
+    private ExecutorService executor;
+    private VirgilCrypto crypto;
+    private KeyPair keyPair;
+    private byte[] data;
+    private byte[] encryptedData;
+
+    @Setup
+    public void setup() throws CryptoException {
+        executor = Executors.newCachedThreadPool();
+        crypto = new VirgilCrypto(KeysType.FAST_EC_ED25519, true);
+        if (prefetch) {
+            crypto.setStreamExecutor(executor);
+        }
+        keyPair = crypto.generateKeys();
+        data = new byte[DATA_SIZE];
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(DATA_SIZE + 1024);
+        crypto.encrypt(new ByteArrayInputStream(data), out, keyPair.getPublicKey());
+        encryptedData = out.toByteArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void encrypt() throws CryptoException {
+        crypto.encrypt(new ThrottledInputStream(new ByteArrayInputStream(data), ioSpeed),
+                new ThrottledOutputStream(ioSpeed), keyPair.getPublicKey());
+    }
+
+    @Benchmark
+    public void decrypt() throws CryptoException {
+        crypto.decrypt(new ThrottledInputStream(new ByteArrayInputStream(encryptedData), ioSpeed),
+                new ThrottledOutputStream(ioSpeed), keyPair.getPrivateKey());
+    }
+
+    private static void pause(int bytes, int speed) {
+        LockSupport.parkNanos(bytes * 1000L / speed);
+    }
+
+    private static class ThrottledInputStream extends FilterInputStream {
+        private final int speed;
+
+        ThrottledInputStream(InputStream in, int speed) {
+            super(in);
+            this.speed = speed;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int bytesRead = super.read(b, off, len);
+            if (bytesRead > 0) {
+                pause(bytesRead, speed);
+            }
+            return bytesRead;
+        }
+    }
+
+    private static class ThrottledOutputStream extends OutputStream {
+        private final int speed;
+
+        ThrottledOutputStream(int speed) {
+            this.speed = speed;
+        }
+
+        @Override
+        public void write(int b) {
+            pause(1, speed);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            pause(len, speed);
+        }
+    }
+
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2016 Virgil Security Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *     (3) Neither the name of the copyright holder nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.crypto;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Data sink which writes data to the output stream on a background thread.
+ * 
+ * Data portions passed by the native code are not copied, they are handed to the writer thread through a bounded
+ * queue, so output I/O overlaps with cryptographic operations. If the writer falls behind, {@link #write(byte[])}
+ * blocks. Write errors are reported by the next {@link #write(byte[])}, {@link #flush()} or {@link #close()} call.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilAsyncDataSink extends VirgilDataSink implements java.io.Closeable, java.io.Flushable {
+    private static final int QUEUE_CAPACITY_DEFAULT = 2;
+    private static final byte[] FLUSH = new byte[0];
+    private static final byte[] END = new byte[0];
+    private static final long WAIT_TIMEOUT_MILLIS = 100;
+
+    private final OutputStream stream;
+    private final BlockingQueue<byte[]> queue;
+    private final Semaphore flushed = new Semaphore(0);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile IOException error;
+    private boolean closed;
+
+    /**
+     * Create a new instance of {@code VirgilAsyncDataSink}
+     *
+     * @param stream
+     *            the output stream to write data to.
+     * @param executor
+     *            the executor which runs the writer task. The task runs until the sink is closed.
+     */
+    public VirgilAsyncDataSink(OutputStream stream, Executor executor) {
+        this(stream, executor, QUEUE_CAPACITY_DEFAULT);
+    }
+
+    /**
+     * Create a new instance of {@code VirgilAsyncDataSink}
+     *
+     * @param stream
+     *            the output stream to write data to.
+     * @param executor
+     *            the executor which runs the writer task. The task runs until the sink is closed.
+     * @param queueCapacity
+     *            the maximum number of data portions waiting to be written.
+     */
+    public VirgilAsyncDataSink(OutputStream stream, Executor executor, int queueCapacity) {
+        this.stream = stream;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity + 2);
+        executor.execute(new WriterTask());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            put(FLUSH);
+            put(END);
+            try {
+                this.finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            checkError();
+        } finally {
+            try {
+                this.stream.close();
+            } finally {
+                this.delete();
+            }
+        }
+    }
+
+    @Override
+    public boolean isGood() throws IOException {
+        // If stream is not good, method 'write' will throw exception.
+        return true;
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        checkError();
+        put(data);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        put(FLUSH);
+        try {
+            while (!this.flushed.tryAcquire(WAIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkWriter();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        checkError();
+    }
+
+    private void put(byte[] data) throws IOException {
+        try {
+            while (!this.queue.offer(data, WAIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkWriter();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void checkWriter() throws IOException {
+        if (this.finished.getCount() == 0) {
+            checkError();
+            throw new IOException("Writer task is stopped");
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (this.error != null) {
+            throw this.error;
+        }
+    }
+
+    private class WriterTask implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    byte[] data = queue.take();
+                    if (data == END) {
+                        return;
+                    }
+                    try {
+                        // After an error remaining data is dropped, but the queue is still drained
+                        if (error == null) {
+                            if (data == FLUSH) {
+                                stream.flush();
+                            } else {
+                                stream.write(data);
+                            }
+                        }
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                    if (data == FLUSH) {
+                        flushed.release();
+                    }
+                }
+            } catch (InterruptedException e) {
+                error = new InterruptedIOException();
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2016 Virgil Security Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *     (3) Neither the name of the copyright holder nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+
+/**
+ * Data sink which writes data to the channel.
+ * 
+ * Written data portions are not copied. They are collected and written to the channel with a single gathering write.
+ * Call {@link #flush()} to write collected data.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilChannelDataSink extends VirgilDataSink implements java.io.Closeable, java.io.Flushable {
+    private static final int MAX_PENDING_BUFFERS = 16;
+    private static final int MAX_PENDING_BYTES = 1024 * 1024;
+
+    private final GatheringByteChannel channel;
+    private final ByteBuffer[] pending;
+    private int pendingCount;
+    private long pendingBytes;
+
+    /**
+     * Create a new instance of {@code VirgilChannelDataSink}
+     *
+     * @param channel
+     *            the channel to write data to.
+     */
+    public VirgilChannelDataSink(GatheringByteChannel channel) {
+        this.channel = channel;
+        this.pending = new ByteBuffer[MAX_PENDING_BUFFERS];
+    }
+
+    @Override
+    public void close() throws java.io.IOException {
+        try {
+            this.flush();
+        } finally {
+            try {
+                this.channel.close();
+            } finally {
+                this.delete();
+            }
+        }
+    }
+
+    @Override
+    public boolean isGood() throws java.io.IOException {
+        // If channel is not good, method 'write' will throw exception.
+        return true;
+    }
+
+    @Override
+    public void write(byte[] data) throws java.io.IOException {
+        this.pending[this.pendingCount++] = ByteBuffer.wrap(data);
+        this.pendingBytes += data.length;
+        if (this.pendingCount == this.pending.length || this.pendingBytes >= MAX_PENDING_BYTES) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() throws java.io.IOException {
+        while (this.pendingBytes > 0) {
+            this.pendingBytes -= this.channel.write(this.pending, 0, this.pendingCount);
+        }
+        Arrays.fill(this.pending, 0, this.pendingCount, null);
+        this.pendingCount = 0;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2016 Virgil Security Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *     (3) Neither the name of the copyright holder nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Data source which reads data from the channel into a reused direct buffer.
+ * 
+ * Full chunks are returned in the same byte array, so reading a large file doesn't allocate an array per chunk.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilChannelDataSource extends VirgilDataSource implements java.io.Closeable {
+    private static final int CHUNK_SIZE_DEFAULT = 1024 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] chunk;
+    private boolean endOfChannel;
+
+    /**
+     * Create a new instance of {@code VirgilChannelDataSource}
+     *
+     * @param channel
+     *            the channel to read data from.
+     */
+    public VirgilChannelDataSource(ReadableByteChannel channel) {
+        this(channel, CHUNK_SIZE_DEFAULT);
+    }
+
+    /**
+     * Create a new instance of {@code VirgilChannelDataSource}
+     *
+     * @param channel
+     *            the channel to read data from.
+     * @param chunkSize
+     *            the maximum size of data portion returned by {@link #read()}.
+     */
+    public VirgilChannelDataSource(ReadableByteChannel channel, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize");
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(chunkSize);
+        this.chunk = new byte[chunkSize];
+    }
+
+    @Override
+    public void close() throws java.io.IOException {
+        this.channel.close();
+        this.delete();
+    }
+
+    @Override
+    public boolean hasData() throws java.io.IOException {
+        fill();
+        return this.buffer.position() > 0;
+    }
+
+    @Override
+    public byte[] read() throws java.io.IOException {
+        fill();
+        this.buffer.flip();
+        byte[] result = (this.buffer.remaining() == this.chunk.length) ? this.chunk
+                : new byte[this.buffer.remaining()];
+        this.buffer.get(result);
+        this.buffer.clear();
+        return result;
+    }
+
+    private void fill() throws java.io.IOException {
+        while (!this.endOfChannel && this.buffer.hasRemaining()) {
+            if (this.channel.read(this.buffer) < 0) {
+                this.endOfChannel = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2016 Virgil Security Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *     (3) Neither the name of the copyright holder nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.crypto;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Data source which reads file through memory-mapped windows.
+ * 
+ * The file is mapped window by window, and data is copied from the page cache straight into a reused chunk array, so
+ * no read system calls are made and no array is allocated per chunk.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilMappedDataSource extends VirgilDataSource implements java.io.Closeable {
+    private static final int CHUNK_SIZE_DEFAULT = 1024 * 1024;
+    private static final int WINDOW_SIZE_DEFAULT = 64 * CHUNK_SIZE_DEFAULT;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private final byte[] chunk;
+    private long windowPosition;
+    private MappedByteBuffer window;
+
+    /**
+     * Create a new instance of {@code VirgilMappedDataSource}
+     *
+     * @param channel
+     *            the file channel to read data from.
+     * @throws java.io.IOException
+     *             if file size couldn't be determined.
+     */
+    public VirgilMappedDataSource(FileChannel channel) throws java.io.IOException {
+        this(channel, CHUNK_SIZE_DEFAULT, WINDOW_SIZE_DEFAULT);
+    }
+
+    /**
+     * Create a new instance of {@code VirgilMappedDataSource}
+     *
+     * @param channel
+     *            the file channel to read data from.
+     * @param chunkSize
+     *            the maximum size of data portion returned by {@link #read()}.
+     * @param windowSize
+     *            the size of file region mapped at once.
+     * @throws java.io.IOException
+     *             if file size couldn't be determined.
+     */
+    public VirgilMappedDataSource(FileChannel channel, int chunkSize, int windowSize) throws java.io.IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize");
+        }
+        if (windowSize < chunkSize) {
+            throw new IllegalArgumentException("windowSize");
+        }
+        this.channel = channel;
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        this.chunk = new byte[chunkSize];
+    }
+
+    @Override
+    public void close() throws java.io.IOException {
+        this.window = null;
+        this.channel.close();
+        this.delete();
+    }
+
+    @Override
+    public boolean hasData() throws java.io.IOException {
+        long position = this.windowPosition + ((this.window == null) ? 0 : this.window.position());
+        return position < this.size;
+    }
+
+    @Override
+    public byte[] read() throws java.io.IOException {
+        if (this.window == null || !this.window.hasRemaining()) {
+            if (this.window != null) {
+                this.windowPosition += this.window.limit();
+            }
+            long length = Math.min(this.windowSize, this.size - this.windowPosition);
+            this.window = this.channel.map(MapMode.READ_ONLY, this.windowPosition, length);
+        }
+        int length = Math.min(this.chunk.length, this.window.remaining());
+        byte[] result = (length == this.chunk.length) ? this.chunk : new byte[length];
+        this.window.get(result);
+        return result;
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2016 Virgil Security Inc.
+ *
+ * Lead Maintainer: Virgil Security Inc. <support@virgilsecurity.com>
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *     (1) Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *     (2) Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *     (3) Neither the name of the copyright holder nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ''AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.virgilsecurity.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Data source which reads the input stream on a background thread.
+ * 
+ * The next chunk is read into one of two alternating buffers while the native code processes the current one, so
+ * stream I/O overlaps with cryptographic operations. A buffer is reused only after the native code has requested the
+ * next chunk, which means it has copied the previous one. The stream is read with blocking reads, and every chunk
+ * except the last one is filled up to the chunk size.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilPrefetchDataSource extends VirgilDataSource implements java.io.Closeable {
+    private static final int CHUNK_SIZE_DEFAULT = 1024 * 1024;
+    private static final byte[] CLOSED = new byte[0];
+
+    private final InputStream stream;
+    private final BlockingQueue<byte[]> freeBuffers = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Chunk> filledChunks = new LinkedBlockingQueue<>();
+    private Chunk next;
+    private byte[] current;
+
+    /**
+     * Create a new instance of {@code VirgilPrefetchDataSource}
+     *
+     * @param stream
+     *            the input stream to read data from.
+     * @param executor
+     *            the executor which runs the prefetch task. The task runs until the stream is read completely or the
+     *            source is closed.
+     */
+    public VirgilPrefetchDataSource(InputStream stream, Executor executor) {
+        this(stream, executor, CHUNK_SIZE_DEFAULT);
+    }
+
+    /**
+     * Create a new instance of {@code VirgilPrefetchDataSource}
+     *
+     * @param stream
+     *            the input stream to read data from.
+     * @param executor
+     *            the executor which runs the prefetch task. The task runs until the stream is read completely or the
+     *            source is closed.
+     * @param chunkSize
+     *            the maximum size of data portion returned by {@link #read()}.
+     */
+    public VirgilPrefetchDataSource(InputStream stream, Executor executor, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize");
+        }
+        this.stream = stream;
+        this.freeBuffers.add(new byte[chunkSize]);
+        this.freeBuffers.add(new byte[chunkSize]);
+        executor.execute(new PrefetchTask());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.freeBuffers.add(CLOSED);
+            this.stream.close();
+        } finally {
+            this.delete();
+        }
+    }
+
+    @Override
+    public boolean hasData() throws IOException {
+        if (this.next == null) {
+            try {
+                this.next = this.filledChunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        if (this.next.error != null) {
+            throw this.next.error;
+        }
+        return this.next.length > 0;
+    }
+
+    @Override
+    public byte[] read() throws IOException {
+        // Native code has copied the previous chunk, so its buffer could be filled again
+        if (this.current != null) {
+            this.freeBuffers.add(this.current);
+            this.current = null;
+        }
+        if (!hasData()) {
+            return new byte[0];
+        }
+        Chunk chunk = this.next;
+        this.next = null;
+        if (chunk.length < chunk.buffer.length) {
+            this.freeBuffers.add(chunk.buffer);
+            return Arrays.copyOf(chunk.buffer, chunk.length);
+        }
+        this.current = chunk.buffer;
+        return chunk.buffer;
+    }
+
+    private static class Chunk {
+        final byte[] buffer;
+        final int length;
+        final IOException error;
+
+        Chunk(byte[] buffer, int length, IOException error) {
+            this.buffer = buffer;
+            this.length = length;
+            this.error = error;
+        }
+    }
+
+    private class PrefetchTask implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    byte[] buffer = freeBuffers.take();
+                    if (buffer == CLOSED) {
+                        return;
+                    }
+                    int count = 0;
+                    while (count < buffer.length) {
+                        int bytesRead = stream.read(buffer, count, buffer.length - count);
+                        if (bytesRead < 0) {
+                            break;
+                        }
+                        count += bytesRead;
+                    }
+                    filledChunks.add(new Chunk(buffer, count, null));
+                    if (count < buffer.length) {
+                        if (count > 0) {
+                            filledChunks.add(new Chunk(null, 0, null));
+                        }
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                filledChunks.add(new Chunk(null, 0, e));
+            } catch (InterruptedException e) {
+                filledChunks.add(new Chunk(null, 0, new InterruptedIOException()));
+            }
+        }
+    }
+}
@@ -36,19 +36,34 @@
 
 package com.virgilsecurity.crypto;
 
+/**
+ * Data source which reads data from the input stream.
+ * 
+ * Stream is read with blocking reads, so sockets, pipes and compressed streams, which may report no available bytes
+ * before the end of stream, are read completely. Every chunk except the last one is filled up to the chunk size, and
+ * full chunks are returned in the same byte array.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
 public class VirgilStreamDataSource extends VirgilDataSource implements java.io.Closeable {
     private static int CHUNK_SIZE_DEFAULT = 1024 * 1024;
+    private static final int NOT_READ = -2;
+
     private java.io.InputStream stream;
-    private int chunkSize;
+    private byte[] chunk;
+    private int readAhead = NOT_READ;
 
     public VirgilStreamDataSource(java.io.InputStream stream) {
-        this.stream = stream;
-        this.chunkSize = CHUNK_SIZE_DEFAULT;
+        this(stream, CHUNK_SIZE_DEFAULT);
     }
 
     public VirgilStreamDataSource(java.io.InputStream stream, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize");
+        }
         this.stream = stream;
-        this.chunkSize = chunkSize;
+        this.chunk = new byte[chunkSize];
     }
 
     @Override
@@ -59,14 +74,30 @@ public class VirgilStreamDataSource extends VirgilDataSource implements java.io.
 
     @Override
     public boolean hasData() throws java.io.IOException {
-        return this.stream.available() > 0;
+        // Read one byte ahead, because end of stream can't be detected without blocking read
+        if (this.readAhead == NOT_READ) {
+            this.readAhead = this.stream.read();
+        }
+        return this.readAhead >= 0;
     }
 
     @Override
     public byte[] read() throws java.io.IOException {
-        final int bytesToReadNum = Math.min(this.stream.available(), this.chunkSize);
-        byte[] result = new byte[bytesToReadNum];
-        this.stream.read(result, 0, bytesToReadNum);
-        return result;
+        if (!hasData()) {
+            return new byte[0];
+        }
+        this.chunk[0] = (byte) this.readAhead;
+        this.readAhead = NOT_READ;
+
+        int count = 1;
+        while (count < this.chunk.length) {
+            int bytesRead = this.stream.read(this.chunk, count, this.chunk.length - count);
+            if (bytesRead < 0) {
+                this.readAhead = -1;
+                break;
+            }
+            count += bytesRead;
+        }
+        return (count == this.chunk.length) ? this.chunk : java.util.Arrays.copyOf(this.chunk, count);
     }
 }
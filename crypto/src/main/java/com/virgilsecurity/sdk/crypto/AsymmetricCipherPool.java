@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.virgilsecurity.crypto.VirgilAsymmetricCipher;
+
+/**
+ * Native asymmetric ciphers with the same loaded key. A cipher is taken for a single operation and returned, so
+ * concurrent operations don't share a cipher, and the number of ciphers is bounded by the number of concurrent
+ * operations with the key.
+ * 
+ * Ciphers returned after {@link #close()} are closed immediately, so the pool could be closed while other threads are
+ * still using it.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+final class AsymmetricCipherPool implements AutoCloseable {
+
+    private final byte[] key;
+    private final boolean privateKey;
+
+    private final ArrayDeque<VirgilAsymmetricCipher> idle = new ArrayDeque<>();
+    private boolean closed;
+
+    /**
+     * Create a new instance of {@code AsymmetricCipherPool}. The key is loaded immediately, so malformed key is
+     * detected here.
+     *
+     * @param key
+     *            the key data.
+     * @param privateKey
+     *            {@code true} if key is a private key, {@code false} if key is a public key.
+     */
+    AsymmetricCipherPool(byte[] key, boolean privateKey) {
+        this.key = key;
+        this.privateKey = privateKey;
+
+        release(obtain());
+    }
+
+    /**
+     * @return the cipher with loaded key. The cipher should be returned with {@link #release(VirgilAsymmetricCipher)}.
+     */
+    VirgilAsymmetricCipher obtain() {
+        VirgilAsymmetricCipher cipher;
+        synchronized (this.idle) {
+            cipher = this.idle.pollLast();
+        }
+        if (cipher != null) {
+            return cipher;
+        }
+
+        cipher = new VirgilAsymmetricCipher();
+        try {
+            if (this.privateKey) {
+                cipher.setPrivateKey(this.key);
+            } else {
+                cipher.setPublicKey(this.key);
+            }
+        } catch (RuntimeException e) {
+            cipher.close();
+            throw e;
+        }
+        return cipher;
+    }
+
+    /**
+     * @param cipher
+     *            the cipher obtained with {@link #obtain()}.
+     */
+    void release(VirgilAsymmetricCipher cipher) {
+        synchronized (this.idle) {
+            if (!this.closed) {
+                this.idle.addLast(cipher);
+                return;
+            }
+        }
+        cipher.close();
+    }
+
+    /**
+     * Free native ciphers. Ciphers which are in use are freed when they are returned.
+     */
+    @Override
+    public void close() {
+        List<VirgilAsymmetricCipher> ciphers;
+        synchronized (this.idle) {
+            this.closed = true;
+            ciphers = new ArrayList<>(this.idle);
+            this.idle.clear();
+        }
+        for (VirgilAsymmetricCipher cipher : ciphers) {
+            cipher.close();
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+import com.virgilsecurity.crypto.VirgilSymmetricCipher;
+
+/**
+ * Read-only {@link SeekableByteChannel} over a file encrypted with {@link ParallelChunkCipher}. Position and size of
+ * the channel refer to decrypted data.
+ * 
+ * Chunk positions are derived from the chunk size, so reading from an arbitrary position decrypts only the chunks
+ * which contain requested bytes. The last decrypted chunk is cached, so sequential small reads decrypt each chunk
+ * once.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+final class ChunkDecryptingChannel implements SeekableByteChannel {
+
+    private final FileChannel in;
+    private final long chunksOffset;
+    private final ParallelChunkCipher chunkCipher;
+    private final VirgilSymmetricCipher cipher;
+
+    private long position;
+    private long chunkIndex = -1;
+    private byte[] chunk;
+    private boolean open = true;
+
+    /**
+     * Create a new instance of {@code ChunkDecryptingChannel}. The channel takes ownership of the input channel.
+     *
+     * @param in
+     *            the channel with encrypted data.
+     * @param chunksOffset
+     *            the position of the first encrypted chunk in the input channel.
+     * @param chunkCipher
+     *            the chunk cipher restored from the header.
+     */
+    ChunkDecryptingChannel(FileChannel in, long chunksOffset, ParallelChunkCipher chunkCipher) {
+        this.in = in;
+        this.chunksOffset = chunksOffset;
+        this.chunkCipher = chunkCipher;
+        this.cipher = chunkCipher.newCipher(false);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.nio.channels.SeekableByteChannel#read(java.nio.ByteBuffer)
+     */
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        long size = chunkCipher.dataLength();
+        if (position >= size) {
+            return -1;
+        }
+
+        int bytesRead = 0;
+        int chunkSize = chunkCipher.chunkSize();
+        while (dst.hasRemaining() && position < size) {
+            long index = position / chunkSize;
+            if (index != chunkIndex) {
+                try {
+                    chunk = chunkCipher.decryptChunk(in, chunksOffset, index, cipher);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Chunk " + index + " couldn't be decrypted", e);
+                }
+                chunkIndex = index;
+            }
+            int chunkPosition = (int) (position - index * chunkSize);
+            int length = Math.min(dst.remaining(), chunk.length - chunkPosition);
+            dst.put(chunk, chunkPosition, length);
+
+            position += length;
+            bytesRead += length;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Not supported, the channel is read-only.
+     * 
+     * @throws NonWritableChannelException
+     *             always.
+     */
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.nio.channels.SeekableByteChannel#position()
+     */
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.nio.channels.SeekableByteChannel#position(long)
+     */
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position must be non-negative");
+        }
+        ensureOpen();
+        this.position = newPosition;
+        return this;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.nio.channels.SeekableByteChannel#size()
+     */
+    @Override
+    public synchronized long size() throws IOException {
+        ensureOpen();
+        return chunkCipher.dataLength();
+    }
+
+    /**
+     * Not supported, the channel is read-only.
+     * 
+     * @throws NonWritableChannelException
+     *             always.
+     */
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.nio.channels.Channel#isOpen()
+     */
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.nio.channels.Channel#close()
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        chunk = null;
+        try {
+            cipher.close();
+        } finally {
+            in.close();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.virgilsecurity.crypto.VirgilAsymmetricCipher;
+import com.virgilsecurity.crypto.VirgilCMSKeyTransRecipient;
+import com.virgilsecurity.crypto.VirgilCipherBase;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+import com.virgilsecurity.sdk.crypto.exceptions.DecryptionException;
+
+/**
+ * Changes key recipients of content info without touching encrypted data. Content encryption key is decrypted with the
+ * holder's private key and encrypted for new recipients, all other parts of content info are copied as is.
+ * 
+ * <pre>
+ * content info   = SEQUENCE { version, SEQUENCE { envelopedData OID, [0] enveloped data }, custom params }
+ * enveloped data = SEQUENCE { version, recipients SET, encrypted content info, ... }
+ * </pre>
+ * 
+ * Native wrappers don't expose recipient list of a parsed content info, so DER structure is walked here and only a
+ * single recipient is parsed and encoded with {@link VirgilCMSKeyTransRecipient}.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+final class ContentInfoRewrapper {
+
+    private static final int TAG_INTEGER = 0x02;
+    static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_SET = 0x31;
+    private static final int TAG_CONTEXT_0 = 0xA0;
+
+    /** DER encoded OID 1.2.840.113549.1.7.3 (envelopedData). */
+    private static final byte[] ENVELOPED_DATA_OID = new byte[] { 0x06, 0x09, 0x2A, (byte) 0x86, 0x48, (byte) 0x86,
+            (byte) 0xF7, 0x0D, 0x01, 0x07, 0x03 };
+
+    private ContentInfoRewrapper() {
+    }
+
+    /**
+     * Re-wrap content encryption key for a new set of recipients.
+     * 
+     * @param contentInfo
+     *            the content info.
+     * @param holder
+     *            the private key of one of current recipients.
+     * @param add
+     *            the public keys of recipients to be added. A recipient which already exists gets a new encrypted key.
+     * @param removeIds
+     *            the identifiers of recipients to be removed.
+     * @return the new content info.
+     * @throws CryptoException
+     *             if content info is malformed, or the holder is not a recipient.
+     * @throws IllegalArgumentException
+     *             if no recipients left.
+     */
+    static byte[] rewrap(byte[] contentInfo, PrivateKey holder, PublicKey[] add, byte[][] removeIds)
+            throws CryptoException {
+        ParsedContentInfo parsed = new ParsedContentInfo(contentInfo);
+        byte[] recipients = rewrapRecipients(parsed.recipients(), holder, (add == null) ? new PublicKey[0] : add,
+                (removeIds == null) ? new byte[0][] : removeIds);
+        return parsed.encode(recipients);
+    }
+
+    /**
+     * Get identifiers of key recipients.
+     * 
+     * @param contentInfo
+     *            the content info.
+     * @return the identifiers of key recipients.
+     * @throws CryptoException
+     *             if content info is malformed.
+     */
+    static List<byte[]> recipientIds(byte[] contentInfo) throws CryptoException {
+        List<byte[]> ids = new ArrayList<>();
+        for (byte[] recipient : new ParsedContentInfo(contentInfo).recipients()) {
+            if (tag(recipient) != TAG_SEQUENCE) {
+                continue;
+            }
+            try (VirgilCMSKeyTransRecipient keyRecipient = new VirgilCMSKeyTransRecipient()) {
+                keyRecipient.fromAsn1(recipient);
+                ids.add(keyRecipient.getRecipientIdentifier());
+            } catch (Exception e) {
+                throw new CryptoException(e);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Define size of content info at the beginning of encrypted data.
+     * 
+     * @param prefix
+     *            the beginning of encrypted data.
+     * @param limit
+     *            the maximum allowed size.
+     * @return the content info size.
+     * @throws CryptoException
+     *             if there is no content info.
+     */
+    static int contentInfoSize(byte[] prefix, long limit) throws CryptoException {
+        long size;
+        try {
+            size = VirgilCipherBase.defineContentInfoSize(prefix);
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+        if (size <= 0 || size > limit) {
+            throw new CryptoException("Content info not found");
+        }
+        return (int) size;
+    }
+
+    private static byte[] rewrapRecipients(List<byte[]> recipients, PrivateKey holder, PublicKey[] add,
+            byte[][] removeIds) throws CryptoException {
+        Set<ByteBuffer> removed = new HashSet<>();
+        for (byte[] id : removeIds) {
+            removed.add(ByteBuffer.wrap(id));
+        }
+        for (PublicKey recipient : add) {
+            removed.add(ByteBuffer.wrap(recipient.getId()));
+        }
+
+        byte[] contentKey = null;
+        List<byte[]> result = new ArrayList<>();
+        try {
+            for (byte[] recipient : recipients) {
+                if (tag(recipient) != TAG_SEQUENCE) {
+                    // Password recipient
+                    result.add(recipient);
+                    continue;
+                }
+                try (VirgilCMSKeyTransRecipient keyRecipient = new VirgilCMSKeyTransRecipient()) {
+                    keyRecipient.fromAsn1(recipient);
+                    byte[] id = keyRecipient.getRecipientIdentifier();
+                    if (contentKey == null && Arrays.equals(id, holder.getId())) {
+                        contentKey = decryptContentKey(keyRecipient.getEncryptedKey(), holder);
+                    }
+                    if (!removed.contains(ByteBuffer.wrap(id))) {
+                        result.add(recipient);
+                    }
+                } catch (DecryptionException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CryptoException(e);
+                }
+            }
+            if (contentKey == null) {
+                throw new DecryptionException(new IllegalArgumentException("holder is not a recipient"));
+            }
+
+            for (PublicKey recipient : add) {
+                try (VirgilAsymmetricCipher cipher = new VirgilAsymmetricCipher();
+                        VirgilCMSKeyTransRecipient keyRecipient = new VirgilCMSKeyTransRecipient()) {
+                    cipher.setPublicKey(recipient.getValue());
+
+                    keyRecipient.setRecipientIdentifier(recipient.getId());
+                    keyRecipient.setKeyEncryptionAlgorithm(cipher.toAsn1());
+                    keyRecipient.setEncryptedKey(cipher.encrypt(contentKey));
+                    result.add(keyRecipient.toAsn1());
+                } catch (Exception e) {
+                    throw new CryptoException(e);
+                }
+            }
+        } finally {
+            // Plain content key is wiped even if re-wrapping failed
+            if (contentKey != null) {
+                Arrays.fill(contentKey, (byte) 0);
+            }
+        }
+
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("removeIds");
+        }
+        return encode(TAG_SET, result);
+    }
+
+    private static byte[] decryptContentKey(byte[] encryptedKey, PrivateKey holder) throws DecryptionException {
+        try (VirgilAsymmetricCipher cipher = new VirgilAsymmetricCipher()) {
+            cipher.setPrivateKey(holder.getValue());
+            return cipher.decrypt(encryptedKey);
+        } catch (Exception e) {
+            throw new DecryptionException(e);
+        }
+    }
+
+    /**
+     * Content info split down to the recipients set, so it could be encoded again with other recipients.
+     */
+    private static final class ParsedContentInfo {
+
+        private final List<byte[]> outer;
+        private final List<byte[]> cmsContent;
+        private final List<byte[]> envelopedData;
+        private final int recipientsIndex;
+
+        ParsedContentInfo(byte[] contentInfo) throws CryptoException {
+            this.outer = children(contentInfo, TAG_SEQUENCE);
+            if (outer.size() < 2 || tag(outer.get(0)) != TAG_INTEGER) {
+                throw new CryptoException("Content info is malformed");
+            }
+            this.cmsContent = children(outer.get(1), TAG_SEQUENCE);
+            if (cmsContent.size() != 2 || !Arrays.equals(cmsContent.get(0), ENVELOPED_DATA_OID)) {
+                throw new CryptoException("Content info doesn't contain enveloped data");
+            }
+            List<byte[]> explicit = children(cmsContent.get(1), TAG_CONTEXT_0);
+            if (explicit.size() != 1) {
+                throw new CryptoException("Content info is malformed");
+            }
+            this.envelopedData = children(explicit.get(0), TAG_SEQUENCE);
+            int index = -1;
+            for (int i = 0; i < envelopedData.size(); i++) {
+                if (tag(envelopedData.get(i)) == TAG_SET) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                throw new CryptoException("Content info has no recipients");
+            }
+            this.recipientsIndex = index;
+        }
+
+        /**
+         * @return the encoded recipients.
+         */
+        List<byte[]> recipients() throws CryptoException {
+            return children(envelopedData.get(recipientsIndex), TAG_SET);
+        }
+
+        /**
+         * @param recipients
+         *            the encoded recipients set.
+         * @return the content info with other recipients.
+         */
+        byte[] encode(byte[] recipients) {
+            List<byte[]> newEnvelopedData = new ArrayList<>(envelopedData);
+            newEnvelopedData.set(recipientsIndex, recipients);
+            List<byte[]> newCmsContent = new ArrayList<>(cmsContent);
+            newCmsContent.set(1, ContentInfoRewrapper.encode(TAG_CONTEXT_0,
+                    ContentInfoRewrapper.encode(TAG_SEQUENCE, newEnvelopedData)));
+            List<byte[]> newOuter = new ArrayList<>(outer);
+            newOuter.set(1, ContentInfoRewrapper.encode(TAG_SEQUENCE, newCmsContent));
+            return ContentInfoRewrapper.encode(TAG_SEQUENCE, newOuter);
+        }
+
+    }
+
+    private static int tag(byte[] element) {
+        return element[0] & 0xFF;
+    }
+
+    /**
+     * Split DER element into encoded child elements.
+     * 
+     * @param element
+     *            the DER encoded element.
+     * @param expectedTag
+     *            the expected tag of the element.
+     * @return the child elements.
+     * @throws CryptoException
+     *             if element has another tag or is malformed.
+     */
+    private static List<byte[]> children(byte[] element, int expectedTag) throws CryptoException {
+        if (element.length < 2 || tag(element) != expectedTag) {
+            throw new CryptoException("Content info is malformed");
+        }
+        int[] header = header(element, 0);
+        if (header[0] + header[1] != element.length) {
+            throw new CryptoException("Content info is malformed");
+        }
+        List<byte[]> children = new ArrayList<>();
+        int offset = header[0];
+        while (offset < element.length) {
+            int[] childHeader = header(element, offset);
+            int end = offset + childHeader[0] + childHeader[1];
+            if (end > element.length) {
+                throw new CryptoException("Content info is malformed");
+            }
+            children.add(Arrays.copyOfRange(element, offset, end));
+            offset = end;
+        }
+        return children;
+    }
+
+    /**
+     * @return header size and value length of DER element starting at offset.
+     */
+    private static int[] header(byte[] data, int offset) throws CryptoException {
+        if (offset + 2 > data.length) {
+            throw new CryptoException("Content info is malformed");
+        }
+        int first = data[offset + 1] & 0xFF;
+        if (first < 0x80) {
+            return new int[] { 2, first };
+        }
+        int count = first & 0x7F;
+        if (count == 0 || count > 3 || offset + 2 + count > data.length) {
+            throw new CryptoException("Content info is malformed");
+        }
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            length = (length << 8) | (data[offset + 2 + i] & 0xFF);
+        }
+        return new int[] { 2 + count, length };
+    }
+
+    private static byte[] encode(int tag, List<byte[]> children) {
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        for (byte[] child : children) {
+            value.write(child, 0, child.length);
+        }
+        return encode(tag, value.toByteArray());
+    }
+
+    private static byte[] encode(int tag, byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(value.length + 6);
+        out.write(tag);
+        int length = value.length;
+        if (length < 0x80) {
+            out.write(length);
+        } else {
+            int count = (length > 0xFFFF) ? 3 : (length > 0xFF) ? 2 : 1;
+            out.write(0x80 | count);
+            for (int i = count - 1; i >= 0; i--) {
+                out.write(length >>> (8 * i));
+            }
+        }
+        out.write(value, 0, value.length);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+import com.virgilsecurity.sdk.crypto.exceptions.DecryptionException;
+import com.virgilsecurity.sdk.crypto.exceptions.EncryptionException;
+import com.virgilsecurity.sdk.exception.NullArgumentException;
+
+/**
+ * Keeps content info of encrypted objects apart from their encrypted bodies. Each object has a small header record in
+ * the store directory, named by the object identifier, while the body is encrypted without content info. So recipient
+ * lookups, access audits and re-wraps read and write only the header record and never open the body.
+ * 
+ * The store is a {@link KeyRotationJob.BlobStore} of header records, so
+ * {@link KeyRotationJob#rotateBlobs(java.util.Iterator, KeyRotationJob.BlobStore)} with {@link #getIds()} rotates
+ * keys of all objects touching header records only.
+ * 
+ * Records are replaced atomically. Concurrent changes of the same record are not serialized, the last one wins.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class DetachedHeaderStore implements KeyRotationJob.BlobStore {
+
+    private static final String TEMP_PREFIX = ".";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final VirgilCrypto crypto;
+    private final VirgilFileCrypto fileCrypto;
+    private final Path directory;
+
+    /**
+     * Create a new instance of {@code DetachedHeaderStore}
+     *
+     * @param crypto
+     *            the crypto.
+     * @param directory
+     *            the directory of header records. It's created if doesn't exist.
+     * @throws CryptoException
+     *             if directory couldn't be created.
+     */
+    public DetachedHeaderStore(VirgilCrypto crypto, Path directory) throws CryptoException {
+        if (crypto == null) {
+            throw new NullArgumentException("crypto");
+        }
+        if (directory == null) {
+            throw new NullArgumentException("directory");
+        }
+        this.crypto = crypto;
+        this.fileCrypto = new VirgilFileCrypto(crypto);
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * Encrypt file for recipients. Encrypted body is written without content info, content info is stored as the
+     * object's header record. The body is deleted if header record couldn't be written, since it can't be decrypted
+     * without it.
+     * 
+     * @param id
+     *            the object identifier. Letters, digits, '.', '_' and '-' are allowed, but not a leading '.'.
+     * @param in
+     *            the file to be encrypted.
+     * @param body
+     *            the file for encrypted body. Existing file is overwritten.
+     * @param recipients
+     *            the recipients public keys.
+     * @throws EncryptionException
+     *             if file couldn't be encrypted or header record couldn't be written.
+     */
+    public void encryptFile(String id, Path in, Path body, PublicKey... recipients) throws EncryptionException {
+        Path record = record(id);
+        byte[] contentInfo = this.fileCrypto.encryptFileDetached(in, body, recipients);
+        try {
+            write(record, contentInfo);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(body);
+            } catch (IOException deleteError) {
+                e.addSuppressed(deleteError);
+            }
+            throw new EncryptionException(e);
+        }
+    }
+
+    /**
+     * Decrypt object's body with content info from its header record.
+     * 
+     * @param id
+     *            the object identifier.
+     * @param body
+     *            the encrypted body.
+     * @param out
+     *            the file for decrypted data. Existing file is overwritten.
+     * @param privateKey
+     *            the recipients private key.
+     * @throws DecryptionException
+     *             if header record couldn't be read, or file couldn't be decrypted.
+     */
+    public void decryptFile(String id, Path body, Path out, PrivateKey privateKey) throws DecryptionException {
+        byte[] contentInfo;
+        try {
+            contentInfo = read(id);
+        } catch (IOException e) {
+            throw new DecryptionException(e);
+        }
+        this.fileCrypto.decryptFileDetached(body, out, contentInfo, privateKey);
+    }
+
+    /**
+     * @param id
+     *            the object identifier.
+     * @return identifiers of object's key recipients.
+     * @throws CryptoException
+     *             if header record couldn't be read.
+     */
+    public List<byte[]> getRecipientIds(String id) throws CryptoException {
+        try {
+            return this.crypto.getRecipientIds(read(id));
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * @param id
+     *            the object identifier.
+     * @param recipientId
+     *            the recipient identifier.
+     * @return {@code true} if the recipient could decrypt the object.
+     * @throws CryptoException
+     *             if header record couldn't be read.
+     */
+    public boolean isRecipient(String id, byte[] recipientId) throws CryptoException {
+        if (recipientId == null) {
+            throw new NullArgumentException("recipientId");
+        }
+        for (byte[] objectRecipientId : getRecipientIds(id)) {
+            if (Arrays.equals(objectRecipientId, recipientId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add or remove object's key recipients. Only header record is changed.
+     * 
+     * @param id
+     *            the object identifier.
+     * @param holder
+     *            the private key of one of current recipients.
+     * @param add
+     *            the public keys of recipients to be added, or {@code null}.
+     * @param removeIds
+     *            the identifiers of recipients to be removed, or {@code null}.
+     * @throws CryptoException
+     *             if header record couldn't be read or written, or the holder is not a recipient.
+     * @see VirgilCrypto#rewrap(byte[], PrivateKey, PublicKey[], byte[][])
+     */
+    public void rewrap(String id, PrivateKey holder, PublicKey[] add, byte[][] removeIds) throws CryptoException {
+        try {
+            write(id, this.crypto.rewrap(read(id), holder, add, removeIds));
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * Delete object's header record. Object's body can't be decrypted without it.
+     * 
+     * @param id
+     *            the object identifier.
+     * @return {@code true} if header record was deleted, {@code false} if it didn't exist.
+     * @throws CryptoException
+     *             if header record couldn't be deleted.
+     */
+    public boolean delete(String id) throws CryptoException {
+        try {
+            return Files.deleteIfExists(record(id));
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * @return the identifiers of all objects in name order.
+     * @throws CryptoException
+     *             if store directory couldn't be listed.
+     */
+    public List<String> getIds() throws CryptoException {
+        List<String> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                if (!name.startsWith(TEMP_PREFIX)) {
+                    ids.add(name);
+                }
+            }
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Read object's header record.
+     * 
+     * @param id
+     *            the object identifier.
+     * @return the content info.
+     * @throws IOException
+     *             if header record couldn't be read.
+     */
+    @Override
+    public byte[] read(String id) throws IOException {
+        return Files.readAllBytes(record(id));
+    }
+
+    /**
+     * Replace object's header record.
+     * 
+     * @param id
+     *            the object identifier.
+     * @param contentInfo
+     *            the content info.
+     * @throws IOException
+     *             if header record couldn't be written.
+     */
+    @Override
+    public void write(String id, byte[] contentInfo) throws IOException {
+        if (contentInfo == null) {
+            throw new NullArgumentException("contentInfo");
+        }
+        write(record(id), contentInfo);
+    }
+
+    private void write(Path record, byte[] contentInfo) throws IOException {
+        Path temp = Files.createTempFile(this.directory, TEMP_PREFIX, TEMP_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ParallelChunkCipher.writeFully(channel, ByteBuffer.wrap(contentInfo), 0);
+                // Record must be on disk before it replaces the old one
+                channel.force(true);
+            }
+            Files.move(temp, record, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private Path record(String id) {
+        if (id == null) {
+            throw new NullArgumentException("id");
+        }
+        if (id.isEmpty() || id.startsWith(TEMP_PREFIX)) {
+            throw new IllegalArgumentException("id");
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '.' || c == '_'
+                    || c == '-')) {
+                throw new IllegalArgumentException("id");
+            }
+        }
+        return this.directory.resolve(id);
+    }
+
+}
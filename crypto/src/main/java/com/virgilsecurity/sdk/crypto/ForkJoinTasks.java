@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Helpers for divide-and-conquer tasks.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+final class ForkJoinTasks {
+
+    private ForkJoinTasks() {
+    }
+
+    /**
+     * Fork both tasks and wait until both are done, even if one of them fails. Unlike
+     * {@link ForkJoinTask#invokeAll(ForkJoinTask, ForkJoinTask)}, no subtask is left running when this method throws,
+     * so the caller may release resources shared with subtasks.
+     * 
+     * @param left
+     *            the first task.
+     * @param right
+     *            the second task.
+     * @throws RuntimeException
+     *             the first exception thrown by tasks.
+     */
+    static void forkAndJoin(ForkJoinTask<?> left, ForkJoinTask<?> right) {
+        left.fork();
+        right.fork();
+        Throwable failure = join(right, null);
+        failure = join(left, failure);
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    private static Throwable join(ForkJoinTask<?> task, Throwable failure) {
+        try {
+            task.join();
+            return failure;
+        } catch (RuntimeException | Error e) {
+            return (failure == null) ? e : failure;
+        }
+    }
+
+}
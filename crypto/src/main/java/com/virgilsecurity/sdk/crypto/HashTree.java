@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.virgilsecurity.crypto.VirgilHash;
+import com.virgilsecurity.sdk.exception.NullArgumentException;
+
+/**
+ * Merkle tree of hashes of fixed-size data leaves. Leaves are hashed independently, so they could be hashed in
+ * parallel and a range of leaves could be verified without reading the whole data.
+ * 
+ * <pre>
+ * leaf hash = H(0x00 || leaf data)
+ * node hash = H(0x01 || left child hash || right child hash)
+ * </pre>
+ * 
+ * A node without a pair is moved to the next level as is. Empty data has a single empty leaf.
+ * 
+ * The tree should be stored together with data, so it could be used for partial verification. Trees of files are
+ * computed with {@code VirgilFileCrypto}, which is not available on Android.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public final class HashTree {
+
+    /** The default leaf size, 1 MB. */
+    public static final int LEAF_SIZE_DEFAULT = 1024 * 1024;
+
+    private static final byte VERSION = 1;
+    private static final byte LEAF_PREFIX = 0;
+    private static final byte NODE_PREFIX = 1;
+    private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+
+    private final HashAlgorithm algorithm;
+    private final int leafSize;
+    private final long dataLength;
+    private final byte[][] leaves;
+    private final byte[] root;
+
+    /**
+     * Create a new instance of {@code HashTree}. The root is calculated from leaf hashes.
+     *
+     * @param algorithm
+     *            the hash algorithm.
+     * @param leafSize
+     *            the size of data leaf.
+     * @param dataLength
+     *            the length of data.
+     * @param leaves
+     *            the leaf hashes.
+     */
+    HashTree(HashAlgorithm algorithm, int leafSize, long dataLength, byte[][] leaves) {
+        if (leafSize <= 0 || dataLength < 0 || leaves.length != leafCount(dataLength, leafSize)) {
+            throw new IllegalArgumentException("Hash tree is malformed");
+        }
+        this.algorithm = algorithm;
+        this.leafSize = leafSize;
+        this.dataLength = dataLength;
+        this.leaves = leaves;
+        try (VirgilHash hash = VirgilCrypto.createVirgilHash(algorithm)) {
+            for (byte[] leaf : leaves) {
+                if (leaf.length != hash.size()) {
+                    throw new IllegalArgumentException("Hash tree is malformed");
+                }
+            }
+            this.root = root(hash, leaves);
+        }
+    }
+
+    /**
+     * Restore hash tree from bytes produced by {@link #toByteArray()}.
+     * 
+     * @param data
+     *            the encoded tree.
+     * @return the hash tree.
+     * @throws IllegalArgumentException
+     *             if data is not an encoded hash tree.
+     */
+    public static HashTree fromByteArray(byte[] data) {
+        if (data == null) {
+            throw new NullArgumentException("data");
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (buffer.get() != VERSION) {
+                throw new IllegalArgumentException("Unsupported hash tree version");
+            }
+            byte[] name = new byte[buffer.get()];
+            buffer.get(name);
+            HashAlgorithm algorithm = HashAlgorithm.valueOf(new String(name, UTF8_CHARSET));
+            int leafSize = buffer.getInt();
+            long dataLength = buffer.getLong();
+            int hashSize = buffer.get() & 0xFF;
+
+            if (leafSize <= 0 || dataLength < 0 || hashSize == 0) {
+                throw new IllegalArgumentException("Hash tree is malformed");
+            }
+            long leafCount = leafCount(dataLength, leafSize);
+            if (leafCount > buffer.remaining() / hashSize || buffer.remaining() != leafCount * hashSize) {
+                throw new IllegalArgumentException("Hash tree is malformed");
+            }
+            byte[][] leaves = new byte[(int) leafCount][hashSize];
+            for (byte[] leaf : leaves) {
+                buffer.get(leaf);
+            }
+            return new HashTree(algorithm, leafSize, dataLength, leaves);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Hash tree is malformed", e);
+        }
+    }
+
+    /**
+     * @return the tree encoded as bytes.
+     */
+    public byte[] toByteArray() {
+        byte[] name = algorithm.name().getBytes(UTF8_CHARSET);
+        int hashSize = root.length;
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 1 + name.length + 4 + 8 + 1 + leaves.length * hashSize);
+        buffer.put(VERSION).put((byte) name.length).put(name).putInt(leafSize).putLong(dataLength)
+                .put((byte) hashSize);
+        for (byte[] leaf : leaves) {
+            buffer.put(leaf);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @return the hash algorithm.
+     */
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the size of data leaf. The last leaf could be shorter.
+     */
+    public int getLeafSize() {
+        return leafSize;
+    }
+
+    /**
+     * @return the length of data.
+     */
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    /**
+     * @return the number of leaves.
+     */
+    public int getLeafCount() {
+        return leaves.length;
+    }
+
+    /**
+     * @param index
+     *            the leaf index.
+     * @return the leaf hash.
+     */
+    public byte[] getLeafHash(int index) {
+        return leaves[index].clone();
+    }
+
+    /**
+     * @return the root hash.
+     */
+    public byte[] getRoot() {
+        return root.clone();
+    }
+
+    /**
+     * @return the data which is signed to sign the tree. It binds the root to tree parameters.
+     */
+    byte[] signedData() {
+        byte[] name = algorithm.name().getBytes(UTF8_CHARSET);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 1 + name.length + 4 + 8 + root.length);
+        buffer.put(VERSION).put((byte) name.length).put(name).putInt(leafSize).putLong(dataLength).put(root);
+        return buffer.array();
+    }
+
+    /**
+     * @param index
+     *            the leaf index.
+     * @param hash
+     *            the hash to compare with.
+     * @return {@code true} if the leaf hash equals to the specified one.
+     */
+    boolean leafEquals(int index, byte[] hash) {
+        return Arrays.equals(leaves[index], hash);
+    }
+
+    /**
+     * @param index
+     *            the leaf index.
+     * @return the position of the leaf in data.
+     */
+    long leafPosition(int index) {
+        return (long) index * leafSize;
+    }
+
+    /**
+     * @param index
+     *            the leaf index.
+     * @return the length of the leaf.
+     */
+    int leafLength(int index) {
+        return (int) Math.min(leafSize, dataLength - leafPosition(index));
+    }
+
+    /**
+     * @param dataLength
+     *            the length of data.
+     * @param leafSize
+     *            the size of data leaf.
+     * @return the number of leaves.
+     */
+    static long leafCount(long dataLength, int leafSize) {
+        return Math.max(1, dataLength / leafSize + (dataLength % leafSize == 0 ? 0 : 1));
+    }
+
+    /**
+     * Calculate leaf hash.
+     * 
+     * @param hash
+     *            the native hash.
+     * @param leaf
+     *            the leaf data.
+     * @return the leaf hash.
+     */
+    static byte[] hashLeaf(VirgilHash hash, byte[] leaf) {
+        hash.start();
+        hash.update(new byte[] { LEAF_PREFIX });
+        hash.update(leaf);
+        return hash.finish();
+    }
+
+    private static byte[] root(VirgilHash hash, byte[][] leaves) {
+        byte[][] level = leaves;
+        while (level.length > 1) {
+            byte[][] nextLevel = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < level.length / 2; i++) {
+                byte[] left = level[2 * i];
+                byte[] right = level[2 * i + 1];
+                byte[] node = new byte[1 + left.length + right.length];
+                node[0] = NODE_PREFIX;
+                System.arraycopy(left, 0, node, 1, left.length);
+                System.arraycopy(right, 0, node, 1 + left.length, right.length);
+                nextLevel[i] = hash.hash(node);
+            }
+            if (level.length % 2 != 0) {
+                nextLevel[nextLevel.length - 1] = level[level.length - 1];
+            }
+            level = nextLevel;
+        }
+        return level[0].clone();
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.virgilsecurity.sdk.exception.NullArgumentException;
+
+/**
+ * Keeps key pairs generated in advance, so slow key generation (e.g. RSA 4096) doesn't happen on the caller thread.
+ * 
+ * Each key type has its own capacity, which is zero by default. Taken key pairs are replaced on the background
+ * executor. If there is no ready key pair, it's generated synchronously.
+ * 
+ * Ready key pairs are kept in memory until taken, so {@link #shutdown()} the pool when it's not needed anymore.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class KeyPairPool {
+
+    private final VirgilCrypto crypto;
+    private final Executor executor;
+    private final Map<KeysType, Slot> slots;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong hitNanos = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong missNanos = new AtomicLong();
+
+    private volatile boolean shutdown;
+
+    /**
+     * Create a new instance of {@code KeyPairPool}
+     *
+     * @param crypto
+     *            the crypto which generates key pairs.
+     * @param executor
+     *            the executor key pairs are generated on in background.
+     */
+    public KeyPairPool(VirgilCrypto crypto, Executor executor) {
+        if (crypto == null) {
+            throw new NullArgumentException("crypto");
+        }
+        if (executor == null) {
+            throw new NullArgumentException("executor");
+        }
+        this.crypto = crypto;
+        this.executor = executor;
+
+        this.slots = new EnumMap<>(KeysType.class);
+        for (KeysType keysType : KeysType.values()) {
+            this.slots.put(keysType, new Slot(keysType));
+        }
+    }
+
+    /**
+     * Set the number of ready key pairs of specified type. Missing key pairs are generated in background.
+     * 
+     * @param keysType
+     *            the key type.
+     * @param capacity
+     *            the number of ready key pairs. Zero disables pregeneration.
+     */
+    public void setCapacity(KeysType keysType, int capacity) {
+        if (keysType == null) {
+            throw new NullArgumentException("keysType");
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity");
+        }
+        Slot slot = this.slots.get(keysType);
+        synchronized (slot) {
+            slot.capacity = capacity;
+            while (slot.ready.size() > capacity) {
+                slot.ready.poll();
+            }
+        }
+        refill(slot);
+    }
+
+    /**
+     * @param keysType
+     *            the key type.
+     * @return the number of ready key pairs the pool keeps for key type.
+     */
+    public int getCapacity(KeysType keysType) {
+        Slot slot = this.slots.get(keysType);
+        synchronized (slot) {
+            return slot.capacity;
+        }
+    }
+
+    /**
+     * @param keysType
+     *            the key type.
+     * @return the number of key pairs which are ready now.
+     */
+    public int size(KeysType keysType) {
+        return this.slots.get(keysType).ready.size();
+    }
+
+    /**
+     * Take a ready key pair, or generate it synchronously if there is no one.
+     * 
+     * @param keysType
+     *            the key type.
+     * @return the key pair.
+     */
+    public KeyPair generateKeys(KeysType keysType) {
+        if (keysType == null) {
+            throw new NullArgumentException("keysType");
+        }
+        long start = System.nanoTime();
+        Slot slot = this.slots.get(keysType);
+
+        KeyPair keyPair = slot.ready.poll();
+        if (keyPair != null) {
+            this.hitCount.incrementAndGet();
+            this.hitNanos.addAndGet(System.nanoTime() - start);
+        } else {
+            keyPair = this.crypto.generateKeys(keysType);
+            this.missCount.incrementAndGet();
+            this.missNanos.addAndGet(System.nanoTime() - start);
+        }
+        refill(slot);
+
+        return keyPair;
+    }
+
+    /**
+     * Stop background generation and drop all ready key pairs. Subsequent key pairs are generated synchronously.
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        for (Slot slot : this.slots.values()) {
+            synchronized (slot) {
+                slot.ready.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the number of key pairs taken from the pool.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of key pairs generated synchronously because the pool was empty.
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * @return the average time in nanoseconds to take a key pair from the pool.
+     */
+    public long getAverageHitNanos() {
+        long count = this.hitCount.get();
+        return (count == 0) ? 0 : this.hitNanos.get() / count;
+    }
+
+    /**
+     * @return the average time in nanoseconds to generate a key pair synchronously.
+     */
+    public long getAverageMissNanos() {
+        long count = this.missCount.get();
+        return (count == 0) ? 0 : this.missNanos.get() / count;
+    }
+
+    private void refill(Slot slot) {
+        synchronized (slot) {
+            while (!this.shutdown && slot.ready.size() + slot.generating < slot.capacity) {
+                slot.generating++;
+                try {
+                    this.executor.execute(new Generator(slot));
+                } catch (RejectedExecutionException e) {
+                    slot.generating--;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class Slot {
+
+        private final KeysType keysType;
+        private final BlockingQueue<KeyPair> ready = new LinkedBlockingQueue<>();
+
+        private int capacity;
+        private int generating;
+
+        Slot(KeysType keysType) {
+            this.keysType = keysType;
+        }
+    }
+
+    private class Generator implements Runnable {
+
+        private final Slot slot;
+
+        Generator(Slot slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public void run() {
+            KeyPair keyPair = null;
+            try {
+                if (!shutdown) {
+                    keyPair = crypto.generateKeys(slot.keysType);
+                }
+            } finally {
+                // Failed generation isn't retried until the next key pair is taken
+                synchronized (slot) {
+                    slot.generating--;
+                    if (keyPair != null && !shutdown && slot.ready.size() < slot.capacity) {
+                        slot.ready.offer(keyPair);
+                    }
+                }
+            }
+        }
+    }
+
+}
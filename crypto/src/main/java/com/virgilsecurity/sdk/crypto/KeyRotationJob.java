@@ -0,0 +1,702 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import com.virgilsecurity.crypto.VirgilCipherBase;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+import com.virgilsecurity.sdk.exception.NullArgumentException;
+
+/**
+ * Moves stored encrypted data from an old recipient key to new ones. Only content info is re-wrapped, see
+ * {@link VirgilCrypto#rewrap(byte[], PrivateKey, PublicKey[], byte[][])}, so encrypted data is never decrypted.
+ * 
+ * Items are rotated on the executor in parallel. Progress is saved to the checkpoint file as the number of leading
+ * items which are done, together with indexes of failed items among them, so a stopped job continues from that point
+ * when it runs again with the same items in the same order, and failed items are retried. Items which are already
+ * rotated are skipped, so items done after the last checkpoint are not rotated twice. Files are replaced atomically, so
+ * a file is never left half-written.
+ * 
+ * Rotation doesn't re-key content: the content encryption key stays the same and only its encrypted copies in the
+ * header are replaced. Anyone who gets the old private key can still open any copy of the data or of its header made
+ * before rotation, e.g. backups. Re-encrypt the data if the old key is compromised.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class KeyRotationJob {
+
+    /** The suffix of temporary files which are renamed to rotated files. */
+    static final String TEMP_SUFFIX = ".rotating";
+
+    private static final int MAX_FAILURES = 100;
+
+    private static final String POSITION = "position";
+    private static final String ROTATED = "rotated";
+    private static final String SKIPPED = "skipped";
+    private static final String RETRY = "retry";
+
+    /**
+     * Storage of encrypted blobs, which are encrypted with {@link VirgilCrypto#encrypt(byte[], PublicKey[])}, or of
+     * content info only, like {@link DetachedHeaderStore}.
+     */
+    public interface BlobStore {
+
+        /**
+         * @param id
+         *            the blob identifier.
+         * @return the blob.
+         * @throws IOException
+         *             if blob couldn't be read.
+         */
+        byte[] read(String id) throws IOException;
+
+        /**
+         * Replace the blob.
+         * 
+         * @param id
+         *            the blob identifier.
+         * @param data
+         *            the blob.
+         * @throws IOException
+         *             if blob couldn't be written.
+         */
+        void write(String id, byte[] data) throws IOException;
+
+    }
+
+    /**
+     * The result of key rotation. Counters include items done by previous runs saved to the checkpoint. Items which
+     * failed in previous runs are retried, so they are counted as failed only if they failed again.
+     */
+    public static final class Result {
+
+        private final long rotated;
+        private final long skipped;
+        private final long failed;
+        private final List<String> failures;
+
+        Result(long rotated, long skipped, long failed, List<String> failures) {
+            this.rotated = rotated;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        /**
+         * @return the number of rotated items.
+         */
+        public long getRotatedCount() {
+            return rotated;
+        }
+
+        /**
+         * @return the number of items which were already rotated.
+         */
+        public long getSkippedCount() {
+            return skipped;
+        }
+
+        /**
+         * @return the number of items which couldn't be rotated.
+         */
+        public long getFailedCount() {
+            return failed;
+        }
+
+        /**
+         * @return the descriptions of first 100 failed items in this run.
+         */
+        public List<String> getFailures() {
+            return failures;
+        }
+
+    }
+
+    private final VirgilCrypto crypto;
+    private final Executor executor;
+    private final PrivateKey oldKey;
+    private final PublicKey[] newKeys;
+
+    private Path checkpoint;
+    private int checkpointInterval = 1000;
+    private int maxPending = 64;
+
+    /**
+     * Create a new instance of {@code KeyRotationJob}
+     *
+     * @param crypto
+     *            the crypto.
+     * @param executor
+     *            the executor items are rotated on.
+     * @param oldKey
+     *            the private key which is removed from recipients.
+     * @param newKeys
+     *            the public keys which are added to recipients.
+     */
+    public KeyRotationJob(VirgilCrypto crypto, Executor executor, PrivateKey oldKey, PublicKey... newKeys) {
+        if (crypto == null) {
+            throw new NullArgumentException("crypto");
+        }
+        if (executor == null) {
+            throw new NullArgumentException("executor");
+        }
+        if (oldKey == null) {
+            throw new NullArgumentException("oldKey");
+        }
+        if (newKeys == null) {
+            throw new NullArgumentException("newKeys");
+        }
+        if (newKeys.length == 0) {
+            throw new IllegalArgumentException("newKeys");
+        }
+        this.crypto = crypto;
+        this.executor = executor;
+        this.oldKey = oldKey;
+        this.newKeys = newKeys.clone();
+    }
+
+    /**
+     * @param checkpoint
+     *            the file progress is saved to, or {@code null} to not save progress.
+     */
+    public void setCheckpoint(Path checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @return the file progress is saved to.
+     */
+    public Path getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @param checkpointInterval
+     *            the number of done items between progress saves.
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("checkpointInterval");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * @return the number of done items between progress saves.
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * @param maxPending
+     *            the maximum number of items submitted to executor and not done yet.
+     */
+    public void setMaxPending(int maxPending) {
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("maxPending");
+        }
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * @return the maximum number of items submitted to executor and not done yet.
+     */
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * Rotate all files in the directory tree. Files are visited in name order, so the order is the same on resume. The
+     * checkpoint file is skipped if it's in the tree.
+     * 
+     * @param directory
+     *            the directory with encrypted files.
+     * @return the result.
+     * @throws CryptoException
+     *             if directory couldn't be listed, or progress couldn't be saved.
+     * @see #rotateFiles(Iterator)
+     */
+    public Result rotateFiles(Path directory) throws CryptoException {
+        if (directory == null) {
+            throw new NullArgumentException("directory");
+        }
+        try {
+            return rotateFiles(new DirectoryIterator(directory, this.checkpoint));
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * Rotate files encrypted with {@link VirgilFileCrypto#encryptFile(Path, Path, PublicKey...)} or
+     * {@link VirgilFileCrypto#encryptFileParallel(Path, Path, java.util.concurrent.ForkJoinPool, PublicKey...)}. Each
+     * file is re-wrapped to a temporary file, which then replaces the original one.
+     * 
+     * @param files
+     *            the files in the same order on every run.
+     * @return the result.
+     * @throws CryptoException
+     *             if files couldn't be listed, or progress couldn't be saved.
+     */
+    public Result rotateFiles(Iterator<Path> files) throws CryptoException {
+        if (files == null) {
+            throw new NullArgumentException("files");
+        }
+        return run(files, new Rotation<Path>() {
+            @Override
+            public boolean rotate(Path file) throws Exception {
+                return rotateFile(file);
+            }
+        });
+    }
+
+    /**
+     * Rotate blobs encrypted with {@link VirgilCrypto#encrypt(byte[], PublicKey[])}.
+     * 
+     * @param ids
+     *            the blob identifiers in the same order on every run.
+     * @param store
+     *            the blob store.
+     * @return the result.
+     * @throws CryptoException
+     *             if progress couldn't be saved.
+     */
+    public Result rotateBlobs(Iterator<String> ids, final BlobStore store) throws CryptoException {
+        if (ids == null) {
+            throw new NullArgumentException("ids");
+        }
+        if (store == null) {
+            throw new NullArgumentException("store");
+        }
+        return run(ids, new Rotation<String>() {
+            @Override
+            public boolean rotate(String id) throws Exception {
+                return rotateBlob(id, store);
+            }
+        });
+    }
+
+    /**
+     * @return {@code true} if file was rotated, {@code false} if it was already rotated.
+     */
+    private boolean rotateFile(Path file) throws IOException, CryptoException {
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            byte[] contentInfo = rewrap(VirgilFileCrypto.readContentInfo(in));
+            if (contentInfo == null) {
+                return false;
+            }
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                VirgilFileCrypto.replaceContentInfo(in, out, contentInfo);
+                out.force(false);
+            }
+        } catch (IOException | CryptoException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * @return {@code true} if blob was rotated, {@code false} if it was already rotated.
+     */
+    private boolean rotateBlob(String id, BlobStore store) throws IOException, CryptoException {
+        byte[] data = store.read(id);
+        byte[] oldContentInfo;
+        try {
+            oldContentInfo = Arrays.copyOf(data, (int) VirgilCipherBase.defineContentInfoSize(data));
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+        byte[] contentInfo = rewrap(oldContentInfo);
+        if (contentInfo == null) {
+            return false;
+        }
+        byte[] rotated = Arrays.copyOf(contentInfo, contentInfo.length + data.length - oldContentInfo.length);
+        System.arraycopy(data, oldContentInfo.length, rotated, contentInfo.length,
+                data.length - oldContentInfo.length);
+        store.write(id, rotated);
+        return true;
+    }
+
+    /**
+     * Re-wrap content info from the old key to new keys. The content key is not changed, see
+     * {@link VirgilCrypto#rewrap(byte[], PrivateKey, PublicKey[], byte[][])}.
+     * 
+     * @return the re-wrapped content info, or {@code null} if content info is already rotated.
+     */
+    private byte[] rewrap(byte[] contentInfo) throws CryptoException {
+        Set<ByteBuffer> ids = new HashSet<>();
+        for (byte[] id : ContentInfoRewrapper.recipientIds(contentInfo)) {
+            ids.add(ByteBuffer.wrap(id));
+        }
+        if (ids.contains(ByteBuffer.wrap(oldKey.getId()))) {
+            return crypto.rewrap(contentInfo, oldKey, newKeys, new byte[][] { oldKey.getId() });
+        }
+        for (PublicKey newKey : newKeys) {
+            if (!ids.contains(ByteBuffer.wrap(newKey.getId()))) {
+                throw new CryptoException("Old key is not a recipient");
+            }
+        }
+        return null;
+    }
+
+    private <T> Result run(Iterator<T> items, Rotation<T> rotation) throws CryptoException {
+        Progress progress = loadProgress();
+        Set<Long> retry = progress.retry();
+        Semaphore pending = new Semaphore(this.maxPending);
+        long index = 0;
+        try {
+            try {
+                while (items.hasNext()) {
+                    T item = items.next();
+                    long itemIndex = index++;
+                    if (itemIndex >= progress.start || retry.contains(itemIndex)) {
+                        submit(item, itemIndex, rotation, progress, pending);
+                        progress.checkpoint(false);
+                    }
+                }
+            } finally {
+                pending.acquireUninterruptibly(this.maxPending);
+                pending.release(this.maxPending);
+            }
+        } catch (DirectoryListingException e) {
+            throw progress.checkpointAfter(new CryptoException(e.getCause()));
+        } catch (CryptoException e) {
+            throw progress.checkpointAfter(e);
+        } catch (RuntimeException e) {
+            throw progress.checkpointAfter(e);
+        }
+        progress.checkpoint(true);
+        return progress.result();
+    }
+
+    private <T> void submit(final T item, final long index, final Rotation<T> rotation, final Progress progress,
+            final Semaphore pending) {
+        pending.acquireUninterruptibly();
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        boolean rotated = rotation.rotate(item);
+                        progress.done(index, rotated ? ROTATED : SKIPPED, null);
+                    } catch (Exception e) {
+                        progress.done(index, null, item + ": " + e);
+                    } finally {
+                        pending.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.release();
+            throw e;
+        }
+    }
+
+    private Progress loadProgress() throws CryptoException {
+        Properties properties = new Properties();
+        if (this.checkpoint != null && Files.exists(this.checkpoint)) {
+            try (InputStream is = Files.newInputStream(this.checkpoint)) {
+                properties.load(is);
+            } catch (IOException e) {
+                throw new CryptoException(e);
+            }
+        }
+        return new Progress(properties);
+    }
+
+    private interface Rotation<T> {
+
+        boolean rotate(T item) throws Exception;
+
+    }
+
+    /**
+     * Tracks done items out of order. Only leading done items are saved, so counters of a checkpoint never include
+     * items which are rotated again on resume. Failed items among them are saved to be retried.
+     */
+    private final class Progress {
+
+        private final Properties counters;
+        /** The number of leading done items when the job started */
+        private final long start;
+        /** Indexes of failed items below position */
+        private final Set<Long> failed = new HashSet<>();
+        /** Results of done items above position, {@code null} for failed items */
+        private final Map<Long, String> results = new HashMap<>();
+        private final List<String> failures = new ArrayList<>();
+        private long position;
+        private int unsaved;
+        private CryptoException saveError;
+
+        Progress(Properties counters) throws CryptoException {
+            this.counters = counters;
+            this.position = count(POSITION);
+            this.start = this.position;
+            String retry = counters.getProperty(RETRY, "").trim();
+            if (!retry.isEmpty()) {
+                try {
+                    for (String index : retry.split(",")) {
+                        failed.add(Long.valueOf(index.trim()));
+                    }
+                } catch (NumberFormatException e) {
+                    throw new CryptoException(e);
+                }
+            }
+        }
+
+        /**
+         * @return indexes of items which failed in previous runs.
+         */
+        synchronized Set<Long> retry() {
+            return new HashSet<>(failed);
+        }
+
+        /**
+         * @param counter
+         *            the counter to increment, or {@code null} if item failed.
+         */
+        synchronized void done(long index, String counter, String failure) {
+            unsaved++;
+            if (failure != null && failures.size() < MAX_FAILURES) {
+                failures.add(failure);
+            }
+            if (index < position) {
+                // Retry of an item failed in previous runs
+                if (counter != null) {
+                    failed.remove(index);
+                    increment(counter);
+                }
+                return;
+            }
+            results.put(index, counter);
+            while (results.containsKey(position)) {
+                String result = results.remove(position);
+                if (result == null) {
+                    failed.add(position);
+                } else {
+                    increment(result);
+                }
+                position++;
+            }
+        }
+
+        /**
+         * @param force
+         *            {@code true} to save progress even if interval is not reached.
+         */
+        void checkpoint(boolean force) throws CryptoException {
+            Path file = KeyRotationJob.this.checkpoint;
+            if (file == null) {
+                return;
+            }
+            Properties snapshot;
+            synchronized (this) {
+                if (saveError != null) {
+                    throw saveError;
+                }
+                if (!force && unsaved < KeyRotationJob.this.checkpointInterval) {
+                    return;
+                }
+                unsaved = 0;
+                snapshot = new Properties();
+                snapshot.putAll(counters);
+                snapshot.setProperty(POSITION, Long.toString(position));
+                List<Long> retry = new ArrayList<>(failed);
+                Collections.sort(retry);
+                StringBuilder sb = new StringBuilder();
+                for (Long index : retry) {
+                    if (sb.length() > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(index);
+                }
+                snapshot.setProperty(RETRY, sb.toString());
+            }
+            Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+            try {
+                try (OutputStream os = Files.newOutputStream(temp)) {
+                    snapshot.store(os, null);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                synchronized (this) {
+                    saveError = new CryptoException(e);
+                }
+                throw saveError;
+            }
+        }
+
+        /**
+         * Save progress of items done before the failure, so they are not rotated again.
+         * 
+         * @param failure
+         *            the failure which stopped the job.
+         * @return the failure, with checkpoint error attached if progress couldn't be saved.
+         */
+        <E extends Exception> E checkpointAfter(E failure) {
+            try {
+                checkpoint(true);
+            } catch (CryptoException e) {
+                if (e != failure) {
+                    failure.addSuppressed(e);
+                }
+            }
+            return failure;
+        }
+
+        /**
+         * Must be called when no items are pending, so all done items are counted.
+         */
+        synchronized Result result() {
+            return new Result(count(ROTATED), count(SKIPPED), failed.size(), new ArrayList<>(failures));
+        }
+
+        private long count(String counter) {
+            return Long.parseLong(counters.getProperty(counter, "0"));
+        }
+
+        private void increment(String counter) {
+            counters.setProperty(counter, Long.toString(count(counter) + 1));
+        }
+
+    }
+
+    /**
+     * Thrown by {@link DirectoryIterator} if a directory couldn't be listed.
+     */
+    private static final class DirectoryListingException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        DirectoryListingException(IOException cause) {
+            super(cause);
+        }
+
+    }
+
+    /**
+     * Iterates over regular files of directory tree in name order. Only the path from root to current directory is
+     * listed at once, so memory doesn't depend on the number of files.
+     */
+    private static final class DirectoryIterator implements Iterator<Path> {
+
+        private final Deque<Iterator<Path>> stack = new ArrayDeque<>();
+        private final Path excluded;
+        private Path next;
+
+        DirectoryIterator(Path root, Path excluded) throws IOException {
+            this.excluded = (excluded == null) ? null : excluded.toAbsolutePath().normalize();
+            stack.push(list(root));
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !stack.isEmpty()) {
+                Iterator<Path> entries = stack.peek();
+                if (!entries.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                Path entry = entries.next();
+                if (Files.isDirectory(entry)) {
+                    try {
+                        stack.push(list(entry));
+                    } catch (IOException e) {
+                        throw new DirectoryListingException(e);
+                    }
+                } else if (Files.isRegularFile(entry) && !entry.getFileName().toString().endsWith(TEMP_SUFFIX)
+                        && !entry.toAbsolutePath().normalize().equals(excluded)) {
+                    next = entry;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Path result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private static Iterator<Path> list(Path directory) throws IOException {
+            List<Path> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    entries.add(entry);
+                }
+            }
+            Collections.sort(entries);
+            return entries.iterator();
+        }
+
+    }
+
+}
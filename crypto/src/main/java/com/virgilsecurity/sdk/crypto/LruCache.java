@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simple thread-safe cache which evicts least recently used entries.
+ * 
+ * Entries are split into segments by key hash, and each segment evicts its least recently used entries. Segments are
+ * locked separately and counters are atomic, so concurrent lookups of different keys rarely wait for each other.
+ *
+ * Subclasses can override {@link #evicted(Object)} to release resources held by evicted values.
+ *
+ * @author Andrii Iakovenko
+ *
+ * @param <K>
+ *            the key type.
+ * @param <V>
+ *            the value type.
+ */
+public class LruCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    /** Segments are not created smaller, so eviction order stays close to LRU order of the whole cache */
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    private final int capacity;
+    private final Map<K, V>[] segments;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a new instance of {@code LruCache}
+     *
+     * @param capacity
+     *            the maximum number of entries.
+     */
+    @SuppressWarnings("unchecked")
+    public LruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity");
+        }
+        this.capacity = capacity;
+
+        int segmentCount = Integer.highestOneBit(
+                Math.max(1, Math.min(MAX_SEGMENTS, capacity / MIN_SEGMENT_CAPACITY)));
+        this.segments = new Map[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // Capacity is split between segments without remainder loss
+            final int segmentCapacity = capacity / segmentCount + ((i < capacity % segmentCount) ? 1 : 0);
+            this.segments[i] = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    if (size() > segmentCapacity) {
+                        evicted(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    /**
+     * @param key
+     *            the key.
+     * @return the cached value or {@code null} if there is no value for the key.
+     */
+    public V get(K key) {
+        Map<K, V> segment = segment(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * @param key
+     *            the key.
+     * @param value
+     *            the value.
+     */
+    public void put(K key, V value) {
+        Map<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * Remove all entries. Each removed value is passed to {@link #evicted(Object)}.
+     */
+    public void clear() {
+        for (Map<K, V> segment : this.segments) {
+            synchronized (segment) {
+                for (V value : segment.values()) {
+                    evicted(value);
+                }
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the maximum number of entries.
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return the number of cached entries.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<K, V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of successful lookups.
+     */
+    public long hits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of failed lookups.
+     */
+    public long misses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the approximate share of successful lookups, or {@code 0} if there were no lookups.
+     */
+    public double hitRatio() {
+        long hits = this.hits.get();
+        long lookups = hits + this.misses.get();
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Called when the least recently used entry is evicted to free space for a new entry, or when the cache is
+     * cleared. The entry's segment is locked during the call.
+     * 
+     * @param value
+     *            the evicted value.
+     */
+    protected void evicted(V value) {
+    }
+
+    private Map<K, V> segment(K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return this.segments[hash & (this.segments.length - 1)];
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.virgilsecurity.crypto.VirgilCipher;
+import com.virgilsecurity.crypto.VirgilHash;
+import com.virgilsecurity.crypto.VirgilSigner;
+import com.virgilsecurity.crypto.VirgilStreamSigner;
+
+/**
+ * Keeps native crypto objects per thread, so they could be reused between operations instead of being allocated and
+ * freed on every call.
+ * 
+ * Objects are owned by the thread which created them and live as long as the thread, unless they are freed earlier
+ * with {@link #remove()} on the owning thread or with {@link #close()}. Objects of finished threads are freed by
+ * finalization.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+final class NativeObjectPool implements AutoCloseable {
+
+    private final ThreadLocal<PooledObjects> objects = new ThreadLocal<>();
+
+    /** Objects of all threads, so they could be freed on {@link #close()} without keeping finished threads' objects */
+    private final Set<Reference<PooledObjects>> allObjects = new HashSet<>();
+    private final ReferenceQueue<PooledObjects> collectedObjects = new ReferenceQueue<>();
+
+    /**
+     * @return the signer owned by current thread.
+     */
+    VirgilSigner signer() {
+        PooledObjects local = local();
+        if (local.signer == null) {
+            local.signer = new VirgilSigner();
+        }
+        return local.signer;
+    }
+
+    /**
+     * @return the stream signer owned by current thread.
+     */
+    VirgilStreamSigner streamSigner() {
+        PooledObjects local = local();
+        if (local.streamSigner == null) {
+            local.streamSigner = new VirgilStreamSigner();
+        }
+        return local.streamSigner;
+    }
+
+    /**
+     * @return the cipher owned by current thread. The cipher has no recipients and no custom parameters.
+     */
+    VirgilCipher cipher() {
+        PooledObjects local = local();
+        if (local.cipher == null) {
+            local.cipher = new VirgilCipher();
+        }
+        return local.cipher;
+    }
+
+    /**
+     * @param algorithm
+     *            the hash algorithm.
+     * @return the hash owned by current thread.
+     */
+    VirgilHash hash(HashAlgorithm algorithm) {
+        Map<HashAlgorithm, VirgilHash> hashes = local().hashes;
+        VirgilHash hash = hashes.get(algorithm);
+        if (hash == null) {
+            hash = VirgilCrypto.createVirgilHash(algorithm);
+            hashes.put(algorithm, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Free objects owned by current thread. The thread creates new objects if it uses the pool again.
+     */
+    void remove() {
+        PooledObjects local = this.objects.get();
+        if (local != null) {
+            this.objects.remove();
+            synchronized (this.allObjects) {
+                this.allObjects.remove(local.reference);
+            }
+            local.close();
+        }
+    }
+
+    /**
+     * Free objects of all threads. The pool shouldn't be used by other threads during the call. Threads create new
+     * objects if they use the pool again.
+     */
+    @Override
+    public void close() {
+        List<PooledObjects> closing = new ArrayList<>();
+        synchronized (this.allObjects) {
+            for (Reference<PooledObjects> reference : this.allObjects) {
+                PooledObjects pooledObjects = reference.get();
+                if (pooledObjects != null) {
+                    closing.add(pooledObjects);
+                }
+            }
+            this.allObjects.clear();
+        }
+        for (PooledObjects pooledObjects : closing) {
+            pooledObjects.close();
+        }
+        this.objects.remove();
+    }
+
+    /**
+     * Reset cipher state, so it could be used for the next operation.
+     * 
+     * @param cipher
+     *            the cipher obtained with {@link #cipher()}.
+     */
+    static void reset(VirgilCipher cipher) {
+        cipher.removeAllRecipients();
+        cipher.customParams().clear();
+    }
+
+    private PooledObjects local() {
+        PooledObjects local = this.objects.get();
+        if (local == null || local.closed) {
+            local = new PooledObjects(this.collectedObjects);
+            this.objects.set(local);
+            synchronized (this.allObjects) {
+                // Forget objects of finished threads, they are freed by finalization
+                Reference<? extends PooledObjects> collected;
+                while ((collected = this.collectedObjects.poll()) != null) {
+                    this.allObjects.remove(collected);
+                }
+                this.allObjects.add(local.reference);
+            }
+        }
+        return local;
+    }
+
+    private static class PooledObjects implements AutoCloseable {
+        private final Reference<PooledObjects> reference;
+        private volatile boolean closed;
+
+        private VirgilSigner signer;
+        private VirgilStreamSigner streamSigner;
+        private VirgilCipher cipher;
+        private final Map<HashAlgorithm, VirgilHash> hashes = new EnumMap<>(HashAlgorithm.class);
+
+        PooledObjects(ReferenceQueue<PooledObjects> queue) {
+            this.reference = new WeakReference<>(this, queue);
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+            if (this.signer != null) {
+                this.signer.close();
+            }
+            if (this.streamSigner != null) {
+                this.streamSigner.close();
+            }
+            if (this.cipher != null) {
+                this.cipher.close();
+            }
+            for (VirgilHash hash : this.hashes.values()) {
+                hash.close();
+            }
+        }
+    }
+
+}
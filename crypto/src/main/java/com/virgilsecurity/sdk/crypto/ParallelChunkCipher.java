@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.virgilsecurity.crypto.VirgilSymmetricCipher;
+
+/**
+ * Encrypts and decrypts files split into independent chunks, so chunks could be processed in parallel.
+ * 
+ * <pre>
+ * container   = header length (4 bytes, big-endian) || header || chunk[0] || ... || chunk[n - 1]
+ * header      = key material encrypted for recipients, with embedded content info
+ * key material = version (1 byte) || data key (32 bytes) || nonce (12 bytes) || chunk size (4 bytes)
+ *               || data length (8 bytes)
+ * chunk[i]    = AES-256-GCM(data key, nonce XOR i, data chunk i) || authentication tag (16 bytes)
+ * </pre>
+ * 
+ * Chunk positions in both files are known in advance, so each chunk is read and written with positional I/O and
+ * the output is in order regardless of which thread processed the chunk.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+final class ParallelChunkCipher {
+
+    static final int CHUNK_SIZE_DEFAULT = 64 * 1024;
+
+    static final int HEADER_LENGTH_SIZE = 4;
+    static final int KEY_MATERIAL_SIZE = 57;
+
+    private static final byte VERSION = 1;
+    private static final int KEY_SIZE = 32;
+    private static final int NONCE_SIZE = 12;
+    private static final int TAG_SIZE = 16;
+
+    /** The number of chunks processed by a single task. */
+    private static final int CHUNKS_PER_TASK = 16;
+
+    private final byte[] dataKey;
+    private final byte[] nonce;
+    private final int chunkSize;
+    private final long dataLength;
+
+    /**
+     * Create a new instance of {@code ParallelChunkCipher}
+     *
+     * @param dataKey
+     *            the data key.
+     * @param nonce
+     *            the nonce which is combined with chunk index.
+     * @param chunkSize
+     *            the size of data chunk.
+     * @param dataLength
+     *            the data length.
+     */
+    ParallelChunkCipher(byte[] dataKey, byte[] nonce, int chunkSize, long dataLength) {
+        if (dataKey.length != KEY_SIZE || nonce.length != NONCE_SIZE || chunkSize <= 0 || dataLength < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.dataKey = dataKey;
+        this.nonce = nonce;
+        this.chunkSize = chunkSize;
+        this.dataLength = dataLength;
+    }
+
+    /**
+     * Create cipher with a new data key.
+     * 
+     * @param randomBytes
+     *            the random bytes used as data key and nonce.
+     * @param chunkSize
+     *            the size of data chunk.
+     * @param dataLength
+     *            the data length.
+     * @return the cipher.
+     */
+    static ParallelChunkCipher create(byte[] randomBytes, int chunkSize, long dataLength) {
+        byte[] dataKey = new byte[KEY_SIZE];
+        byte[] nonce = new byte[NONCE_SIZE];
+        System.arraycopy(randomBytes, 0, dataKey, 0, KEY_SIZE);
+        System.arraycopy(randomBytes, KEY_SIZE, nonce, 0, NONCE_SIZE);
+        return new ParallelChunkCipher(dataKey, nonce, chunkSize, dataLength);
+    }
+
+    /**
+     * @return the number of random bytes required by {@link #create(byte[], int, long)}.
+     */
+    static int randomBytesSize() {
+        return KEY_SIZE + NONCE_SIZE;
+    }
+
+    /**
+     * Restore cipher from key material.
+     * 
+     * @param keyMaterial
+     *            the key material.
+     * @return the cipher.
+     * @throws IllegalArgumentException
+     *             if key material is malformed.
+     */
+    static ParallelChunkCipher fromKeyMaterial(byte[] keyMaterial) {
+        if (keyMaterial.length != KEY_MATERIAL_SIZE || keyMaterial[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported key material");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(keyMaterial, 1, KEY_MATERIAL_SIZE - 1);
+        byte[] dataKey = new byte[KEY_SIZE];
+        byte[] nonce = new byte[NONCE_SIZE];
+        buffer.get(dataKey);
+        buffer.get(nonce);
+        return new ParallelChunkCipher(dataKey, nonce, buffer.getInt(), buffer.getLong());
+    }
+
+    /**
+     * @return the key material which should be encrypted for recipients.
+     */
+    byte[] keyMaterial() {
+        ByteBuffer buffer = ByteBuffer.allocate(KEY_MATERIAL_SIZE);
+        buffer.put(VERSION).put(dataKey).put(nonce).putInt(chunkSize).putLong(dataLength);
+        return buffer.array();
+    }
+
+    /**
+     * @return the data length.
+     */
+    long dataLength() {
+        return dataLength;
+    }
+
+    /**
+     * @return the number of chunks.
+     */
+    long chunksCount() {
+        return (dataLength + chunkSize - 1) / chunkSize;
+    }
+
+    /**
+     * @return the length of all encrypted chunks.
+     */
+    long encryptedLength() {
+        return dataLength + chunksCount() * TAG_SIZE;
+    }
+
+    /**
+     * Encrypt all chunks.
+     * 
+     * @param in
+     *            the channel with data.
+     * @param out
+     *            the channel for encrypted data.
+     * @param outOffset
+     *            the position of the first encrypted chunk in the output channel.
+     * @param pool
+     *            the pool which encrypts chunks, or {@code null} to encrypt on the calling thread.
+     */
+    void encrypt(FileChannel in, FileChannel out, long outOffset, ForkJoinPool pool) {
+        run(new ChunkTask(pool != null, true, in, 0, out, outOffset, 0, chunksCount()), pool);
+    }
+
+    /**
+     * Decrypt all chunks.
+     * 
+     * @param in
+     *            the channel with encrypted data.
+     * @param inOffset
+     *            the position of the first encrypted chunk in the input channel.
+     * @param out
+     *            the channel for decrypted data.
+     * @param pool
+     *            the pool which decrypts chunks, or {@code null} to decrypt on the calling thread.
+     */
+    void decrypt(FileChannel in, long inOffset, FileChannel out, ForkJoinPool pool) {
+        run(new ChunkTask(pool != null, false, in, inOffset, out, 0, 0, chunksCount()), pool);
+    }
+
+    /**
+     * Write container header.
+     * 
+     * @param out
+     *            the channel for encrypted data.
+     * @param header
+     *            the encrypted key material.
+     * @return the position of the first encrypted chunk.
+     * @throws IOException
+     *             if header couldn't be written.
+     */
+    static long writeHeader(FileChannel out, byte[] header) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH_SIZE + header.length);
+        buffer.putInt(header.length).put(header).flip();
+        writeFully(out, buffer, 0);
+        return buffer.capacity();
+    }
+
+    /**
+     * Read container header.
+     * 
+     * @param in
+     *            the channel with encrypted data.
+     * @return the encrypted key material.
+     * @throws IOException
+     *             if header couldn't be read.
+     */
+    static byte[] readHeader(FileChannel in) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(HEADER_LENGTH_SIZE);
+        readFully(in, lengthBuffer, 0);
+        int headerLength = lengthBuffer.getInt(0);
+        if (headerLength <= 0 || headerLength > in.size() - HEADER_LENGTH_SIZE) {
+            throw new IOException("Encrypted data is malformed");
+        }
+        ByteBuffer header = ByteBuffer.allocate(headerLength);
+        readFully(in, header, HEADER_LENGTH_SIZE);
+        return header.array();
+    }
+
+    /**
+     * @return the size of data chunk.
+     */
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Create symmetric cipher configured with data key.
+     * 
+     * @param encrypt
+     *            {@code true} to create cipher for encryption, {@code false} for decryption.
+     * @return the cipher.
+     */
+    VirgilSymmetricCipher newCipher(boolean encrypt) {
+        VirgilSymmetricCipher cipher = new VirgilSymmetricCipher(VirgilSymmetricCipher.Algorithm.AES_256_GCM);
+        if (encrypt) {
+            cipher.setEncryptionKey(dataKey);
+        } else {
+            cipher.setDecryptionKey(dataKey);
+        }
+        return cipher;
+    }
+
+    /**
+     * Decrypt single chunk.
+     * 
+     * @param in
+     *            the channel with encrypted data.
+     * @param inOffset
+     *            the position of the first encrypted chunk in the input channel.
+     * @param index
+     *            the chunk index.
+     * @param cipher
+     *            the cipher created with {@link #newCipher(boolean)} for decryption.
+     * @return the decrypted chunk.
+     * @throws IOException
+     *             if chunk couldn't be read.
+     */
+    byte[] decryptChunk(FileChannel in, long inOffset, long index, VirgilSymmetricCipher cipher) throws IOException {
+        return cryptChunk(false, in, inOffset, index, cipher, null);
+    }
+
+    private byte[] cryptChunk(boolean encrypt, FileChannel in, long inOffset, long index,
+            VirgilSymmetricCipher cipher, byte[] fullChunk) throws IOException {
+        int length = (int) Math.min(chunkSize, dataLength - dataChunkPosition(index));
+        if (!encrypt) {
+            length += TAG_SIZE;
+        }
+        ByteBuffer input = ByteBuffer
+                .wrap((fullChunk != null && length == fullChunk.length) ? fullChunk : new byte[length]);
+        readFully(in, input, inOffset + (encrypt ? dataChunkPosition(index) : encryptedChunkPosition(index)));
+
+        return cipher.crypt(input.array(), chunkNonce(index));
+    }
+
+    private long dataChunkPosition(long index) {
+        return index * chunkSize;
+    }
+
+    private long encryptedChunkPosition(long index) {
+        return index * ((long) chunkSize + TAG_SIZE);
+    }
+
+    private static void run(ChunkTask task, ForkJoinPool pool) {
+        if (pool == null) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    private byte[] chunkNonce(long index) {
+        byte[] chunkNonce = nonce.clone();
+        for (int i = 0; i < 8; i++) {
+            chunkNonce[NONCE_SIZE - 1 - i] ^= (byte) (index >>> (8 * i));
+        }
+        return chunkNonce;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, position + buffer.position());
+            if (bytesRead < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Split into subtasks, which is disabled when task runs on the calling thread. */
+        private final boolean parallel;
+        private final boolean encrypt;
+        private final FileChannel in;
+        private final long inOffset;
+        private final FileChannel out;
+        private final long outOffset;
+        private final long from;
+        private final long to;
+
+        ChunkTask(boolean parallel, boolean encrypt, FileChannel in, long inOffset, FileChannel out, long outOffset,
+                long from, long to) {
+            this.parallel = parallel;
+            this.encrypt = encrypt;
+            this.in = in;
+            this.inOffset = inOffset;
+            this.out = out;
+            this.outOffset = outOffset;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (parallel && to - from > CHUNKS_PER_TASK) {
+                long middle = (from + to) >>> 1;
+                ForkJoinTasks.forkAndJoin(new ChunkTask(true, encrypt, in, inOffset, out, outOffset, from, middle),
+                        new ChunkTask(true, encrypt, in, inOffset, out, outOffset, middle, to));
+                return;
+            }
+
+            try (VirgilSymmetricCipher cipher = newCipher(encrypt)) {
+                // Native code takes whole arrays, so the buffer is reused for full chunks only
+                byte[] fullChunk = new byte[encrypt ? chunkSize : chunkSize + TAG_SIZE];
+                for (long i = from; i < to; i++) {
+                    byte[] output = cryptChunk(encrypt, in, inOffset, i, cipher, fullChunk);
+                    long outPosition = encrypt ? encryptedChunkPosition(i) : dataChunkPosition(i);
+                    writeFully(out, ByteBuffer.wrap(output), outOffset + outPosition);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import com.virgilsecurity.crypto.VirgilAsymmetricCipher;
+
+/**
+ * A private key which is already loaded into the native asymmetric cipher. Use it with {@link VirgilCrypto} to avoid
+ * parsing of the key on every operation. Concurrent operations with the key use separate native contexts, which are
+ * reused by later operations and freed on {@link #close()}.
+ * 
+ * @see VirgilCrypto#preparePrivateKey(PrivateKey)
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public final class PreparedPrivateKey implements PrivateKey, AutoCloseable {
+
+    private final byte[] id;
+    private final byte[] value;
+
+    private final AsymmetricCipherPool ciphers;
+
+    /**
+     * Create a new instance of {@code PreparedPrivateKey}
+     *
+     * @param privateKey
+     *            the private key to be prepared.
+     */
+    PreparedPrivateKey(PrivateKey privateKey) {
+        this.id = privateKey.getId();
+        this.value = privateKey.getValue();
+        this.ciphers = new AsymmetricCipherPool(this.value, true);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.PrivateKey#getId()
+     */
+    @Override
+    public byte[] getId() {
+        return this.id;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.PrivateKey#getValue()
+     */
+    @Override
+    public byte[] getValue() {
+        return this.value;
+    }
+
+    /**
+     * Sign the digest with the loaded key.
+     * 
+     * @param digest
+     *            the digest.
+     * @param hashType
+     *            the type of hash the digest was calculated with.
+     * @return the raw signature.
+     */
+    byte[] sign(byte[] digest, int hashType) {
+        VirgilAsymmetricCipher cipher = this.ciphers.obtain();
+        try {
+            return cipher.sign(digest, hashType);
+        } finally {
+            this.ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Free native contexts with the loaded key. The key stays usable, but it is loaded again for every operation.
+     * Contexts are also freed when {@link VirgilCrypto} drops the key from its cache of prepared keys.
+     */
+    @Override
+    public void close() {
+        this.ciphers.close();
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.virgilsecurity.crypto.VirgilAsymmetricCipher;
+import com.virgilsecurity.crypto.VirgilCipher;
+import com.virgilsecurity.crypto.VirgilKeyPair;
+
+/**
+ * A fixed set of encryption recipients, which keys are validated, converted to DER and deduplicated once. Use it with
+ * {@link VirgilCrypto#encrypt(byte[], RecipientSet)} to encrypt many messages for the same group without preparing
+ * the recipients' keys on each call.
+ * 
+ * @see VirgilCrypto#createRecipientSet(PublicKey...)
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public final class RecipientSet {
+
+    private final List<PublicKey> recipients;
+    private final byte[][] ids;
+    private final byte[][] values;
+
+    /**
+     * Create a new instance of {@code RecipientSet}. Recipients with the same identifier are added only once.
+     *
+     * @param recipients
+     *            the recipients' public keys. Must be validated by caller.
+     */
+    RecipientSet(PublicKey[] recipients) {
+        Map<ByteBuffer, PublicKey> keys = new LinkedHashMap<>();
+        for (PublicKey recipient : recipients) {
+            byte[] id = recipient.getId();
+            if (!keys.containsKey(ByteBuffer.wrap(id))) {
+                byte[] value = VirgilKeyPair.publicKeyToDER(recipient.getValue());
+                // Fail fast if key is malformed
+                try (VirgilAsymmetricCipher cipher = new VirgilAsymmetricCipher()) {
+                    cipher.setPublicKey(value);
+                }
+                keys.put(ByteBuffer.wrap(id.clone()), new VirgilPublicKey(id.clone(), value));
+            }
+        }
+        this.recipients = Collections.unmodifiableList(new ArrayList<>(keys.values()));
+
+        this.ids = new byte[keys.size()][];
+        this.values = new byte[keys.size()][];
+        int i = 0;
+        for (PublicKey recipient : this.recipients) {
+            this.ids[i] = recipient.getId();
+            this.values[i] = recipient.getValue();
+            i++;
+        }
+    }
+
+    /**
+     * @return the recipients' public keys in order they were added.
+     */
+    public List<PublicKey> getRecipients() {
+        return this.recipients;
+    }
+
+    /**
+     * @return the number of distinct recipients.
+     */
+    public int size() {
+        return this.ids.length;
+    }
+
+    /**
+     * Add all recipients to the cipher.
+     * 
+     * @param cipher
+     *            the cipher without recipients.
+     */
+    void addTo(VirgilCipher cipher) {
+        for (int i = 0; i < this.ids.length; i++) {
+            cipher.addKeyRecipient(this.ids[i], this.values[i]);
+        }
+    }
+
+}
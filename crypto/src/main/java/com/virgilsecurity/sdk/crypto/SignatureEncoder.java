@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.util.Arrays;
+
+/**
+ * Encodes and decodes Virgil signatures. A signature is an ASN.1 structure:
+ * 
+ * <pre>
+ * VirgilSign ::= SEQUENCE {
+ *     hashAlgorithm AlgorithmIdentifier,
+ *     signature OCTET STRING
+ * }
+ * </pre>
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+final class SignatureEncoder {
+
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_OCTET_STRING = 0x04;
+
+    private SignatureEncoder() {
+    }
+
+    /**
+     * Build signature from hash algorithm identifier and raw signature.
+     * 
+     * @param hashAlgorithm
+     *            the DER encoded hash algorithm identifier.
+     * @param rawSignature
+     *            the signature produced by asymmetric cipher.
+     * @return the signature.
+     */
+    static byte[] encode(byte[] hashAlgorithm, byte[] rawSignature) {
+        int octetStringLength = 1 + lengthSize(rawSignature.length) + rawSignature.length;
+        int contentLength = hashAlgorithm.length + octetStringLength;
+
+        byte[] result = new byte[1 + lengthSize(contentLength) + contentLength];
+        int pos = 0;
+        result[pos++] = TAG_SEQUENCE;
+        pos = writeLength(result, pos, contentLength);
+        System.arraycopy(hashAlgorithm, 0, result, pos, hashAlgorithm.length);
+        pos += hashAlgorithm.length;
+        result[pos++] = TAG_OCTET_STRING;
+        pos = writeLength(result, pos, rawSignature.length);
+        System.arraycopy(rawSignature, 0, result, pos, rawSignature.length);
+
+        return result;
+    }
+
+    /**
+     * Split signature to hash algorithm identifier and raw signature.
+     * 
+     * @param signature
+     *            the signature.
+     * @return the array of two elements: DER encoded hash algorithm identifier and raw signature.
+     * @throws IllegalArgumentException
+     *             if signature is malformed.
+     */
+    static byte[][] decode(byte[] signature) {
+        int[] pos = new int[] { 0 };
+        int contentLength = readHeader(signature, pos, TAG_SEQUENCE);
+        if (pos[0] + contentLength != signature.length) {
+            throw new IllegalArgumentException("signature");
+        }
+
+        int algorithmStart = pos[0];
+        int algorithmLength = readHeader(signature, pos, TAG_SEQUENCE);
+        pos[0] += algorithmLength;
+        byte[] hashAlgorithm = Arrays.copyOfRange(signature, algorithmStart, pos[0]);
+
+        int rawLength = readHeader(signature, pos, TAG_OCTET_STRING);
+        if (pos[0] + rawLength != signature.length) {
+            throw new IllegalArgumentException("signature");
+        }
+        byte[] rawSignature = Arrays.copyOfRange(signature, pos[0], signature.length);
+
+        return new byte[][] { hashAlgorithm, rawSignature };
+    }
+
+    private static int lengthSize(int length) {
+        if (length < 0x80) {
+            return 1;
+        }
+        int size = 1;
+        for (int value = length; value > 0; value >>>= 8) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeLength(byte[] buffer, int pos, int length) {
+        if (length < 0x80) {
+            buffer[pos++] = (byte) length;
+            return pos;
+        }
+        int octets = lengthSize(length) - 1;
+        buffer[pos++] = (byte) (0x80 | octets);
+        for (int i = octets - 1; i >= 0; i--) {
+            buffer[pos++] = (byte) (length >>> (8 * i));
+        }
+        return pos;
+    }
+
+    private static int readHeader(byte[] buffer, int[] pos, int tag) {
+        if (pos[0] + 2 > buffer.length || (buffer[pos[0]] & 0xFF) != tag) {
+            throw new IllegalArgumentException("signature");
+        }
+        pos[0]++;
+        int length = buffer[pos[0]++] & 0xFF;
+        if (length >= 0x80) {
+            int octets = length & 0x7F;
+            if (octets == 0 || octets > 3 || pos[0] + octets > buffer.length) {
+                throw new IllegalArgumentException("signature");
+            }
+            length = 0;
+            for (int i = 0; i < octets; i++) {
+                length = (length << 8) | (buffer[pos[0]++] & 0xFF);
+            }
+        }
+        if (pos[0] + length > buffer.length) {
+            throw new IllegalArgumentException("signature");
+        }
+        return length;
+    }
+
+}
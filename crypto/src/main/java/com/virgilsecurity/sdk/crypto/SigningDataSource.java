@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.virgilsecurity.crypto.VirgilDataSource;
+import com.virgilsecurity.crypto.VirgilHash;
+
+/**
+ * Data source which hashes data of another source while it's read, and appends signature of the data as a trailer
+ * when the source is exhausted.
+ * 
+ * <pre>
+ * data || signature || signature length (2 bytes, big-endian)
+ * </pre>
+ * 
+ * Signature is the same as {@link VirgilCrypto#sign(byte[], PrivateKey)} makes for the data.
+ *
+ * @author Andrii Iakovenko
+ *
+ * @see VerifyingDataSink
+ */
+class SigningDataSource extends VirgilDataSource {
+
+    /** The maximum size of signature in trailer. */
+    static final int MAX_SIGNATURE_SIZE = 4096;
+
+    /** The size of trailer field with signature length. */
+    static final int SIGNATURE_LENGTH_SIZE = 2;
+
+    private final VirgilDataSource source;
+    private final VirgilHash hash;
+    private final PreparedPrivateKey privateKey;
+
+    private boolean signed;
+
+    /**
+     * Create a new instance of {@code SigningDataSource}. The source takes ownership of the wrapped source.
+     *
+     * @param source
+     *            the source of data to be signed.
+     * @param hash
+     *            the hash of signature algorithm.
+     * @param privateKey
+     *            the signer's private key.
+     */
+    SigningDataSource(VirgilDataSource source, VirgilHash hash, PreparedPrivateKey privateKey) {
+        this.source = source;
+        this.hash = hash;
+        this.privateKey = privateKey;
+        this.hash.start();
+    }
+
+    @Override
+    public boolean hasData() throws IOException {
+        return !this.signed;
+    }
+
+    @Override
+    public byte[] read() throws IOException {
+        if (this.source.hasData()) {
+            byte[] data = this.source.read();
+            this.hash.update(data);
+            return data;
+        }
+        if (this.signed) {
+            return new byte[0];
+        }
+        this.signed = true;
+
+        byte[] rawSignature = this.privateKey.sign(this.hash.finish(), this.hash.type());
+        byte[] signature = SignatureEncoder.encode(VirgilCrypto.signatureHashAlgorithmId(), rawSignature);
+        if (signature.length > MAX_SIGNATURE_SIZE) {
+            throw new IOException("Signature is too long");
+        }
+        return ByteBuffer.allocate(signature.length + SIGNATURE_LENGTH_SIZE).put(signature)
+                .putShort((short) signature.length).array();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.source.close();
+        } finally {
+            delete();
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.virgilsecurity.crypto.VirgilDataSink;
+import com.virgilsecurity.crypto.VirgilHash;
+
+/**
+ * Data sink which strips the signature trailer made by {@link SigningDataSource}, passes data to another sink and
+ * hashes it. The last bytes are held back until {@link #finish()}, because trailer length is known at the end only.
+ * 
+ * Data is written to the wrapped sink before signature is verified, so it should be discarded if verification fails.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+class VerifyingDataSink extends VirgilDataSink {
+
+    private static final int MAX_TRAILER_SIZE = SigningDataSource.MAX_SIGNATURE_SIZE
+            + SigningDataSource.SIGNATURE_LENGTH_SIZE;
+
+    private final VirgilDataSink sink;
+    private final VirgilHash hash;
+    private final PreparedPublicKey publicKey;
+
+    private byte[] tail = new byte[0];
+
+    /**
+     * Create a new instance of {@code VerifyingDataSink}. The sink takes ownership of the wrapped sink.
+     *
+     * @param sink
+     *            the sink for data without trailer.
+     * @param hash
+     *            the hash of signature algorithm.
+     * @param publicKey
+     *            the signer's public key.
+     */
+    VerifyingDataSink(VirgilDataSink sink, VirgilHash hash, PreparedPublicKey publicKey) {
+        this.sink = sink;
+        this.hash = hash;
+        this.publicKey = publicKey;
+        this.hash.start();
+    }
+
+    @Override
+    public boolean isGood() throws IOException {
+        return this.sink.isGood();
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        int length = this.tail.length + data.length;
+        if (length <= MAX_TRAILER_SIZE) {
+            byte[] newTail = Arrays.copyOf(this.tail, length);
+            System.arraycopy(data, 0, newTail, this.tail.length, data.length);
+            this.tail = newTail;
+            return;
+        }
+
+        int dataLength = length - MAX_TRAILER_SIZE;
+        byte[] part = new byte[dataLength];
+        byte[] newTail = new byte[MAX_TRAILER_SIZE];
+        if (dataLength <= this.tail.length) {
+            System.arraycopy(this.tail, 0, part, 0, dataLength);
+            System.arraycopy(this.tail, dataLength, newTail, 0, this.tail.length - dataLength);
+            System.arraycopy(data, 0, newTail, this.tail.length - dataLength, data.length);
+        } else {
+            System.arraycopy(this.tail, 0, part, 0, this.tail.length);
+            System.arraycopy(data, 0, part, this.tail.length, dataLength - this.tail.length);
+            System.arraycopy(data, dataLength - this.tail.length, newTail, 0, MAX_TRAILER_SIZE);
+        }
+        this.tail = newTail;
+        writeData(part);
+    }
+
+    /**
+     * Write the rest of data and verify signature.
+     * 
+     * @return {@code true} if signature is valid.
+     * @throws IOException
+     *             if data couldn't be written or trailer is malformed.
+     */
+    boolean finish() throws IOException {
+        int length = this.tail.length;
+        if (length < SigningDataSource.SIGNATURE_LENGTH_SIZE) {
+            throw new IOException("Signature is missing");
+        }
+        int signatureLength = ((this.tail[length - 2] & 0xFF) << 8) | (this.tail[length - 1] & 0xFF);
+        int dataLength = length - SigningDataSource.SIGNATURE_LENGTH_SIZE - signatureLength;
+        if (signatureLength == 0 || dataLength < 0) {
+            throw new IOException("Signature is missing");
+        }
+        if (dataLength > 0) {
+            writeData(Arrays.copyOf(this.tail, dataLength));
+        }
+        byte[] signature = Arrays.copyOfRange(this.tail, dataLength, dataLength + signatureLength);
+        this.tail = new byte[0];
+
+        byte[][] parts = SignatureEncoder.decode(signature);
+        if (!Arrays.equals(parts[0], VirgilCrypto.signatureHashAlgorithmId())) {
+            return false;
+        }
+        return this.publicKey.verify(this.hash.finish(), parts[1], this.hash.type());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.sink.close();
+        } finally {
+            delete();
+        }
+    }
+
+    private void writeData(byte[] data) throws IOException {
+        this.hash.update(data);
+        this.sink.write(data);
+    }
+
+}
@@ -32,15 +32,24 @@ package com.virgilsecurity.sdk.crypto;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.virgilsecurity.crypto.VirgilAsyncDataSink;
 import com.virgilsecurity.crypto.VirgilCipher;
+import com.virgilsecurity.crypto.VirgilCipherBase;
 import com.virgilsecurity.crypto.VirgilCustomParams;
 import com.virgilsecurity.crypto.VirgilDataSink;
 import com.virgilsecurity.crypto.VirgilDataSource;
 import com.virgilsecurity.crypto.VirgilHash;
-import com.virgilsecurity.crypto.VirgilHash.Algorithm;
 import com.virgilsecurity.crypto.VirgilKeyPair;
+import com.virgilsecurity.crypto.VirgilPrefetchDataSource;
 import com.virgilsecurity.crypto.VirgilSigner;
 import com.virgilsecurity.crypto.VirgilStreamCipher;
 import com.virgilsecurity.crypto.VirgilStreamDataSink;
@@ -64,11 +73,44 @@ import com.virgilsecurity.sdk.exception.NullArgumentException;
  * @see PrivateKey
  *
  */
-public class VirgilCrypto implements Crypto {
+public class VirgilCrypto implements Crypto, PublicKeyPreparer, AutoCloseable {
 
     private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
     private static final byte[] CUSTOM_PARAM_SIGNATURE = "VIRGIL-DATA-SIGNATURE".getBytes(UTF8_CHARSET);
+    /** Marks encrypted data which ends with signature trailer */
+    private static final byte[] CUSTOM_PARAM_SIGNATURE_TRAILER = "VIRGIL-DATA-SIGNATURE-TRAILER"
+            .getBytes(UTF8_CHARSET);
+    private static final int SIGNATURE_TRAILER_VERSION = 1;
+
+    /** The hash algorithm used by {@link VirgilSigner} by default */
+    static final HashAlgorithm SIGNATURE_HASH_ALGORITHM = HashAlgorithm.SHA384;
+    private static final int PREPARED_KEYS_CACHE_CAPACITY = 64;
+
+    /** The size of data part passed to native hash by {@link #computeHash(InputStream, HashAlgorithm)}. */
+    private static final int HASH_CHUNK_SIZE = 1024 * 1024;
+
+    private static volatile byte[] signatureHashAlgorithmId;
+
     private KeysType defaultKeyPairType;
+    private NativeObjectPool objectPool;
+    private volatile Executor streamExecutor;
+    private volatile LruCache<ByteBuffer, VirgilPublicKey> importedPublicKeys;
+
+    /** Keys evicted from cache free their idle native contexts. */
+    private final LruCache<ByteBuffer, PreparedPrivateKey> preparedPrivateKeys = new LruCache<ByteBuffer,
+            PreparedPrivateKey>(PREPARED_KEYS_CACHE_CAPACITY) {
+        @Override
+        protected void evicted(PreparedPrivateKey value) {
+            value.close();
+        }
+    };
+    private final LruCache<ByteBuffer, PreparedPublicKey> preparedPublicKeys = new LruCache<ByteBuffer,
+            PreparedPublicKey>(PREPARED_KEYS_CACHE_CAPACITY) {
+        @Override
+        protected void evicted(PreparedPublicKey value) {
+            value.close();
+        }
+    };
 
     /**
      * Create new instance of {@link VirgilCrypto}.
@@ -86,6 +128,22 @@ public class VirgilCrypto implements Crypto {
         this.defaultKeyPairType = keysType;
     }
 
+    /**
+     * Create new instance of {@link VirgilCrypto}.
+     * 
+     * @param keysType
+     *            the default key pair type.
+     * @param pooled
+     *            if {@code true}, each thread reuses its own native signer, cipher and hash objects instead of creating
+     *            new ones for every operation. Use {@link #releaseThreadObjects()} and {@link #close()} to free them.
+     */
+    public VirgilCrypto(KeysType keysType, boolean pooled) {
+        this.defaultKeyPairType = keysType;
+        if (pooled) {
+            this.objectPool = new NativeObjectPool();
+        }
+    }
+
     public static VirgilHash createVirgilHash(HashAlgorithm algorithm) {
         switch (algorithm) {
         case MD5:
@@ -142,6 +200,294 @@ public class VirgilCrypto implements Crypto {
         return VirgilKeyPair.Type.FAST_EC_ED25519;
     }
 
+    /**
+     * @return {@code true} if native objects are reused between operations.
+     */
+    public boolean isPooled() {
+        return this.objectPool != null;
+    }
+
+    /**
+     * Free native objects which current thread reuses between operations in pooled mode. Pooled objects are owned by
+     * the thread which created them and live as long as the thread, so call this method before a long-living thread,
+     * e.g. a thread of an executor, stops using this crypto. The thread creates new objects if it uses this crypto
+     * again. Does nothing if crypto is not pooled.
+     */
+    public void releaseThreadObjects() {
+        if (this.objectPool != null) {
+            this.objectPool.remove();
+        }
+    }
+
+    /**
+     * Free native objects of all threads in pooled mode and native contexts of cached prepared keys. This crypto
+     * shouldn't be used by other threads during the call, but it stays usable after the call: native objects are
+     * created again when needed.
+     */
+    @Override
+    public void close() {
+        if (this.objectPool != null) {
+            this.objectPool.close();
+        }
+        this.preparedPrivateKeys.clear();
+        this.preparedPublicKeys.clear();
+    }
+
+    /**
+     * @return the executor which reads and writes streams in background, or {@code null} if streams are processed on
+     *         the calling thread.
+     */
+    public Executor getStreamExecutor() {
+        return streamExecutor;
+    }
+
+    /**
+     * Set the executor which reads input streams ahead and writes output streams in background during stream
+     * encryption and decryption, so stream I/O overlaps with cryptographic operations. Each stream operation runs two
+     * long tasks on the executor at once, so the executor shouldn't limit the number of concurrent tasks, e.g.
+     * {@link java.util.concurrent.Executors#newCachedThreadPool()}.
+     * 
+     * @param streamExecutor
+     *            the executor, or {@code null} to process streams on the calling thread.
+     */
+    public void setStreamExecutor(Executor streamExecutor) {
+        this.streamExecutor = streamExecutor;
+    }
+
+    VirgilSigner obtainSigner() {
+        return (this.objectPool == null) ? new VirgilSigner() : this.objectPool.signer();
+    }
+
+    void release(VirgilSigner signer) {
+        if (this.objectPool == null) {
+            signer.close();
+        }
+    }
+
+    VirgilStreamSigner obtainStreamSigner() {
+        return (this.objectPool == null) ? new VirgilStreamSigner() : this.objectPool.streamSigner();
+    }
+
+    void release(VirgilStreamSigner signer) {
+        if (this.objectPool == null) {
+            signer.close();
+        }
+    }
+
+    VirgilCipher obtainCipher() {
+        return (this.objectPool == null) ? new VirgilCipher() : this.objectPool.cipher();
+    }
+
+    void release(VirgilCipher cipher) {
+        if (this.objectPool == null) {
+            cipher.close();
+        } else {
+            NativeObjectPool.reset(cipher);
+        }
+    }
+
+    VirgilHash obtainHash(HashAlgorithm algorithm) {
+        return (this.objectPool == null) ? createVirgilHash(algorithm) : this.objectPool.hash(algorithm);
+    }
+
+    void release(VirgilHash hash) {
+        if (this.objectPool == null) {
+            hash.close();
+        }
+    }
+
+    /**
+     * Enable cache of imported public keys, so {@link #importPublicKey(byte[])} doesn't convert and hash the same key
+     * again. Cache is disabled by default.
+     * 
+     * @param capacity
+     *            the maximum number of cached keys, or {@code 0} to disable cache. Cached keys are dropped.
+     */
+    public void setPublicKeyCacheCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity");
+        }
+        this.importedPublicKeys = (capacity == 0) ? null : new LruCache<ByteBuffer, VirgilPublicKey>(capacity);
+    }
+
+    /**
+     * @return the maximum number of cached public keys, or {@code 0} if cache is disabled.
+     */
+    public int getPublicKeyCacheCapacity() {
+        LruCache<ByteBuffer, VirgilPublicKey> cache = this.importedPublicKeys;
+        return (cache == null) ? 0 : cache.capacity();
+    }
+
+    /**
+     * @return the number of cached public keys.
+     */
+    public int getPublicKeyCacheSize() {
+        LruCache<ByteBuffer, VirgilPublicKey> cache = this.importedPublicKeys;
+        return (cache == null) ? 0 : cache.size();
+    }
+
+    /**
+     * @return the share of {@link #importPublicKey(byte[])} calls served from cache.
+     */
+    public double getPublicKeyCacheHitRatio() {
+        LruCache<ByteBuffer, VirgilPublicKey> cache = this.importedPublicKeys;
+        return (cache == null) ? 0 : cache.hitRatio();
+    }
+
+    /**
+     * Load private key into native asymmetric cipher, so it will not be parsed again on every {@link #sign(byte[],
+     * PrivateKey)}. Recently prepared keys are cached.
+     * 
+     * @param privateKey
+     *            the private key.
+     * @return the prepared private key.
+     * @throws CryptoException
+     *             if private key couldn't be loaded.
+     */
+    public PreparedPrivateKey preparePrivateKey(PrivateKey privateKey) throws CryptoException {
+        if (privateKey == null) {
+            throw new NullArgumentException("privateKey");
+        }
+        if (privateKey instanceof PreparedPrivateKey) {
+            return (PreparedPrivateKey) privateKey;
+        }
+
+        ByteBuffer cacheKey = ByteBuffer.wrap(privateKey.getValue());
+        PreparedPrivateKey preparedKey = this.preparedPrivateKeys.get(cacheKey);
+        if (preparedKey == null || !Arrays.equals(preparedKey.getId(), privateKey.getId())) {
+            try {
+                preparedKey = new PreparedPrivateKey(privateKey);
+            } catch (Exception e) {
+                throw new CryptoException(e);
+            }
+            this.preparedPrivateKeys.put(ByteBuffer.wrap(preparedKey.getValue().clone()), preparedKey);
+        }
+        return preparedKey;
+    }
+
+    /**
+     * Load public key into native asymmetric cipher, so it will not be parsed again on every {@link #verify(byte[],
+     * byte[], PublicKey)}. Recently prepared keys are cached.
+     * 
+     * @param publicKey
+     *            the public key.
+     * @return the prepared public key.
+     * @throws CryptoException
+     *             if public key couldn't be loaded.
+     */
+    @Override
+    public PreparedPublicKey preparePublicKey(PublicKey publicKey) throws CryptoException {
+        if (publicKey == null) {
+            throw new NullArgumentException("publicKey");
+        }
+        if (publicKey instanceof PreparedPublicKey) {
+            return (PreparedPublicKey) publicKey;
+        }
+
+        ByteBuffer cacheKey = ByteBuffer.wrap(publicKey.getValue());
+        PreparedPublicKey preparedKey = this.preparedPublicKeys.get(cacheKey);
+        if (preparedKey == null || !Arrays.equals(preparedKey.getId(), publicKey.getId())) {
+            try {
+                preparedKey = new PreparedPublicKey(publicKey);
+            } catch (Exception e) {
+                throw new CryptoException(e);
+            }
+            this.preparedPublicKeys.put(ByteBuffer.wrap(preparedKey.getValue().clone()), preparedKey);
+        }
+        return preparedKey;
+    }
+
+    /**
+     * Validate recipients' public keys and prepare them for {@link #encrypt(byte[], RecipientSet)}, so keys of the same
+     * group of recipients aren't checked and converted on every encryption.
+     * 
+     * @param recipients
+     *            the recipients' public keys.
+     * @return the recipient set.
+     * @throws CryptoException
+     *             if a recipient's public key is malformed.
+     */
+    public RecipientSet createRecipientSet(PublicKey... recipients) throws CryptoException {
+        if (recipients == null) {
+            throw new NullArgumentException("recipients");
+        }
+        if (recipients.length == 0) {
+            throw new IllegalArgumentException("recipients");
+        }
+        for (PublicKey recipient : recipients) {
+            if (recipient == null) {
+                throw new NullArgumentException("recipient");
+            }
+            if (recipient.getId() == null || recipient.getId().length == 0) {
+                throw new IllegalArgumentException("recipient");
+            }
+        }
+        try {
+            return new RecipientSet(recipients);
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * @return DER encoded identifier of the hash algorithm used for signatures.
+     */
+    static byte[] signatureHashAlgorithmId() {
+        byte[] hashAlgorithmId = signatureHashAlgorithmId;
+        if (hashAlgorithmId == null) {
+            try (VirgilHash hash = createVirgilHash(SIGNATURE_HASH_ALGORITHM)) {
+                hashAlgorithmId = hash.toAsn1();
+            }
+            signatureHashAlgorithmId = hashAlgorithmId;
+        }
+        return hashAlgorithmId;
+    }
+
+    private byte[] signPrepared(byte[] data, PreparedPrivateKey privateKey) {
+        VirgilHash hash = obtainHash(SIGNATURE_HASH_ALGORITHM);
+        try {
+            return signPrepared(data, privateKey, hash);
+        } finally {
+            release(hash);
+        }
+    }
+
+    private static byte[] signPrepared(byte[] data, PreparedPrivateKey privateKey, VirgilHash hash) {
+        byte[] digest = hash.hash(data);
+        byte[] rawSignature = privateKey.sign(digest, hash.type());
+
+        return SignatureEncoder.encode(signatureHashAlgorithmId(), rawSignature);
+    }
+
+    private boolean verifyPrepared(byte[] data, byte[] signature, PreparedPublicKey publicKey) {
+        VirgilHash hash = obtainHash(SIGNATURE_HASH_ALGORITHM);
+        try {
+            return verifyPrepared(data, signature, publicKey, hash);
+        } finally {
+            release(hash);
+        }
+    }
+
+    /**
+     * @param hash
+     *            the hash used if signature is made with default hash algorithm.
+     */
+    private static boolean verifyPrepared(byte[] data, byte[] signature, PreparedPublicKey publicKey,
+            VirgilHash hash) {
+        byte[][] parts = SignatureEncoder.decode(signature);
+        byte[] hashAlgorithmId = parts[0];
+
+        if (Arrays.equals(hashAlgorithmId, signatureHashAlgorithmId())) {
+            byte[] digest = hash.hash(data);
+            return publicKey.verify(digest, parts[1], hash.type());
+        }
+        try (VirgilHash otherHash = new VirgilHash()) {
+            otherHash.fromAsn1(hashAlgorithmId);
+            byte[] digest = otherHash.hash(data);
+            return publicKey.verify(digest, parts[1], otherHash.type());
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -153,9 +499,12 @@ public class VirgilCrypto implements Crypto {
             throw new NullArgumentException("content");
         }
 
-        try (VirgilHash sha256 = new VirgilHash(Algorithm.SHA256)) {
+        VirgilHash sha256 = obtainHash(HashAlgorithm.SHA256);
+        try {
             byte[] hash = sha256.hash(content);
             return new VirgilFingerprint(hash);
+        } finally {
+            release(sha256);
         }
     }
 
@@ -170,9 +519,120 @@ public class VirgilCrypto implements Crypto {
             throw new NullArgumentException("data");
         }
 
-        try (VirgilHash hasher = createVirgilHash(algorithm)) {
+        VirgilHash hasher = obtainHash(algorithm);
+        try {
             return hasher.hash(data);
+        } finally {
+            release(hasher);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#computeHash(java.io.InputStream,
+     * com.virgilsecurity.sdk.crypto.HashAlgorithm)
+     */
+    @Override
+    public byte[] computeHash(InputStream inputStream, HashAlgorithm algorithm) throws CryptoException {
+        if (inputStream == null) {
+            throw new NullArgumentException("inputStream");
+        }
+
+        VirgilHash hasher = obtainHash(algorithm);
+        try {
+            hasher.start();
+            byte[] chunk = new byte[HASH_CHUNK_SIZE];
+            int length;
+            do {
+                // The whole chunk is filled, so the same array is passed to native code except for the last part
+                length = readChunk(inputStream, chunk);
+                if (length > 0) {
+                    hasher.update((length == chunk.length) ? chunk : Arrays.copyOf(chunk, length));
+                }
+            } while (length == chunk.length);
+            return hasher.finish();
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            release(hasher);
+        }
+    }
+
+    private static int readChunk(InputStream inputStream, byte[] chunk) throws IOException {
+        int length = 0;
+        while (length < chunk.length) {
+            int bytesRead = inputStream.read(chunk, length, chunk.length - length);
+            if (bytesRead < 0) {
+                break;
+            }
+            length += bytesRead;
+        }
+        return length;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#computeHash(java.nio.channels.FileChannel,
+     * com.virgilsecurity.sdk.crypto.HashAlgorithm)
+     */
+    @Override
+    public byte[] computeHash(FileChannel channel, HashAlgorithm algorithm) throws CryptoException {
+        if (channel == null) {
+            throw new NullArgumentException("channel");
+        }
+
+        VirgilHash hasher = obtainHash(algorithm);
+        try {
+            hasher.start();
+            ByteBuffer chunk = ByteBuffer.allocate(HASH_CHUNK_SIZE);
+            boolean eof = false;
+            while (!eof) {
+                chunk.clear();
+                while (chunk.hasRemaining() && !eof) {
+                    eof = channel.read(chunk) < 0;
+                }
+                if (chunk.position() > 0) {
+                    hasher.update(
+                            chunk.hasRemaining() ? Arrays.copyOf(chunk.array(), chunk.position()) : chunk.array());
+                }
+            }
+            return hasher.finish();
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            release(hasher);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#createHasher(com.virgilsecurity.sdk.crypto.HashAlgorithm)
+     */
+    @Override
+    public Hasher createHasher(HashAlgorithm algorithm) {
+        if (algorithm == null) {
+            throw new NullArgumentException("algorithm");
         }
+        return new VirgilHasher(createVirgilHash(algorithm));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#createMac(byte[], com.virgilsecurity.sdk.crypto.HashAlgorithm)
+     */
+    @Override
+    public Mac createMac(byte[] key, HashAlgorithm algorithm) {
+        if (key == null) {
+            throw new NullArgumentException("key");
+        }
+        if (algorithm == null) {
+            throw new NullArgumentException("algorithm");
+        }
+        return new VirgilMac(createVirgilHash(algorithm), key);
     }
 
     /**
@@ -184,6 +644,103 @@ public class VirgilCrypto implements Crypto {
         return this.computeHash(publicKeyDER, HashAlgorithm.SHA256);
     }
 
+    /**
+     * Get byte array with the region of the array. The same array is returned when the region covers the whole array,
+     * so no copy is made.
+     * 
+     * @param data
+     *            the array.
+     * @param offset
+     *            the region offset.
+     * @param length
+     *            the region length.
+     * @return the array which contains the region only.
+     */
+    private static byte[] toArray(byte[] data, int offset, int length) {
+        if (data == null) {
+            throw new NullArgumentException("data");
+        }
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (offset == 0 && length == data.length) {
+            return data;
+        }
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    /**
+     * Get byte array with remaining bytes of the buffer. The backing array is returned when remaining bytes cover it
+     * entirely, so no copy is made. Buffer position is not changed.
+     * 
+     * @param data
+     *            the buffer.
+     * @return the array which contains remaining bytes of the buffer.
+     */
+    private static byte[] toArray(ByteBuffer data) {
+        if (data == null) {
+            throw new NullArgumentException("data");
+        }
+        if (data.hasArray()) {
+            return toArray(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        }
+        byte[] array = new byte[data.remaining()];
+        data.duplicate().get(array);
+        return array;
+    }
+
+    /**
+     * Write result to the output buffer and consume all remaining bytes of the input buffer.
+     * 
+     * @param result
+     *            the result to be written.
+     * @param input
+     *            the input buffer.
+     * @param output
+     *            the output buffer.
+     * @return the number of bytes written.
+     * @throws BufferOverflowException
+     *             if output buffer has not enough space.
+     */
+    private static int write(byte[] result, ByteBuffer input, ByteBuffer output) {
+        if (output.remaining() < result.length) {
+            throw new BufferOverflowException();
+        }
+        output.put(result);
+        input.position(input.limit());
+        return result.length;
+    }
+
+    /**
+     * Open data source which reads the input stream. The stream is read ahead in background if stream executor is set.
+     * 
+     * @param inputStream
+     *            the input stream.
+     * @return the data source.
+     */
+    private VirgilDataSource openDataSource(InputStream inputStream) {
+        Executor executor = this.streamExecutor;
+        if (executor != null) {
+            return new VirgilPrefetchDataSource(inputStream, executor);
+        }
+        return new VirgilStreamDataSource(inputStream);
+    }
+
+    /**
+     * Open data sink which writes to the output stream. The stream is written in background if stream executor is set.
+     * 
+     * @param outputStream
+     *            the output stream.
+     * @return the data sink.
+     */
+    private VirgilDataSink openDataSink(OutputStream outputStream) {
+        Executor executor = this.streamExecutor;
+        if (executor != null) {
+            return new VirgilAsyncDataSink(outputStream, executor);
+        }
+        return new VirgilStreamDataSink(outputStream);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -191,12 +748,41 @@ public class VirgilCrypto implements Crypto {
      */
     @Override
     public byte[] decrypt(byte[] cipherData, PrivateKey privateKey) throws DecryptionException {
-        try (VirgilCipher cipher = new VirgilCipher()) {
+        VirgilCipher cipher = obtainCipher();
+        try {
             byte[] decryptedData = cipher.decryptWithKey(cipherData, privateKey.getId(), privateKey.getValue());
             return decryptedData;
         } catch (Exception e) {
             throw new DecryptionException(e);
+        } finally {
+            release(cipher);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#decrypt(byte[], int, int, com.virgilsecurity.sdk.crypto.PrivateKey)
+     */
+    @Override
+    public byte[] decrypt(byte[] cipherData, int offset, int length, PrivateKey privateKey)
+            throws DecryptionException {
+        return decrypt(toArray(cipherData, offset, length), privateKey);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#decrypt(java.nio.ByteBuffer, java.nio.ByteBuffer,
+     * com.virgilsecurity.sdk.crypto.PrivateKey)
+     */
+    @Override
+    public int decrypt(ByteBuffer cipherData, ByteBuffer output, PrivateKey privateKey) throws DecryptionException {
+        if (output == null) {
+            throw new NullArgumentException("output");
         }
+        byte[] decryptedData = decrypt(toArray(cipherData), privateKey);
+        return write(decryptedData, cipherData, output);
     }
 
     /*
@@ -209,15 +795,52 @@ public class VirgilCrypto implements Crypto {
     public void decrypt(InputStream inputStream, OutputStream outputStream, PrivateKey privateKey)
             throws DecryptionException {
         try (VirgilStreamCipher cipher = new VirgilStreamCipher();
-                VirgilDataSource dataSource = new VirgilStreamDataSource(inputStream);
-                VirgilDataSink dataSink = new VirgilStreamDataSink(outputStream)) {
+                VirgilDataSource dataSource = openDataSource(inputStream);
+                VirgilDataSink dataSink = openDataSink(outputStream)) {
 
             cipher.decryptWithKey(dataSource, dataSink, privateKey.getId(), privateKey.getValue());
-        } catch (IOException e) {
+        } catch (Exception e) {
             throw new DecryptionException(e);
         }
     }
 
+    /**
+     * Sign the root of hash tree together with tree parameters.
+     * 
+     * @param tree
+     *            the hash tree.
+     * @param privateKey
+     *            the signer's private key.
+     * @return the signature.
+     */
+    public byte[] signHashTree(HashTree tree, PrivateKey privateKey) {
+        if (tree == null) {
+            throw new NullArgumentException("tree");
+        }
+        return sign(tree.signedData(), privateKey);
+    }
+
+    /**
+     * Verify signature of hash tree. The root is always calculated from leaf hashes, so valid signature means that all
+     * leaf hashes are authentic.
+     * 
+     * @param tree
+     *            the hash tree.
+     * @param signature
+     *            the signature.
+     * @param signer
+     *            the signer's public key.
+     * @return {@code true} if signature is valid.
+     * @throws VerificationException
+     *             if signature couldn't be verified.
+     */
+    public boolean verifyHashTree(HashTree tree, byte[] signature, PublicKey signer) throws VerificationException {
+        if (tree == null) {
+            throw new NullArgumentException("tree");
+        }
+        return verify(tree.signedData(), signature, signer);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -227,7 +850,9 @@ public class VirgilCrypto implements Crypto {
     @Override
     public byte[] decryptThenVerify(byte[] cipherData, PrivateKey privateKey, PublicKey publicKey)
             throws CryptoException {
-        try (VirgilSigner signer = new VirgilSigner(); VirgilCipher cipher = new VirgilCipher()) {
+        VirgilSigner signer = obtainSigner();
+        VirgilCipher cipher = obtainCipher();
+        try {
             byte[] decryptedData = cipher.decryptWithKey(cipherData, privateKey.getId(), privateKey.getValue());
             byte[] signature = cipher.customParams().getData(CUSTOM_PARAM_SIGNATURE);
 
@@ -239,6 +864,48 @@ public class VirgilCrypto implements Crypto {
             return decryptedData;
         } catch (Exception e) {
             throw new CryptoException(e.getMessage());
+        } finally {
+            release(cipher);
+            release(signer);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#decryptThenVerify(java.io.InputStream, java.io.OutputStream,
+     * com.virgilsecurity.sdk.crypto.PrivateKey, com.virgilsecurity.sdk.crypto.PublicKey)
+     */
+    @Override
+    public void decryptThenVerify(InputStream inputStream, OutputStream outputStream, PrivateKey privateKey,
+            PublicKey publicKey) throws CryptoException {
+        if (inputStream == null) {
+            throw new NullArgumentException("inputStream");
+        }
+        if (outputStream == null) {
+            throw new NullArgumentException("outputStream");
+        }
+        if (privateKey == null) {
+            throw new NullArgumentException("privateKey");
+        }
+        PreparedPublicKey preparedKey = preparePublicKey(publicKey);
+
+        boolean valid;
+        try (VirgilHash hash = createVirgilHash(SIGNATURE_HASH_ALGORITHM);
+                VirgilStreamCipher cipher = new VirgilStreamCipher();
+                VirgilDataSource dataSource = openDataSource(inputStream);
+                VerifyingDataSink dataSink = new VerifyingDataSink(openDataSink(outputStream), hash, preparedKey)) {
+
+            cipher.decryptWithKey(dataSource, dataSink, privateKey.getId(), privateKey.getValue());
+            if (cipher.customParams().getInteger(CUSTOM_PARAM_SIGNATURE_TRAILER) != SIGNATURE_TRAILER_VERSION) {
+                throw new IOException("Unsupported signature trailer");
+            }
+            valid = dataSink.finish();
+        } catch (Exception e) {
+            throw new DecryptionException(e);
+        }
+        if (!valid) {
+            throw new SignatureIsNotValidException();
         }
     }
 
@@ -249,13 +916,16 @@ public class VirgilCrypto implements Crypto {
      */
     @Override
     public byte[] encrypt(byte[] data, PublicKey recipient) throws EncryptionException {
-        try (VirgilCipher cipher = new VirgilCipher()) {
+        VirgilCipher cipher = obtainCipher();
+        try {
             cipher.addKeyRecipient(recipient.getId(), recipient.getValue());
 
             byte[] encryptedData = cipher.encrypt(data, true);
             return encryptedData;
         } catch (Exception e) {
             throw new EncryptionException(e);
+        } finally {
+            release(cipher);
         }
     }
 
@@ -266,7 +936,8 @@ public class VirgilCrypto implements Crypto {
      */
     @Override
     public byte[] encrypt(byte[] data, PublicKey[] recipients) throws EncryptionException {
-        try (VirgilCipher cipher = new VirgilCipher()) {
+        VirgilCipher cipher = obtainCipher();
+        try {
             for (PublicKey recipient : recipients) {
                 cipher.addKeyRecipient(recipient.getId(), recipient.getValue());
             }
@@ -275,9 +946,64 @@ public class VirgilCrypto implements Crypto {
             return encryptedData;
         } catch (Exception e) {
             throw new EncryptionException(e);
+        } finally {
+            release(cipher);
+        }
+    }
+
+    /**
+     * Encrypts the specified data for the prepared set of recipients.
+     * 
+     * @param data
+     *            the data to be encrypted.
+     * @param recipients
+     *            the recipient set.
+     * @return the encrypted data.
+     * @throws EncryptionException
+     *             if encryption failed.
+     * @see #createRecipientSet(PublicKey...)
+     */
+    public byte[] encrypt(byte[] data, RecipientSet recipients) throws EncryptionException {
+        if (recipients == null) {
+            throw new NullArgumentException("recipients");
+        }
+        VirgilCipher cipher = obtainCipher();
+        try {
+            recipients.addTo(cipher);
+
+            return cipher.encrypt(data, true);
+        } catch (Exception e) {
+            throw new EncryptionException(e);
+        } finally {
+            release(cipher);
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#encrypt(byte[], int, int, com.virgilsecurity.sdk.crypto.PublicKey[])
+     */
+    @Override
+    public byte[] encrypt(byte[] data, int offset, int length, PublicKey[] recipients) throws EncryptionException {
+        return encrypt(toArray(data, offset, length), recipients);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#encrypt(java.nio.ByteBuffer, java.nio.ByteBuffer,
+     * com.virgilsecurity.sdk.crypto.PublicKey[])
+     */
+    @Override
+    public int encrypt(ByteBuffer data, ByteBuffer output, PublicKey[] recipients) throws EncryptionException {
+        if (output == null) {
+            throw new NullArgumentException("output");
+        }
+        byte[] encryptedData = encrypt(toArray(data), recipients);
+        return write(encryptedData, data, output);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -288,13 +1014,13 @@ public class VirgilCrypto implements Crypto {
     public void encrypt(InputStream inputStream, OutputStream outputStream, PublicKey recipient)
             throws EncryptionException {
         try (VirgilStreamCipher cipher = new VirgilStreamCipher();
-                VirgilDataSource dataSource = new VirgilStreamDataSource(inputStream);
-                VirgilDataSink dataSink = new VirgilStreamDataSink(outputStream)) {
+                VirgilDataSource dataSource = openDataSource(inputStream);
+                VirgilDataSink dataSink = openDataSink(outputStream)) {
 
             cipher.addKeyRecipient(recipient.getId(), recipient.getValue());
 
             cipher.encrypt(dataSource, dataSink, true);
-        } catch (IOException e) {
+        } catch (Exception e) {
             throw new EncryptionException(e);
         }
     }
@@ -309,14 +1035,14 @@ public class VirgilCrypto implements Crypto {
     public void encrypt(InputStream inputStream, OutputStream outputStream, PublicKey[] recipients)
             throws EncryptionException {
         try (VirgilStreamCipher cipher = new VirgilStreamCipher();
-                VirgilDataSource dataSource = new VirgilStreamDataSource(inputStream);
-                VirgilDataSink dataSink = new VirgilStreamDataSink(outputStream)) {
+                VirgilDataSource dataSource = openDataSource(inputStream);
+                VirgilDataSink dataSink = openDataSink(outputStream)) {
             for (PublicKey recipient : recipients) {
                 cipher.addKeyRecipient(recipient.getId(), recipient.getValue());
             }
 
             cipher.encrypt(dataSource, dataSink, true);
-        } catch (IOException e) {
+        } catch (Exception e) {
             throw new EncryptionException(e);
         }
     }
@@ -391,14 +1117,71 @@ public class VirgilCrypto implements Crypto {
      * @return generated key pair.
      */
     public KeyPair generateKeys(KeysType keysType) {
-        VirgilKeyPair keyPair = VirgilKeyPair.generate(toVirgilKeyPairType(keysType));
+        VirgilHash hash = obtainHash(HashAlgorithm.SHA256);
+        try {
+            return generateKeys(keysType, hash);
+        } finally {
+            release(hash);
+        }
+    }
+
+    /**
+     * Generate key pairs on the calling thread. Key identifiers of all key pairs are calculated with the same hash.
+     * 
+     * @param keysType
+     *            the key type.
+     * @param count
+     *            the number of key pairs.
+     * @return generated key pairs.
+     */
+    public List<KeyPair> generateKeys(KeysType keysType, int count) {
+        if (keysType == null) {
+            throw new NullArgumentException("keysType");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("count");
+        }
+
+        KeyPair[] keyPairs = new KeyPair[count];
+        generateKeys(keysType, keyPairs, 0, count);
+        return Arrays.asList(keyPairs);
+    }
+
+    /**
+     * Generate a range of key pairs on the calling thread.
+     * 
+     * @param keysType
+     *            the key type.
+     * @param keyPairs
+     *            the array generated key pairs are stored to.
+     * @param from
+     *            the index of the first key pair, inclusive.
+     * @param to
+     *            the index of the last key pair, exclusive.
+     */
+    void generateKeys(KeysType keysType, KeyPair[] keyPairs, int from, int to) {
+        VirgilHash hash = obtainHash(HashAlgorithm.SHA256);
+        try {
+            for (int i = from; i < to; i++) {
+                keyPairs[i] = generateKeys(keysType, hash);
+            }
+        } finally {
+            release(hash);
+        }
+    }
 
-        byte[] keyPairId = this.computePublicKeyHash(keyPair.publicKey());
+    private KeyPair generateKeys(KeysType keysType, VirgilHash hash) {
+        try (VirgilKeyPair keyPair = VirgilKeyPair.generate(toVirgilKeyPairType(keysType))) {
+            // Public key is exported once for both the identifier and the key value
+            byte[] publicKeyDER = VirgilKeyPair.publicKeyToDER(keyPair.publicKey());
+            byte[] keyPairId = hash.hash(publicKeyDER);
 
-        PublicKey publicKey = new VirgilPublicKey(keyPairId, VirgilKeyPair.publicKeyToDER(keyPair.publicKey()));
-        PrivateKey privateKey = new VirgilPrivateKey(keyPairId, VirgilKeyPair.privateKeyToDER(keyPair.privateKey()));
+            PublicKey publicKey = new VirgilPublicKey(keyPairId, publicKeyDER);
+            PrivateKey privateKey = new VirgilPrivateKey(keyPairId,
+                    VirgilKeyPair.privateKeyToDER(keyPair.privateKey()));
 
-        return new KeyPair(publicKey, privateKey);
+            return new KeyPair(publicKey, privateKey);
+        }
     }
 
     /*
@@ -449,10 +1232,74 @@ public class VirgilCrypto implements Crypto {
      */
     @Override
     public PublicKey importPublicKey(byte[] publicKey) {
-        byte[] receiverId = computePublicKeyHash(publicKey);
-        byte[] value = VirgilKeyPair.publicKeyToDER(publicKey);
+        LruCache<ByteBuffer, VirgilPublicKey> cache = this.importedPublicKeys;
+        if (cache == null) {
+            byte[] receiverId = computePublicKeyHash(publicKey);
+            byte[] value = VirgilKeyPair.publicKeyToDER(publicKey);
 
-        return new VirgilPublicKey(receiverId, value);
+            return new VirgilPublicKey(receiverId, value);
+        }
+
+        VirgilPublicKey cachedKey = cache.get(ByteBuffer.wrap(publicKey));
+        if (cachedKey == null) {
+            byte[] value = VirgilKeyPair.publicKeyToDER(publicKey);
+            byte[] receiverId = computeHash(value, HashAlgorithm.SHA256);
+
+            cachedKey = new VirgilPublicKey(receiverId, value);
+            cache.put(ByteBuffer.wrap(publicKey.clone()), cachedKey);
+        }
+        // Public key is mutable, so cached arrays are never exposed
+        return new VirgilPublicKey(cachedKey.getId().clone(), cachedKey.getValue().clone());
+    }
+
+    /**
+     * Add or remove key recipients of encrypted data without re-encrypting the data. The content encryption key is
+     * decrypted with holder's private key and encrypted for added recipients only, encrypted data stays valid for the
+     * new content info.
+     * 
+     * Re-wrapping only rewrites the header, the content encryption key stays the same. Removing a recipient doesn't
+     * revoke access: anyone who keeps an older copy of the encrypted data or of its content info, or the content key
+     * itself, can still decrypt the data. Re-encrypt the data to revoke access.
+     * 
+     * @param contentInfo
+     *            the content info. For data with embedded content info it's the first
+     *            {@link VirgilCipherBase#defineContentInfoSize(byte[])} bytes.
+     * @param holder
+     *            the private key of one of current recipients.
+     * @param add
+     *            the public keys of recipients to be added, or {@code null}. An existing recipient with the same
+     *            identifier is replaced.
+     * @param removeIds
+     *            the identifiers of recipients to be removed, or {@code null}.
+     * @return the new content info.
+     * @throws CryptoException
+     *             if content info is malformed, or the holder is not a recipient.
+     */
+    public byte[] rewrap(byte[] contentInfo, PrivateKey holder, PublicKey[] add, byte[][] removeIds)
+            throws CryptoException {
+        if (contentInfo == null) {
+            throw new NullArgumentException("contentInfo");
+        }
+        if (holder == null) {
+            throw new NullArgumentException("holder");
+        }
+        return ContentInfoRewrapper.rewrap(contentInfo, holder, add, removeIds);
+    }
+
+    /**
+     * Get identifiers of key recipients, e.g. to check who has access to encrypted data without decrypting it.
+     * 
+     * @param contentInfo
+     *            the content info.
+     * @return the identifiers of key recipients.
+     * @throws CryptoException
+     *             if content info is malformed.
+     */
+    public List<byte[]> getRecipientIds(byte[] contentInfo) throws CryptoException {
+        if (contentInfo == null) {
+            throw new NullArgumentException("contentInfo");
+        }
+        return ContentInfoRewrapper.recipientIds(contentInfo);
     }
 
     /*
@@ -470,12 +1317,41 @@ public class VirgilCrypto implements Crypto {
             throw new NullArgumentException("privateKey");
         }
 
-        try (VirgilSigner signer = new VirgilSigner()) {
+        if (privateKey instanceof PreparedPrivateKey) {
+            return signPrepared(data, (PreparedPrivateKey) privateKey);
+        }
+
+        VirgilSigner signer = obtainSigner();
+        try {
             byte[] signature = signer.sign(data, privateKey.getValue());
             return signature;
+        } finally {
+            release(signer);
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#sign(byte[], int, int, com.virgilsecurity.sdk.crypto.PrivateKey)
+     */
+    @Override
+    public byte[] sign(byte[] data, int offset, int length, PrivateKey privateKey) {
+        return sign(toArray(data, offset, length), privateKey);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#sign(java.nio.ByteBuffer, com.virgilsecurity.sdk.crypto.PrivateKey)
+     */
+    @Override
+    public byte[] sign(ByteBuffer data, PrivateKey privateKey) {
+        byte[] signature = sign(toArray(data), privateKey);
+        data.position(data.limit());
+        return signature;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -491,15 +1367,75 @@ public class VirgilCrypto implements Crypto {
             throw new NullArgumentException("privateKey");
         }
 
-        try (VirgilStreamSigner signer = new VirgilStreamSigner();
-                VirgilDataSource dataSource = new VirgilStreamDataSource(inputStream)) {
+        VirgilStreamSigner signer = obtainStreamSigner();
+        try (VirgilDataSource dataSource = openDataSource(inputStream)) {
             byte[] signature = signer.sign(dataSource, privateKey.getValue());
             return signature;
-        } catch (IOException e) {
+        } catch (Exception e) {
+            throw new SigningException(e);
+        } finally {
+            release(signer);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#signBatch(java.util.List, com.virgilsecurity.sdk.crypto.PrivateKey)
+     */
+    @Override
+    public List<byte[]> signBatch(List<byte[]> items, PrivateKey privateKey) throws SigningException {
+        validateSignBatch(items, privateKey);
+
+        try {
+            PreparedPrivateKey preparedKey = preparePrivateKey(privateKey);
+            byte[][] signatures = new byte[items.size()][];
+            signBatch(items, preparedKey, signatures, 0, items.size());
+            return Arrays.asList(signatures);
+        } catch (Exception e) {
             throw new SigningException(e);
         }
     }
 
+    static void validateSignBatch(List<byte[]> items, PrivateKey privateKey) {
+        if (items == null) {
+            throw new NullArgumentException("items");
+        }
+        if (privateKey == null) {
+            throw new NullArgumentException("privateKey");
+        }
+        for (byte[] item : items) {
+            if (item == null) {
+                throw new NullArgumentException("items");
+            }
+        }
+    }
+
+    /**
+     * Sign a range of batch items on the calling thread.
+     * 
+     * @param items
+     *            the data items to be signed.
+     * @param privateKey
+     *            the signer's prepared private key.
+     * @param signatures
+     *            the array signatures are stored to.
+     * @param from
+     *            the index of the first item, inclusive.
+     * @param to
+     *            the index of the last item, exclusive.
+     */
+    void signBatch(List<byte[]> items, PreparedPrivateKey privateKey, byte[][] signatures, int from, int to) {
+        VirgilHash hash = obtainHash(SIGNATURE_HASH_ALGORITHM);
+        try {
+            for (int i = from; i < to; i++) {
+                signatures[i] = signPrepared(items.get(i), privateKey, hash);
+            }
+        } finally {
+            release(hash);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -519,8 +1455,9 @@ public class VirgilCrypto implements Crypto {
      */
     @Override
     public byte[] signThenEncrypt(byte[] data, PrivateKey privateKey, PublicKey[] recipients) throws CryptoException {
-        try (VirgilSigner signer = new VirgilSigner(); VirgilCipher cipher = new VirgilCipher()) {
-
+        VirgilSigner signer = obtainSigner();
+        VirgilCipher cipher = obtainCipher();
+        try {
             byte[] signature = signer.sign(data, privateKey.getValue());
 
             VirgilCustomParams customData = cipher.customParams();
@@ -530,9 +1467,46 @@ public class VirgilCrypto implements Crypto {
                 cipher.addKeyRecipient(publicKey.getId(), publicKey.getValue());
             }
             return cipher.encrypt(data, true);
-
         } catch (Exception e) {
             throw new CryptoException(e.getMessage());
+        } finally {
+            release(cipher);
+            release(signer);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#signThenEncrypt(java.io.InputStream, java.io.OutputStream,
+     * com.virgilsecurity.sdk.crypto.PrivateKey, com.virgilsecurity.sdk.crypto.PublicKey[])
+     */
+    @Override
+    public void signThenEncrypt(InputStream inputStream, OutputStream outputStream, PrivateKey privateKey,
+            PublicKey[] recipients) throws CryptoException {
+        if (inputStream == null) {
+            throw new NullArgumentException("inputStream");
+        }
+        if (outputStream == null) {
+            throw new NullArgumentException("outputStream");
+        }
+        if (recipients == null) {
+            throw new NullArgumentException("recipients");
+        }
+        PreparedPrivateKey preparedKey = preparePrivateKey(privateKey);
+
+        try (VirgilHash hash = createVirgilHash(SIGNATURE_HASH_ALGORITHM);
+                VirgilStreamCipher cipher = new VirgilStreamCipher();
+                VirgilDataSource dataSource = new SigningDataSource(openDataSource(inputStream), hash, preparedKey);
+                VirgilDataSink dataSink = openDataSink(outputStream)) {
+            for (PublicKey recipient : recipients) {
+                cipher.addKeyRecipient(recipient.getId(), recipient.getValue());
+            }
+            cipher.customParams().setInteger(CUSTOM_PARAM_SIGNATURE_TRAILER, SIGNATURE_TRAILER_VERSION);
+
+            cipher.encrypt(dataSource, dataSink, true);
+        } catch (Exception e) {
+            throw new EncryptionException(e);
         }
     }
 
@@ -553,11 +1527,114 @@ public class VirgilCrypto implements Crypto {
             throw new NullArgumentException("signer");
         }
 
-        try (VirgilSigner virgilSigner = new VirgilSigner()) {
+        if (signer instanceof PreparedPublicKey) {
+            try {
+                return verifyPrepared(data, signature, (PreparedPublicKey) signer);
+            } catch (Exception e) {
+                throw new VerificationException(e);
+            }
+        }
+
+        VirgilSigner virgilSigner = obtainSigner();
+        try {
             boolean valid = virgilSigner.verify(data, signature, signer.getValue());
             return valid;
         } catch (Exception e) {
             throw new VerificationException(e);
+        } finally {
+            release(virgilSigner);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#verify(byte[], int, int, byte[],
+     * com.virgilsecurity.sdk.crypto.PublicKey)
+     */
+    @Override
+    public boolean verify(byte[] data, int offset, int length, byte[] signature, PublicKey signer)
+            throws VerificationException {
+        return verify(toArray(data, offset, length), signature, signer);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#verify(java.nio.ByteBuffer, byte[],
+     * com.virgilsecurity.sdk.crypto.PublicKey)
+     */
+    @Override
+    public boolean verify(ByteBuffer data, byte[] signature, PublicKey signer) throws VerificationException {
+        boolean valid = verify(toArray(data), signature, signer);
+        data.position(data.limit());
+        return valid;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Crypto#verifyBatch(java.util.List, java.util.List,
+     * com.virgilsecurity.sdk.crypto.PublicKey)
+     */
+    @Override
+    public boolean verifyBatch(List<byte[]> items, List<byte[]> signatures, PublicKey signer)
+            throws VerificationException {
+        validateVerifyBatch(items, signatures, signer);
+
+        try {
+            PreparedPublicKey preparedKey = preparePublicKey(signer);
+            return verifyBatch(items, signatures, preparedKey, new AtomicBoolean(), 0, items.size());
+        } catch (Exception e) {
+            throw new VerificationException(e);
+        }
+    }
+
+    static void validateVerifyBatch(List<byte[]> items, List<byte[]> signatures, PublicKey signer) {
+        if (items == null) {
+            throw new NullArgumentException("items");
+        }
+        if (signatures == null) {
+            throw new NullArgumentException("signatures");
+        }
+        if (signer == null) {
+            throw new NullArgumentException("signer");
+        }
+        if (items.size() != signatures.size()) {
+            throw new IllegalArgumentException("Number of signatures doesn't match number of items");
+        }
+    }
+
+    /**
+     * Verify a range of batch items on the calling thread. Verification stops when any range of the batch fails.
+     * 
+     * @param items
+     *            the data items to be verified.
+     * @param signatures
+     *            the signatures in the same order as items.
+     * @param publicKey
+     *            the signer's prepared public key.
+     * @param failed
+     *            the flag which is set when any signature of the batch is invalid.
+     * @param from
+     *            the index of the first item, inclusive.
+     * @param to
+     *            the index of the last item, exclusive.
+     * @return {@code true} if no signature of the batch is found invalid.
+     */
+    boolean verifyBatch(List<byte[]> items, List<byte[]> signatures, PreparedPublicKey publicKey,
+            AtomicBoolean failed, int from, int to) {
+        VirgilHash hash = obtainHash(SIGNATURE_HASH_ALGORITHM);
+        try {
+            for (int i = from; i < to && !failed.get(); i++) {
+                byte[] signature = signatures.get(i);
+                if (signature == null || !verifyPrepared(items.get(i), signature, publicKey, hash)) {
+                    failed.set(true);
+                }
+            }
+            return !failed.get();
+        } finally {
+            release(hash);
         }
     }
 
@@ -579,12 +1656,14 @@ public class VirgilCrypto implements Crypto {
             throw new NullArgumentException("signer");
         }
 
-        try (VirgilStreamSigner virgilSigner = new VirgilStreamSigner();
-                VirgilDataSource dataSource = new VirgilStreamDataSource(inputStream)) {
+        VirgilStreamSigner virgilSigner = obtainStreamSigner();
+        try (VirgilDataSource dataSource = openDataSource(inputStream)) {
             boolean valid = virgilSigner.verify(dataSource, signature, signer.getValue());
             return valid;
         } catch (Exception e) {
             throw new VerificationException(e);
+        } finally {
+            release(virgilSigner);
         }
     }
 }
@@ -0,0 +1,1072 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.virgilsecurity.crypto.VirgilChannelDataSink;
+import com.virgilsecurity.crypto.VirgilChannelDataSource;
+import com.virgilsecurity.crypto.VirgilCipher;
+import com.virgilsecurity.crypto.VirgilDataSource;
+import com.virgilsecurity.crypto.VirgilHash;
+import com.virgilsecurity.crypto.VirgilMappedDataSource;
+import com.virgilsecurity.crypto.VirgilRandom;
+import com.virgilsecurity.crypto.VirgilStreamCipher;
+import com.virgilsecurity.crypto.VirgilStreamSigner;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+import com.virgilsecurity.sdk.crypto.exceptions.DecryptionException;
+import com.virgilsecurity.sdk.crypto.exceptions.EncryptionException;
+import com.virgilsecurity.sdk.crypto.exceptions.SigningException;
+import com.virgilsecurity.sdk.crypto.exceptions.VerificationException;
+import com.virgilsecurity.sdk.exception.NullArgumentException;
+
+/**
+ * File and parallel operations of {@link VirgilCrypto} which are available on Java SE only. They use
+ * {@code java.nio.file} and {@link ForkJoinPool}, which are missing on Android versions supported by Virgil Crypto
+ * for Android, so this class is not included there.
+ * 
+ * Native objects are obtained from the wrapped {@code VirgilCrypto}, so they are pooled if it's pooled.
+ *
+ * @author Andrii Iakovenko
+ * 
+ * @see VirgilCrypto
+ *
+ */
+public class VirgilFileCrypto {
+
+    /** The number of batch items processed by a single fork-join task */
+    private static final int BATCH_THRESHOLD = 32;
+
+    /** The number of key pairs generated by a single fork-join task */
+    private static final int KEYS_THRESHOLD = 4;
+
+    /** The number of hash tree leaves hashed by a single fork-join task */
+    private static final int LEAVES_THRESHOLD = 4;
+
+    /** Files of this size and larger are read through memory-mapped windows. */
+    private static final long MAPPED_INPUT_THRESHOLD = 16 * 1024 * 1024;
+
+    private static final String CHUNKED_ENCRYPTION_PERSONAL_INFO = "VIRGIL-CHUNKED-ENCRYPTION";
+
+    /** The number of bytes enough to define size of embedded content info. */
+    private static final int CONTENT_INFO_PREFIX_SIZE = 16;
+
+    /** Parallel operations write output next to the target file and move it into place when done. */
+    private static final String TEMP_SUFFIX = ".partial";
+
+    private final VirgilCrypto crypto;
+
+    /**
+     * Create new instance of {@link VirgilFileCrypto}.
+     * 
+     * @param crypto
+     *            the crypto which performs operations.
+     */
+    public VirgilFileCrypto(VirgilCrypto crypto) {
+        if (crypto == null) {
+            throw new NullArgumentException("crypto");
+        }
+        this.crypto = crypto;
+    }
+
+    /**
+     * @return the crypto which performs operations.
+     */
+    public VirgilCrypto getCrypto() {
+        return crypto;
+    }
+
+    /**
+     * Open data source which reads the file. Large files are read through memory-mapped windows.
+     * 
+     * @param file
+     *            the file.
+     * @return the data source.
+     * @throws IOException
+     *             if file couldn't be opened.
+     */
+    private static VirgilDataSource openDataSource(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() >= MAPPED_INPUT_THRESHOLD) {
+                return new VirgilMappedDataSource(channel);
+            }
+            return new VirgilChannelDataSource(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param file
+     *            the output file.
+     * @return the temporary file which is moved to the output file when it's completely written.
+     */
+    private static Path tempFile(Path file) {
+        return file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+    }
+
+    private static void deleteTempFile(Path temp, Exception failure) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Read content info of a file encrypted with {@link #encryptFile(Path, Path, PublicKey...)} or
+     * {@link #encryptFileParallel(Path, Path, ForkJoinPool, PublicKey...)}.
+     * 
+     * @param in
+     *            the channel with encrypted data.
+     * @return the content info.
+     * @throws IOException
+     *             if file couldn't be read.
+     * @throws CryptoException
+     *             if file has no content info.
+     */
+    static byte[] readContentInfo(FileChannel in) throws IOException, CryptoException {
+        if (isContainer(in)) {
+            byte[] header = ParallelChunkCipher.readHeader(in);
+            return Arrays.copyOf(header, ContentInfoRewrapper.contentInfoSize(header, header.length));
+        }
+        ByteBuffer prefix = ByteBuffer.allocate((int) Math.min(CONTENT_INFO_PREFIX_SIZE, in.size()));
+        ParallelChunkCipher.readFully(in, prefix, 0);
+        ByteBuffer contentInfo = ByteBuffer.allocate(ContentInfoRewrapper.contentInfoSize(prefix.array(), in.size()));
+        ParallelChunkCipher.readFully(in, contentInfo, 0);
+        return contentInfo.array();
+    }
+
+    /**
+     * Copy encrypted file replacing its content info. Encrypted data is copied as is.
+     * 
+     * @param in
+     *            the channel with encrypted data.
+     * @param out
+     *            the channel for encrypted data with new content info.
+     * @param contentInfo
+     *            the new content info.
+     * @throws IOException
+     *             if file couldn't be read or written.
+     * @throws CryptoException
+     *             if file has no content info.
+     */
+    static void replaceContentInfo(FileChannel in, FileChannel out, byte[] contentInfo)
+            throws IOException, CryptoException {
+        long position;
+        long outPosition;
+        if (isContainer(in)) {
+            byte[] header = ParallelChunkCipher.readHeader(in);
+            int oldSize = ContentInfoRewrapper.contentInfoSize(header, header.length);
+            byte[] newHeader = Arrays.copyOf(contentInfo, contentInfo.length + header.length - oldSize);
+            System.arraycopy(header, oldSize, newHeader, contentInfo.length, header.length - oldSize);
+
+            position = ParallelChunkCipher.HEADER_LENGTH_SIZE + header.length;
+            outPosition = ParallelChunkCipher.writeHeader(out, newHeader);
+        } else {
+            position = readContentInfo(in).length;
+            ParallelChunkCipher.writeFully(out, ByteBuffer.wrap(contentInfo), 0);
+            outPosition = contentInfo.length;
+        }
+
+        out.position(outPosition);
+        long size = in.size();
+        while (position < size) {
+            position += in.transferTo(position, size - position, out);
+        }
+    }
+
+    /**
+     * Files with embedded content info start with DER sequence, while container starts with header length which is
+     * far less than {@code 0x30000000}.
+     */
+    private static boolean isContainer(FileChannel in) throws IOException {
+        ByteBuffer first = ByteBuffer.allocate(1);
+        ParallelChunkCipher.readFully(in, first, 0);
+        return first.get(0) != ContentInfoRewrapper.TAG_SEQUENCE;
+    }
+
+    /**
+     * Decrypt file with private key. Large files are read through memory-mapped windows, smaller files are read
+     * through a {@link FileChannel} into a reused direct buffer. Decrypted data is written with gathering writes.
+     * 
+     * @param in
+     *            the file to be decrypted.
+     * @param out
+     *            the file for decrypted data. Existing file is overwritten.
+     * @param privateKey
+     *            the recipients private key.
+     * @throws DecryptionException
+     *             if file couldn't be decrypted.
+     */
+    public void decryptFile(Path in, Path out, PrivateKey privateKey) throws DecryptionException {
+        if (in == null) {
+            throw new NullArgumentException("in");
+        }
+        if (out == null) {
+            throw new NullArgumentException("out");
+        }
+        if (privateKey == null) {
+            throw new NullArgumentException("privateKey");
+        }
+
+        decryptFile(in, out, null, privateKey);
+    }
+
+    /**
+     * Decrypt file encrypted with {@link #encryptFileDetached(Path, Path, PublicKey...)}.
+     * 
+     * @param in
+     *            the file to be decrypted.
+     * @param out
+     *            the file for decrypted data. Existing file is overwritten.
+     * @param contentInfo
+     *            the content info returned on encryption.
+     * @param privateKey
+     *            the recipients private key.
+     * @throws DecryptionException
+     *             if file couldn't be decrypted.
+     */
+    public void decryptFileDetached(Path in, Path out, byte[] contentInfo, PrivateKey privateKey)
+            throws DecryptionException {
+        if (in == null) {
+            throw new NullArgumentException("in");
+        }
+        if (out == null) {
+            throw new NullArgumentException("out");
+        }
+        if (contentInfo == null) {
+            throw new NullArgumentException("contentInfo");
+        }
+        if (privateKey == null) {
+            throw new NullArgumentException("privateKey");
+        }
+
+        decryptFile(in, out, contentInfo, privateKey);
+    }
+
+    /**
+     * @param contentInfo
+     *            the detached content info, or {@code null} if it's embedded.
+     */
+    private void decryptFile(Path in, Path out, byte[] contentInfo, PrivateKey privateKey)
+            throws DecryptionException {
+        try (VirgilStreamCipher cipher = new VirgilStreamCipher();
+                VirgilDataSource dataSource = openDataSource(in);
+                VirgilChannelDataSink dataSink = new VirgilChannelDataSink(FileChannel.open(out,
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            if (contentInfo != null) {
+                cipher.setContentInfo(contentInfo);
+            }
+
+            cipher.decryptWithKey(dataSource, dataSink, privateKey.getId(), privateKey.getValue());
+            dataSink.flush();
+        } catch (Exception e) {
+            throw new DecryptionException(e);
+        }
+    }
+
+    /**
+     * Decrypt file encrypted with {@link #encryptFileParallel(Path, Path, ForkJoinPool, PublicKey...)}. Chunks are
+     * decrypted on all threads of the pool.
+     * 
+     * Decrypted data is written to a temporary file in the same directory, which atomically replaces the output file
+     * once all chunks are decrypted. If any chunk couldn't be decrypted, the temporary file is deleted and the output
+     * file is left as it was.
+     * 
+     * @param in
+     *            the file to be decrypted.
+     * @param out
+     *            the file for decrypted data. Existing file is replaced.
+     * @param privateKey
+     *            the recipients private key.
+     * @param pool
+     *            the pool which decrypts chunks, or {@code null} to decrypt on the calling thread.
+     * @throws DecryptionException
+     *             if file couldn't be decrypted.
+     */
+    public void decryptFileParallel(Path in, Path out, PrivateKey privateKey, ForkJoinPool pool)
+            throws DecryptionException {
+        if (in == null) {
+            throw new NullArgumentException("in");
+        }
+        if (out == null) {
+            throw new NullArgumentException("out");
+        }
+        if (privateKey == null) {
+            throw new NullArgumentException("privateKey");
+        }
+
+        Path temp = tempFile(out);
+        VirgilCipher cipher = this.crypto.obtainCipher();
+        try {
+            try (FileChannel inChannel = FileChannel.open(in, StandardOpenOption.READ);
+                    FileChannel outChannel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                byte[] header = ParallelChunkCipher.readHeader(inChannel);
+                byte[] keyMaterial = cipher.decryptWithKey(header, privateKey.getId(), privateKey.getValue());
+                ParallelChunkCipher chunkCipher = ParallelChunkCipher.fromKeyMaterial(keyMaterial);
+
+                long chunksOffset = ParallelChunkCipher.HEADER_LENGTH_SIZE + header.length;
+                if (inChannel.size() != chunksOffset + chunkCipher.encryptedLength()) {
+                    throw new IOException("Encrypted data is malformed");
+                }
+                chunkCipher.decrypt(inChannel, chunksOffset, outChannel, pool);
+                outChannel.force(false);
+            }
+            Files.move(temp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            deleteTempFile(temp, e);
+            throw new DecryptionException(e);
+        } finally {
+            this.crypto.release(cipher);
+        }
+    }
+
+    /**
+     * Open file encrypted with {@link #encryptFileParallel(Path, Path, ForkJoinPool, PublicKey...)} for random access
+     * reading. Position and size of the channel refer to decrypted data. Reading a range decrypts only the chunks
+     * which contain it, so the cost doesn't depend on the range position.
+     * 
+     * @param in
+     *            the encrypted file.
+     * @param privateKey
+     *            the recipients private key.
+     * @return the read-only channel with decrypted data. The channel should be closed by the caller.
+     * @throws DecryptionException
+     *             if file header couldn't be decrypted. Chunk decryption errors are reported by the channel as
+     *             {@link IOException}.
+     */
+    public SeekableByteChannel openDecryptingChannel(Path in, PrivateKey privateKey) throws DecryptionException {
+        if (in == null) {
+            throw new NullArgumentException("in");
+        }
+        if (privateKey == null) {
+            throw new NullArgumentException("privateKey");
+        }
+
+        VirgilCipher cipher = this.crypto.obtainCipher();
+        FileChannel inChannel = null;
+        try {
+            inChannel = FileChannel.open(in, StandardOpenOption.READ);
+            byte[] header = ParallelChunkCipher.readHeader(inChannel);
+            byte[] keyMaterial = cipher.decryptWithKey(header, privateKey.getId(), privateKey.getValue());
+            ParallelChunkCipher chunkCipher = ParallelChunkCipher.fromKeyMaterial(keyMaterial);
+
+            long chunksOffset = ParallelChunkCipher.HEADER_LENGTH_SIZE + header.length;
+            if (inChannel.size() != chunksOffset + chunkCipher.encryptedLength()) {
+                throw new IOException("Encrypted data is malformed");
+            }
+            return new ChunkDecryptingChannel(inChannel, chunksOffset, chunkCipher);
+        } catch (Exception e) {
+            if (inChannel != null) {
+                try {
+                    inChannel.close();
+                } catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
+            }
+            throw new DecryptionException(e);
+        } finally {
+            this.crypto.release(cipher);
+        }
+    }
+
+    /**
+     * Compute hash tree of file with {@link HashTree#LEAF_SIZE_DEFAULT default} leaf size.
+     * 
+     * @param file
+     *            the file.
+     * @param algorithm
+     *            the hash algorithm. SHA256, SHA384 and SHA512 are supported.
+     * @param pool
+     *            the pool used to hash leaves in parallel. If {@code null}, leaves are hashed on the calling thread.
+     * @return the hash tree.
+     * @throws CryptoException
+     *             if file couldn't be read.
+     * 
+     * @see #computeHashTree(Path, HashAlgorithm, int, ForkJoinPool)
+     */
+    public HashTree computeHashTree(Path file, HashAlgorithm algorithm, ForkJoinPool pool) throws CryptoException {
+        return computeHashTree(file, algorithm, HashTree.LEAF_SIZE_DEFAULT, pool);
+    }
+
+    /**
+     * Compute hash tree of file. Leaves are read with positional reads and hashed in parallel. The tree could be
+     * signed with {@link VirgilCrypto#signHashTree(HashTree, PrivateKey)} and stored with
+     * {@link HashTree#toByteArray()}, so ranges of leaves could be verified later with
+     * {@link #verifyLeaves(Path, HashTree, int, int, ForkJoinPool)}.
+     * 
+     * @param file
+     *            the file.
+     * @param algorithm
+     *            the hash algorithm. SHA256, SHA384 and SHA512 are supported.
+     * @param leafSize
+     *            the size of data leaf.
+     * @param pool
+     *            the pool used to hash leaves in parallel. If {@code null}, leaves are hashed on the calling thread.
+     * @return the hash tree.
+     * @throws CryptoException
+     *             if file couldn't be read.
+     */
+    public HashTree computeHashTree(Path file, HashAlgorithm algorithm, int leafSize, ForkJoinPool pool)
+            throws CryptoException {
+        if (file == null) {
+            throw new NullArgumentException("file");
+        }
+        if (algorithm == null) {
+            throw new NullArgumentException("algorithm");
+        }
+        if (algorithm != HashAlgorithm.SHA256 && algorithm != HashAlgorithm.SHA384
+                && algorithm != HashAlgorithm.SHA512) {
+            throw new IllegalArgumentException("Hash algorithm is not supported for hash tree");
+        }
+        if (leafSize <= 0) {
+            throw new IllegalArgumentException("leafSize");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long dataLength = channel.size();
+            long leafCount = HashTree.leafCount(dataLength, leafSize);
+            if (leafCount > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Leaf size is too small for the file");
+            }
+            byte[][] leaves = new byte[(int) leafCount][];
+            hashLeaves(channel, algorithm, leafSize, dataLength, leaves, 0, pool);
+
+            return new HashTree(algorithm, leafSize, dataLength, leaves);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * Verify signed hash tree and the whole file in parallel.
+     * 
+     * @param file
+     *            the file.
+     * @param tree
+     *            the hash tree.
+     * @param signature
+     *            the signature of the tree.
+     * @param signer
+     *            the signer's public key.
+     * @param pool
+     *            the pool used to hash leaves in parallel. If {@code null}, leaves are hashed on the calling thread.
+     * @return {@code true} if signature is valid and file matches the tree.
+     * @throws VerificationException
+     *             if signature couldn't be verified or file couldn't be read.
+     */
+    public boolean verifyHashTree(Path file, HashTree tree, byte[] signature, PublicKey signer, ForkJoinPool pool)
+            throws VerificationException {
+        return this.crypto.verifyHashTree(tree, signature, signer)
+                && verifyLeaves(file, tree, 0, tree.getLeafCount(), pool);
+    }
+
+    /**
+     * Verify that a range of file leaves matches hash tree. Only the leaves of the range are read. The tree itself
+     * should be verified with {@link VirgilCrypto#verifyHashTree(HashTree, byte[], PublicKey)}.
+     * 
+     * @param file
+     *            the file.
+     * @param tree
+     *            the hash tree.
+     * @param fromLeaf
+     *            the index of the first leaf, inclusive.
+     * @param toLeaf
+     *            the index of the last leaf, exclusive.
+     * @param pool
+     *            the pool used to hash leaves in parallel. If {@code null}, leaves are hashed on the calling thread.
+     * @return {@code true} if leaves match the tree.
+     * @throws VerificationException
+     *             if file couldn't be read.
+     */
+    public boolean verifyLeaves(Path file, HashTree tree, int fromLeaf, int toLeaf, ForkJoinPool pool)
+            throws VerificationException {
+        if (file == null) {
+            throw new NullArgumentException("file");
+        }
+        if (tree == null) {
+            throw new NullArgumentException("tree");
+        }
+        if (fromLeaf < 0 || toLeaf < fromLeaf || toLeaf > tree.getLeafCount()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != tree.getDataLength()) {
+                return false;
+            }
+            byte[][] leaves = new byte[toLeaf - fromLeaf][];
+            hashLeaves(channel, tree.getAlgorithm(), tree.getLeafSize(), tree.getDataLength(), leaves, fromLeaf, pool);
+
+            for (int i = 0; i < leaves.length; i++) {
+                if (!tree.leafEquals(fromLeaf + i, leaves[i])) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            throw new VerificationException(e);
+        }
+    }
+
+    private void hashLeaves(FileChannel channel, HashAlgorithm algorithm, int leafSize, long dataLength,
+            byte[][] leaves, int firstLeaf, ForkJoinPool pool) throws IOException {
+        if (pool == null) {
+            hashLeaves(channel, algorithm, leafSize, dataLength, leaves, firstLeaf, 0, leaves.length);
+        } else {
+            pool.invoke(new HashLeavesTask(channel, algorithm, leafSize, dataLength, leaves, firstLeaf, 0,
+                    leaves.length));
+        }
+    }
+
+    /**
+     * Encrypt file for recipients. Large files are read through memory-mapped windows, smaller files are read
+     * through a {@link FileChannel} into a reused direct buffer. Encrypted data is written with gathering writes.
+     * 
+     * @param in
+     *            the file to be encrypted.
+     * @param out
+     *            the file for encrypted data. Existing file is overwritten.
+     * @param recipients
+     *            the recipients public keys.
+     * @throws EncryptionException
+     *             if file couldn't be encrypted.
+     */
+    public void encryptFile(Path in, Path out, PublicKey... recipients) throws EncryptionException {
+        if (in == null) {
+            throw new NullArgumentException("in");
+        }
+        if (out == null) {
+            throw new NullArgumentException("out");
+        }
+        if (recipients == null) {
+            throw new NullArgumentException("recipients");
+        }
+
+        encryptFile(in, out, recipients, true);
+    }
+
+    /**
+     * Encrypt file for recipients without content info. Content info should be stored separately, e.g. in
+     * {@link DetachedHeaderStore}, and is required for decryption with
+     * {@link #decryptFileDetached(Path, Path, byte[], PrivateKey)}.
+     * 
+     * @param in
+     *            the file to be encrypted.
+     * @param out
+     *            the file for encrypted data. Existing file is overwritten.
+     * @param recipients
+     *            the recipients public keys.
+     * @return the content info.
+     * @throws EncryptionException
+     *             if file couldn't be encrypted.
+     */
+    public byte[] encryptFileDetached(Path in, Path out, PublicKey... recipients) throws EncryptionException {
+        if (in == null) {
+            throw new NullArgumentException("in");
+        }
+        if (out == null) {
+            throw new NullArgumentException("out");
+        }
+        if (recipients == null) {
+            throw new NullArgumentException("recipients");
+        }
+
+        return encryptFile(in, out, recipients, false);
+    }
+
+    /**
+     * @return the content info.
+     */
+    private byte[] encryptFile(Path in, Path out, PublicKey[] recipients, boolean embedContentInfo)
+            throws EncryptionException {
+        try (VirgilStreamCipher cipher = new VirgilStreamCipher();
+                VirgilDataSource dataSource = openDataSource(in);
+                VirgilChannelDataSink dataSink = new VirgilChannelDataSink(FileChannel.open(out,
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            for (PublicKey recipient : recipients) {
+                cipher.addKeyRecipient(recipient.getId(), recipient.getValue());
+            }
+
+            cipher.encrypt(dataSource, dataSink, embedContentInfo);
+            dataSink.flush();
+            return cipher.getContentInfo();
+        } catch (Exception e) {
+            throw new EncryptionException(e);
+        }
+    }
+
+    /**
+     * Encrypt file for recipients in parallel. The file is split into independent chunks which are encrypted with a
+     * random data key on all threads of the pool. The data key is encrypted for recipients and stored in the header.
+     * Encrypted file could be decrypted with {@link #decryptFileParallel(Path, Path, PrivateKey, ForkJoinPool)} only.
+     * 
+     * Encrypted data is written to a temporary file in the same directory, which atomically replaces the output file
+     * once all chunks are encrypted. If encryption fails, the temporary file is deleted and the output file is left as
+     * it was, so a partly encrypted file never appears under the output name.
+     * 
+     * @param in
+     *            the file to be encrypted.
+     * @param out
+     *            the file for encrypted data. Existing file is replaced.
+     * @param pool
+     *            the pool which encrypts chunks, or {@code null} to encrypt on the calling thread.
+     * @param recipients
+     *            the recipients public keys.
+     * @throws EncryptionException
+     *             if file couldn't be encrypted.
+     */
+    public void encryptFileParallel(Path in, Path out, ForkJoinPool pool, PublicKey... recipients)
+            throws EncryptionException {
+        if (in == null) {
+            throw new NullArgumentException("in");
+        }
+        if (out == null) {
+            throw new NullArgumentException("out");
+        }
+        if (recipients == null) {
+            throw new NullArgumentException("recipients");
+        }
+
+        Path temp = tempFile(out);
+        VirgilCipher cipher = this.crypto.obtainCipher();
+        try {
+            try (FileChannel inChannel = FileChannel.open(in, StandardOpenOption.READ);
+                    FileChannel outChannel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                    VirgilRandom random = new VirgilRandom(CHUNKED_ENCRYPTION_PERSONAL_INFO)) {
+                ParallelChunkCipher chunkCipher = ParallelChunkCipher.create(
+                        random.randomize(ParallelChunkCipher.randomBytesSize()),
+                        ParallelChunkCipher.CHUNK_SIZE_DEFAULT, inChannel.size());
+                for (PublicKey recipient : recipients) {
+                    cipher.addKeyRecipient(recipient.getId(), recipient.getValue());
+                }
+
+                byte[] header = cipher.encrypt(chunkCipher.keyMaterial(), true);
+                long chunksOffset = ParallelChunkCipher.writeHeader(outChannel, header);
+                chunkCipher.encrypt(inChannel, outChannel, chunksOffset, pool);
+                outChannel.force(false);
+            }
+            Files.move(temp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            deleteTempFile(temp, e);
+            throw new EncryptionException(e);
+        } finally {
+            this.crypto.release(cipher);
+        }
+    }
+
+    /**
+     * Generate key pairs in parallel. Each worker reuses its own hash for key identifiers.
+     * 
+     * @param keysType
+     *            the key type.
+     * @param count
+     *            the number of key pairs.
+     * @param pool
+     *            the pool used to generate key pairs in parallel. If {@code null}, key pairs are generated on the
+     *            calling thread.
+     * @return generated key pairs.
+     * 
+     * @see VirgilCrypto#generateKeys(KeysType, int)
+     */
+    public List<KeyPair> generateKeys(KeysType keysType, int count, ForkJoinPool pool) {
+        if (pool == null) {
+            return this.crypto.generateKeys(keysType, count);
+        }
+        if (keysType == null) {
+            throw new NullArgumentException("keysType");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("count");
+        }
+
+        KeyPair[] keyPairs = new KeyPair[count];
+        pool.invoke(new GenerateKeysTask(keysType, keyPairs, 0, count));
+        return Arrays.asList(keyPairs);
+    }
+
+    /**
+     * Add or remove key recipients of file encrypted with {@link #encryptFile(Path, Path, PublicKey...)} or
+     * {@link #encryptFileParallel(Path, Path, ForkJoinPool, PublicKey...)}. Only content info is re-wrapped, encrypted
+     * data is copied to the output file as is. The content key is not changed, so removed recipients who kept a copy
+     * of the input file can still decrypt it.
+     * 
+     * @param in
+     *            the encrypted file.
+     * @param out
+     *            the file for re-wrapped data. Existing file is overwritten.
+     * @param holder
+     *            the private key of one of current recipients.
+     * @param add
+     *            the public keys of recipients to be added, or {@code null}.
+     * @param removeIds
+     *            the identifiers of recipients to be removed, or {@code null}.
+     * @throws CryptoException
+     *             if file couldn't be read or written, or content info couldn't be re-wrapped.
+     * @see VirgilCrypto#rewrap(byte[], PrivateKey, PublicKey[], byte[][])
+     */
+    public void rewrapFile(Path in, Path out, PrivateKey holder, PublicKey[] add, byte[][] removeIds)
+            throws CryptoException {
+        if (in == null) {
+            throw new NullArgumentException("in");
+        }
+        if (out == null) {
+            throw new NullArgumentException("out");
+        }
+        try (FileChannel inChannel = FileChannel.open(in, StandardOpenOption.READ);
+                FileChannel outChannel = FileChannel.open(out, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] contentInfo = readContentInfo(inChannel);
+            replaceContentInfo(inChannel, outChannel,
+                    this.crypto.rewrap(contentInfo, holder, add, removeIds));
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * Sign file with private key. Large files are read through memory-mapped windows.
+     * 
+     * @param file
+     *            the file to be signed.
+     * @param privateKey
+     *            the signer's private key.
+     * @return the signature.
+     * @throws SigningException
+     *             if file couldn't be signed.
+     */
+    public byte[] sign(Path file, PrivateKey privateKey) throws SigningException {
+        if (file == null) {
+            throw new NullArgumentException("file");
+        }
+
+        if (privateKey == null) {
+            throw new NullArgumentException("privateKey");
+        }
+
+        VirgilStreamSigner signer = this.crypto.obtainStreamSigner();
+        try (VirgilDataSource dataSource = openDataSource(file)) {
+            byte[] signature = signer.sign(dataSource, privateKey.getValue());
+            return signature;
+        } catch (Exception e) {
+            throw new SigningException(e);
+        } finally {
+            this.crypto.release(signer);
+        }
+    }
+
+    /**
+     * Sign a batch of byte arrays with the same private key. The key is prepared once for the whole batch.
+     * 
+     * @param items
+     *            the data items to be signed.
+     * @param privateKey
+     *            the signer's private key.
+     * @param pool
+     *            the pool used to sign items in parallel. If {@code null}, items are signed on the calling thread.
+     * @return the signatures in the same order as items.
+     * @throws SigningException
+     *             if any item couldn't be signed.
+     */
+    public List<byte[]> signBatch(List<byte[]> items, PrivateKey privateKey, ForkJoinPool pool)
+            throws SigningException {
+        if (pool == null) {
+            return this.crypto.signBatch(items, privateKey);
+        }
+        VirgilCrypto.validateSignBatch(items, privateKey);
+
+        try {
+            PreparedPrivateKey preparedKey = this.crypto.preparePrivateKey(privateKey);
+            byte[][] signatures = new byte[items.size()][];
+            pool.invoke(new SignBatchTask(items, preparedKey, signatures, 0, items.size()));
+            return Arrays.asList(signatures);
+        } catch (Exception e) {
+            throw new SigningException(e);
+        }
+    }
+
+    /**
+     * Verify a batch of byte arrays signed with the same key. The key is prepared once for the whole batch.
+     * Verification stops on the first invalid signature.
+     * 
+     * @param items
+     *            the data items to be verified.
+     * @param signatures
+     *            the signatures in the same order as items.
+     * @param signer
+     *            the signer's public key.
+     * @param pool
+     *            the pool used to verify items in parallel. If {@code null}, items are verified on the calling thread.
+     * @return {@code true} if all signatures are valid. {@code false} in other case.
+     * @throws VerificationException
+     *             if data couldn't be verified.
+     */
+    public boolean verifyBatch(List<byte[]> items, List<byte[]> signatures, PublicKey signer, ForkJoinPool pool)
+            throws VerificationException {
+        if (pool == null) {
+            return this.crypto.verifyBatch(items, signatures, signer);
+        }
+        VirgilCrypto.validateVerifyBatch(items, signatures, signer);
+
+        try {
+            PreparedPublicKey preparedKey = this.crypto.preparePublicKey(signer);
+            return pool.invoke(
+                    new VerifyBatchTask(items, signatures, preparedKey, new AtomicBoolean(), 0, items.size()));
+        } catch (Exception e) {
+            throw new VerificationException(e);
+        }
+    }
+
+    /**
+     * Verify file with signature. Large files are read through memory-mapped windows.
+     * 
+     * @param file
+     *            the file to be verified.
+     * @param signature
+     *            the signature.
+     * @param signer
+     *            the signer's public key.
+     * @return {@code true} if signature is valid. {@code false} in other case.
+     * @throws VerificationException
+     *             if file couldn't be verified.
+     */
+    public boolean verify(Path file, byte[] signature, PublicKey signer) throws VerificationException {
+        if (file == null) {
+            throw new NullArgumentException("file");
+        }
+        if (signature == null) {
+            throw new NullArgumentException("signature");
+        }
+        if (signer == null) {
+            throw new NullArgumentException("signer");
+        }
+
+        VirgilStreamSigner virgilSigner = this.crypto.obtainStreamSigner();
+        try (VirgilDataSource dataSource = openDataSource(file)) {
+            boolean valid = virgilSigner.verify(dataSource, signature, signer.getValue());
+            return valid;
+        } catch (Exception e) {
+            throw new VerificationException(e);
+        } finally {
+            this.crypto.release(virgilSigner);
+        }
+    }
+
+    /**
+     * Hash a range of leaves on the calling thread.
+     */
+    private void hashLeaves(FileChannel channel, HashAlgorithm algorithm, int leafSize, long dataLength,
+            byte[][] leaves, int firstLeaf, int from, int to) throws IOException {
+        VirgilHash hash = this.crypto.obtainHash(algorithm);
+        try {
+            // Native code takes whole arrays, so the buffer is reused for full leaves only
+            byte[] fullLeaf = null;
+            for (int i = from; i < to; i++) {
+                long position = (long) (firstLeaf + i) * leafSize;
+                int length = (int) Math.min(leafSize, dataLength - position);
+                byte[] leaf;
+                if (length == leafSize) {
+                    if (fullLeaf == null) {
+                        fullLeaf = new byte[leafSize];
+                    }
+                    leaf = fullLeaf;
+                } else {
+                    leaf = new byte[length];
+                }
+
+                ByteBuffer buffer = ByteBuffer.wrap(leaf);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of file");
+                    }
+                }
+                leaves[i] = HashTree.hashLeaf(hash, leaf);
+            }
+        } finally {
+            this.crypto.release(hash);
+        }
+    }
+
+    private class GenerateKeysTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final KeysType keysType;
+        private final KeyPair[] keyPairs;
+        private final int from;
+        private final int to;
+
+        GenerateKeysTask(KeysType keysType, KeyPair[] keyPairs, int from, int to) {
+            this.keysType = keysType;
+            this.keyPairs = keyPairs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > KEYS_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ForkJoinTasks.forkAndJoin(new GenerateKeysTask(keysType, keyPairs, from, middle),
+                        new GenerateKeysTask(keysType, keyPairs, middle, to));
+                return;
+            }
+            crypto.generateKeys(keysType, keyPairs, from, to);
+        }
+    }
+
+    private class HashLeavesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final HashAlgorithm algorithm;
+        private final int leafSize;
+        private final long dataLength;
+        /** Element {@code i} is the hash of leaf {@code firstLeaf + i} */
+        private final byte[][] leaves;
+        private final int firstLeaf;
+        private final int from;
+        private final int to;
+
+        HashLeavesTask(FileChannel channel, HashAlgorithm algorithm, int leafSize, long dataLength, byte[][] leaves,
+                int firstLeaf, int from, int to) {
+            this.channel = channel;
+            this.algorithm = algorithm;
+            this.leafSize = leafSize;
+            this.dataLength = dataLength;
+            this.leaves = leaves;
+            this.firstLeaf = firstLeaf;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAVES_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ForkJoinTasks.forkAndJoin(
+                        new HashLeavesTask(channel, algorithm, leafSize, dataLength, leaves, firstLeaf, from, middle),
+                        new HashLeavesTask(channel, algorithm, leafSize, dataLength, leaves, firstLeaf, middle, to));
+                return;
+            }
+            try {
+                hashLeaves(channel, algorithm, leafSize, dataLength, leaves, firstLeaf, from, to);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private class SignBatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<byte[]> items;
+        private final PreparedPrivateKey privateKey;
+        private final byte[][] signatures;
+        private final int from;
+        private final int to;
+
+        SignBatchTask(List<byte[]> items, PreparedPrivateKey privateKey, byte[][] signatures, int from, int to) {
+            this.items = items;
+            this.privateKey = privateKey;
+            this.signatures = signatures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ForkJoinTasks.forkAndJoin(new SignBatchTask(items, privateKey, signatures, from, middle),
+                        new SignBatchTask(items, privateKey, signatures, middle, to));
+                return;
+            }
+            crypto.signBatch(items, privateKey, signatures, from, to);
+        }
+    }
+
+    private class VerifyBatchTask extends RecursiveTask<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<byte[]> items;
+        private final List<byte[]> signatures;
+        private final PreparedPublicKey publicKey;
+        private final AtomicBoolean failed;
+        private final int from;
+        private final int to;
+
+        VerifyBatchTask(List<byte[]> items, List<byte[]> signatures, PreparedPublicKey publicKey,
+                AtomicBoolean failed, int from, int to) {
+            this.items = items;
+            this.signatures = signatures;
+            this.publicKey = publicKey;
+            this.failed = failed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (to - from > BATCH_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                VerifyBatchTask left = new VerifyBatchTask(items, signatures, publicKey, failed, from, middle);
+                VerifyBatchTask right = new VerifyBatchTask(items, signatures, publicKey, failed, middle, to);
+                ForkJoinTasks.forkAndJoin(left, right);
+                return left.join() && right.join();
+            }
+            return crypto.verifyBatch(items, signatures, publicKey, failed, from, to);
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import java.nio.ByteBuffer;
+
+import com.virgilsecurity.crypto.VirgilHash;
+import com.virgilsecurity.sdk.exception.NullArgumentException;
+
+/**
+ * {@link Hasher} based on native {@link VirgilHash}. Native code takes whole arrays, so parts of arrays and buffers
+ * are copied through a reused chunk.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+class VirgilHasher implements Hasher {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    protected final VirgilHash hash;
+    private byte[] chunk;
+
+    /**
+     * Create a new instance of {@code VirgilHasher}. The hasher takes ownership of the native hash.
+     *
+     * @param hash
+     *            the native hash.
+     */
+    VirgilHasher(VirgilHash hash) {
+        this.hash = hash;
+        start();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Hasher#update(byte[])
+     */
+    @Override
+    public void update(byte[] data) {
+        if (data == null) {
+            throw new NullArgumentException("data");
+        }
+        updateNative(data);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Hasher#update(byte[], int, int)
+     */
+    @Override
+    public void update(byte[] data, int offset, int length) {
+        if (data == null) {
+            throw new NullArgumentException("data");
+        }
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (offset == 0 && length == data.length) {
+            updateNative(data);
+            return;
+        }
+        while (length > 0) {
+            byte[] part = part(length);
+            System.arraycopy(data, offset, part, 0, part.length);
+            updateNative(part);
+            offset += part.length;
+            length -= part.length;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Hasher#update(java.nio.ByteBuffer)
+     */
+    @Override
+    public void update(ByteBuffer data) {
+        if (data == null) {
+            throw new NullArgumentException("data");
+        }
+        if (data.hasArray()) {
+            update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+            return;
+        }
+        while (data.hasRemaining()) {
+            byte[] part = part(data.remaining());
+            data.get(part);
+            updateNative(part);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Hasher#finish()
+     */
+    @Override
+    public byte[] finish() {
+        byte[] digest = finishNative();
+        start();
+        return digest;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.Hasher#close()
+     */
+    @Override
+    public void close() {
+        this.hash.close();
+        this.chunk = null;
+    }
+
+    /**
+     * Prepare native hash for the new data.
+     */
+    protected void start() {
+        this.hash.start();
+    }
+
+    /**
+     * Process data with native hash.
+     * 
+     * @param data
+     *            the data.
+     */
+    protected void updateNative(byte[] data) {
+        this.hash.update(data);
+    }
+
+    /**
+     * @return the result of native hash.
+     */
+    protected byte[] finishNative() {
+        return this.hash.finish();
+    }
+
+    /**
+     * @param remaining
+     *            the number of bytes to be processed.
+     * @return the reused chunk if there are enough bytes to fill it, or a new array for the rest of bytes.
+     */
+    private byte[] part(int remaining) {
+        if (remaining < CHUNK_SIZE) {
+            return new byte[remaining];
+        }
+        if (this.chunk == null) {
+            this.chunk = new byte[CHUNK_SIZE];
+        }
+        return this.chunk;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import com.virgilsecurity.crypto.VirgilHash;
+
+/**
+ * {@link Mac} based on HMAC functions of native {@link VirgilHash}.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+class VirgilMac extends VirgilHasher implements Mac {
+
+    /**
+     * Create a new instance of {@code VirgilMac}. The instance takes ownership of the native hash.
+     *
+     * @param hash
+     *            the native hash.
+     * @param key
+     *            the secret key.
+     */
+    VirgilMac(VirgilHash hash, byte[] key) {
+        super(startHmac(hash, key));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.VirgilHasher#start()
+     */
+    @Override
+    protected void start() {
+        this.hash.hmacReset();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.VirgilHasher#updateNative(byte[])
+     */
+    @Override
+    protected void updateNative(byte[] data) {
+        this.hash.hmacUpdate(data);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.crypto.VirgilHasher#finishNative()
+     */
+    @Override
+    protected byte[] finishNative() {
+        return this.hash.hmacFinish();
+    }
+
+    private static VirgilHash startHmac(VirgilHash hash, byte[] key) {
+        // Key is set once, the superclass constructor resets state only
+        hash.hmacStart(key);
+        return hash;
+    }
+
+}
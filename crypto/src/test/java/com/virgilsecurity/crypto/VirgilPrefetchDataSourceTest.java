@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link VirgilPrefetchDataSource}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilPrefetchDataSourceTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void read() throws IOException {
+        byte[] data = new byte[1000];
+        new Random().nextBytes(data);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (VirgilPrefetchDataSource dataSource = new VirgilPrefetchDataSource(new ByteArrayInputStream(data),
+                executor, 64)) {
+            byte[] previous = null;
+            while (dataSource.hasData()) {
+                byte[] chunk = dataSource.read();
+                assertNotSame(previous, chunk);
+                out.write(chunk);
+                previous = chunk;
+            }
+            assertEquals(0, dataSource.read().length);
+        }
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test
+    public void read_emptyStream() throws IOException {
+        try (VirgilPrefetchDataSource dataSource = new VirgilPrefetchDataSource(
+                new ByteArrayInputStream(new byte[0]), executor)) {
+            assertFalse(dataSource.hasData());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void hasData_readFailed() throws IOException {
+        InputStream failingStream = new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        try (VirgilPrefetchDataSource dataSource = new VirgilPrefetchDataSource(failingStream, executor)) {
+            dataSource.hasData();
+        }
+    }
+
+}
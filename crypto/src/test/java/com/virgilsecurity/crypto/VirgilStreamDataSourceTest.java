@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link VirgilStreamDataSource}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilStreamDataSourceTest {
+
+    @Test
+    public void read_noAvailableBytes() throws IOException {
+        byte[] data = new byte[1000];
+        new Random().nextBytes(data);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (VirgilStreamDataSource dataSource = new VirgilStreamDataSource(new SlowInputStream(data), 64)) {
+            while (dataSource.hasData()) {
+                byte[] chunk = dataSource.read();
+                if (out.size() + 64 <= data.length) {
+                    assertEquals(64, chunk.length);
+                }
+                out.write(chunk);
+            }
+        }
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test
+    public void read_chunkReused() throws IOException {
+        try (VirgilStreamDataSource dataSource = new VirgilStreamDataSource(new ByteArrayInputStream(new byte[256]),
+                100)) {
+            assertTrue(dataSource.hasData());
+            byte[] first = dataSource.read();
+            byte[] second = dataSource.read();
+            assertSame(first, second);
+            assertEquals(56, dataSource.read().length);
+            assertFalse(dataSource.hasData());
+            assertEquals(0, dataSource.read().length);
+        }
+    }
+
+    @Test
+    public void read_emptyStream() throws IOException {
+        try (VirgilStreamDataSource dataSource = new VirgilStreamDataSource(new ByteArrayInputStream(new byte[0]))) {
+            assertFalse(dataSource.hasData());
+        }
+    }
+
+    /**
+     * Input stream which never reports available bytes and returns few bytes per read, like a socket.
+     */
+    private static class SlowInputStream extends ByteArrayInputStream {
+
+        SlowInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public synchronized int available() {
+            return 0;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 7));
+        }
+
+    }
+
+}
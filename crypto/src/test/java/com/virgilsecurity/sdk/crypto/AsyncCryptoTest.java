@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.virgilsecurity.sdk.crypto.AsyncCrypto.SaturationPolicy;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+import com.virgilsecurity.sdk.crypto.exceptions.DecryptionException;
+
+/**
+ * Unit tests for {@link AsyncCrypto}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class AsyncCryptoTest {
+
+    private static final byte[] DATA = "Test data".getBytes();
+
+    private CountDownLatch latch;
+    private Crypto crypto;
+    private KeyPair keyPair;
+    private AsyncCrypto asyncCrypto;
+
+    @Before
+    public void setUp() {
+        latch = new CountDownLatch(1);
+        // Signing waits for the latch, so the pool could be saturated
+        crypto = new VirgilCrypto() {
+            @Override
+            public byte[] sign(byte[] data, PrivateKey privateKey) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.sign(data, privateKey);
+            }
+        };
+        keyPair = crypto.generateKeys();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        latch.countDown();
+        if (asyncCrypto != null) {
+            asyncCrypto.shutdown();
+            assertTrue(asyncCrypto.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void encrypt_decrypt() throws InterruptedException, ExecutionException {
+        asyncCrypto = new AsyncCrypto(crypto, 2, 10);
+
+        byte[] encrypted = asyncCrypto.encrypt(DATA, keyPair.getPublicKey()).get();
+        assertArrayEquals(DATA, asyncCrypto.decrypt(encrypted, keyPair.getPrivateKey()).get());
+
+        encrypted = asyncCrypto.encrypt(DATA, new PublicKey[] { keyPair.getPublicKey() }).get();
+        assertArrayEquals(DATA, asyncCrypto.decrypt(encrypted, keyPair.getPrivateKey()).get());
+    }
+
+    @Test
+    public void sign_verify() throws InterruptedException, ExecutionException {
+        asyncCrypto = new AsyncCrypto(crypto, 2, 10);
+        latch.countDown();
+
+        byte[] signature = asyncCrypto.sign(DATA, keyPair.getPrivateKey()).get();
+        assertTrue(asyncCrypto.verify(DATA, signature, keyPair.getPublicKey()).get());
+        assertFalse(asyncCrypto.verify("Other data".getBytes(), signature, keyPair.getPublicKey()).get());
+    }
+
+    @Test
+    public void signThenEncrypt_decryptThenVerify() throws InterruptedException, ExecutionException {
+        asyncCrypto = new AsyncCrypto(crypto, 2, 10);
+
+        byte[] encrypted = asyncCrypto.signThenEncrypt(DATA, keyPair.getPrivateKey(), keyPair.getPublicKey()).get();
+        assertArrayEquals(DATA,
+                asyncCrypto.decryptThenVerify(encrypted, keyPair.getPrivateKey(), keyPair.getPublicKey()).get());
+    }
+
+    @Test
+    public void decrypt_wrongKey() throws InterruptedException, CryptoException {
+        asyncCrypto = new AsyncCrypto(crypto, 2, 10);
+
+        byte[] encrypted = crypto.encrypt(DATA, keyPair.getPublicKey());
+        try {
+            asyncCrypto.decrypt(encrypted, crypto.generateKeys().getPrivateKey()).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DecryptionException);
+        }
+    }
+
+    @Test
+    public void reject_saturated() throws InterruptedException, ExecutionException, CryptoException {
+        asyncCrypto = new AsyncCrypto(crypto, 1, 1);
+
+        Future<byte[]> running = asyncCrypto.sign(DATA, keyPair.getPrivateKey());
+        Future<byte[]> queued = asyncCrypto.sign(DATA, keyPair.getPrivateKey());
+        try {
+            asyncCrypto.sign(DATA, keyPair.getPrivateKey());
+            fail();
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, asyncCrypto.getRejectedCount());
+        }
+        assertEquals(2, asyncCrypto.getPendingCount());
+        assertEquals(1, asyncCrypto.getQueueDepth());
+
+        latch.countDown();
+        assertTrue(crypto.verify(DATA, running.get(), keyPair.getPublicKey()));
+        assertTrue(crypto.verify(DATA, queued.get(), keyPair.getPublicKey()));
+
+        // Permits are released, so new operations are accepted again
+        asyncCrypto.sign(DATA, keyPair.getPrivateKey()).get();
+        assertEquals(1, asyncCrypto.getRejectedCount());
+    }
+
+    @Test
+    public void cancel_queued() throws InterruptedException, ExecutionException, CryptoException {
+        asyncCrypto = new AsyncCrypto(crypto, 1, 1);
+
+        asyncCrypto.sign(DATA, keyPair.getPrivateKey());
+        Future<byte[]> queued = asyncCrypto.sign(DATA, keyPair.getPrivateKey());
+        assertTrue(queued.cancel(false));
+
+        // Cancelled operation is removed from the queue, so its slot is free
+        assertEquals(0, asyncCrypto.getQueueDepth());
+        assertEquals(1, asyncCrypto.getPendingCount());
+        Future<byte[]> encrypted = asyncCrypto.encrypt(DATA, keyPair.getPublicKey());
+
+        latch.countDown();
+        assertArrayEquals(DATA, crypto.decrypt(encrypted.get(), keyPair.getPrivateKey()));
+    }
+
+    @Test
+    public void cancel_running() throws InterruptedException {
+        asyncCrypto = new AsyncCrypto(crypto, 1, 0);
+
+        Future<byte[]> running = asyncCrypto.sign(DATA, keyPair.getPrivateKey());
+        while (asyncCrypto.getActiveCount() == 0) {
+            Thread.sleep(10);
+        }
+        assertTrue(running.cancel(false));
+
+        // Cancelled operation still occupies the thread
+        try {
+            asyncCrypto.encrypt(DATA, keyPair.getPublicKey());
+            fail();
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, asyncCrypto.getPendingCount());
+        }
+
+        latch.countDown();
+        while (asyncCrypto.getPendingCount() > 0) {
+            Thread.sleep(10);
+        }
+        asyncCrypto.encrypt(DATA, keyPair.getPublicKey());
+    }
+
+    @Test
+    public void block_saturated() throws InterruptedException, ExecutionException {
+        asyncCrypto = new AsyncCrypto(crypto, 1, 0, SaturationPolicy.BLOCK);
+
+        Future<byte[]> running = asyncCrypto.sign(DATA, keyPair.getPrivateKey());
+        final AtomicBoolean submitted = new AtomicBoolean();
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                asyncCrypto.encrypt(DATA, keyPair.getPublicKey());
+                submitted.set(true);
+            }
+        });
+        submitter.start();
+        submitter.join(200);
+        assertFalse(submitted.get());
+
+        latch.countDown();
+        running.get();
+        submitter.join(10000);
+        assertTrue(submitted.get());
+        assertEquals(0, asyncCrypto.getRejectedCount());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void shutdown() {
+        asyncCrypto = new AsyncCrypto(crypto, 1, 1);
+        asyncCrypto.shutdown();
+
+        asyncCrypto.encrypt(DATA, keyPair.getPublicKey());
+    }
+
+}
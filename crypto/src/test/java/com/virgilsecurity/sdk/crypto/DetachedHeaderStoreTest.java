@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+import com.virgilsecurity.sdk.crypto.exceptions.DecryptionException;
+import com.virgilsecurity.sdk.crypto.exceptions.EncryptionException;
+
+/**
+ * Unit tests for {@link DetachedHeaderStore}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class DetachedHeaderStoreTest {
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VirgilCrypto crypto;
+    private DetachedHeaderStore store;
+    private KeyPair keyPair;
+    private byte[] data;
+    private Path plain;
+
+    @Before
+    public void setUp() throws IOException, CryptoException {
+        crypto = new VirgilCrypto();
+        store = new DetachedHeaderStore(crypto, folder.getRoot().toPath().resolve("headers"));
+        keyPair = crypto.generateKeys();
+        data = new byte[100 * 1024];
+        new Random().nextBytes(data);
+        plain = folder.newFile().toPath();
+        Files.write(plain, data);
+    }
+
+    @Test
+    public void encryptFile_decryptFile() throws IOException, CryptoException {
+        Path body = folder.newFile().toPath();
+        Path decrypted = folder.newFile().toPath();
+
+        store.encryptFile("object-1", plain, body, keyPair.getPublicKey());
+        byte[] contentInfo = store.read("object-1");
+        // Body has no content info
+        assertTrue(Files.size(body) < data.length + contentInfo.length);
+
+        store.decryptFile("object-1", body, decrypted, keyPair.getPrivateKey());
+        assertArrayEquals(data, Files.readAllBytes(decrypted));
+    }
+
+    @Test
+    public void rewrap_recipients() throws IOException, CryptoException {
+        KeyPair newKeyPair = crypto.generateKeys();
+        Path body = folder.newFile().toPath();
+        Path decrypted = folder.newFile().toPath();
+        store.encryptFile("object", plain, body, keyPair.getPublicKey());
+        byte[] encryptedBody = Files.readAllBytes(body);
+
+        store.rewrap("object", keyPair.getPrivateKey(), new PublicKey[] { newKeyPair.getPublicKey() },
+                new byte[][] { keyPair.getPublicKey().getId() });
+
+        assertArrayEquals(encryptedBody, Files.readAllBytes(body));
+        assertTrue(store.isRecipient("object", newKeyPair.getPublicKey().getId()));
+        assertFalse(store.isRecipient("object", keyPair.getPublicKey().getId()));
+        assertEquals(1, store.getRecipientIds("object").size());
+
+        store.decryptFile("object", body, decrypted, newKeyPair.getPrivateKey());
+        assertArrayEquals(data, Files.readAllBytes(decrypted));
+        try {
+            store.decryptFile("object", body, decrypted, keyPair.getPrivateKey());
+            fail();
+        } catch (DecryptionException e) {
+            // Removed recipient has no access
+        }
+    }
+
+    @Test
+    public void rotateKeys() throws IOException, CryptoException {
+        KeyPair newKeyPair = crypto.generateKeys();
+        for (int i = 0; i < 3; i++) {
+            store.encryptFile("object" + i, plain, folder.newFile().toPath(), keyPair.getPublicKey());
+        }
+        assertEquals(Arrays.asList("object0", "object1", "object2"), store.getIds());
+
+        KeyRotationJob job = new KeyRotationJob(crypto, SAME_THREAD, keyPair.getPrivateKey(),
+                newKeyPair.getPublicKey());
+        KeyRotationJob.Result result = job.rotateBlobs(store.getIds().iterator(), store);
+
+        assertEquals(3, result.getRotatedCount());
+        for (String id : store.getIds()) {
+            assertTrue(store.isRecipient(id, newKeyPair.getPublicKey().getId()));
+            assertFalse(store.isRecipient(id, keyPair.getPublicKey().getId()));
+        }
+    }
+
+    @Test
+    public void delete() throws CryptoException {
+        store.encryptFile("object", plain, folder.getRoot().toPath().resolve("body"), keyPair.getPublicKey());
+
+        assertTrue(store.delete("object"));
+        assertFalse(store.delete("object"));
+        assertTrue(store.getIds().isEmpty());
+    }
+
+    @Test
+    public void encryptFile_headerNotWritten() throws IOException {
+        // Record can't replace a non-empty directory
+        Files.createDirectories(folder.getRoot().toPath().resolve("headers").resolve("object").resolve("child"));
+        Path body = folder.getRoot().toPath().resolve("body");
+        try {
+            store.encryptFile("object", plain, body, keyPair.getPublicKey());
+            fail();
+        } catch (EncryptionException e) {
+            // Body without header record can't be decrypted
+            assertFalse(Files.exists(body));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void read_invalidId() throws IOException {
+        store.read("../object");
+    }
+
+}
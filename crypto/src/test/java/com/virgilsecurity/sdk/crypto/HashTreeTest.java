@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.virgilsecurity.crypto.VirgilHash;
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+
+/**
+ * Unit tests for {@link HashTree} and hash tree methods of {@link VirgilCrypto} and {@link VirgilFileCrypto}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class HashTreeTest {
+
+    private static final int LEAF_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VirgilCrypto crypto;
+    private VirgilFileCrypto fileCrypto;
+    private ForkJoinPool pool;
+    private KeyPair keyPair;
+    private byte[] data;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        crypto = new VirgilCrypto();
+        fileCrypto = new VirgilFileCrypto(crypto);
+        pool = new ForkJoinPool(4);
+        keyPair = crypto.generateKeys();
+        data = new byte[10 * LEAF_SIZE + 100];
+        new Random().nextBytes(data);
+        file = folder.newFile().toPath();
+        Files.write(file, data);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void computeHashTree() throws CryptoException {
+        HashTree tree = fileCrypto.computeHashTree(file, HashAlgorithm.SHA256, LEAF_SIZE, pool);
+
+        assertEquals(11, tree.getLeafCount());
+        assertEquals(data.length, tree.getDataLength());
+        assertEquals(LEAF_SIZE, tree.getLeafSize());
+        assertEquals(HashAlgorithm.SHA256, tree.getAlgorithm());
+
+        // Parallel and sequential hashing produce the same tree
+        HashTree sequentialTree = fileCrypto.computeHashTree(file, HashAlgorithm.SHA256, LEAF_SIZE, null);
+        assertArrayEquals(tree.getRoot(), sequentialTree.getRoot());
+
+        // The last leaf is partial
+        try (VirgilHash hash = new VirgilHash(VirgilHash.Algorithm.SHA256)) {
+            byte[] lastLeaf = Arrays.copyOfRange(data, 10 * LEAF_SIZE, data.length);
+            assertArrayEquals(HashTree.hashLeaf(hash, lastLeaf), tree.getLeafHash(10));
+        }
+
+        HashTree restoredTree = HashTree.fromByteArray(tree.toByteArray());
+        assertArrayEquals(tree.getRoot(), restoredTree.getRoot());
+        assertEquals(tree.getDataLength(), restoredTree.getDataLength());
+    }
+
+    @Test
+    public void computeHashTree_emptyFile() throws IOException, CryptoException {
+        Path emptyFile = folder.newFile().toPath();
+        HashTree tree = fileCrypto.computeHashTree(emptyFile, HashAlgorithm.SHA512, pool);
+
+        assertEquals(1, tree.getLeafCount());
+        assertEquals(64, tree.getRoot().length);
+        byte[] signature = crypto.signHashTree(tree, keyPair.getPrivateKey());
+        assertTrue(fileCrypto.verifyHashTree(emptyFile, tree, signature, keyPair.getPublicKey(), pool));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void computeHashTree_unsupportedAlgorithm() throws CryptoException {
+        fileCrypto.computeHashTree(file, HashAlgorithm.SHA1, pool);
+    }
+
+    @Test
+    public void signHashTree_verifyHashTree() throws IOException, CryptoException {
+        HashTree tree = fileCrypto.computeHashTree(file, HashAlgorithm.SHA256, LEAF_SIZE, pool);
+        byte[] signature = crypto.signHashTree(tree, keyPair.getPrivateKey());
+
+        HashTree restoredTree = HashTree.fromByteArray(tree.toByteArray());
+        assertTrue(crypto.verifyHashTree(restoredTree, signature, keyPair.getPublicKey()));
+        assertTrue(fileCrypto.verifyHashTree(file, restoredTree, signature, keyPair.getPublicKey(), pool));
+
+        // Tampered leaf hash changes the root
+        byte[] encodedTree = tree.toByteArray();
+        encodedTree[encodedTree.length - 1] ^= 1;
+        assertFalse(crypto.verifyHashTree(HashTree.fromByteArray(encodedTree), signature, keyPair.getPublicKey()));
+
+        // Tree parameters are signed too
+        HashTree otherTree = fileCrypto.computeHashTree(file, HashAlgorithm.SHA256, 2 * LEAF_SIZE, pool);
+        assertFalse(crypto.verifyHashTree(otherTree, signature, keyPair.getPublicKey()));
+
+        data[5 * LEAF_SIZE] ^= 1;
+        Files.write(file, data);
+        assertFalse(fileCrypto.verifyHashTree(file, tree, signature, keyPair.getPublicKey(), pool));
+    }
+
+    @Test
+    public void verifyLeaves() throws IOException, CryptoException {
+        HashTree tree = fileCrypto.computeHashTree(file, HashAlgorithm.SHA384, LEAF_SIZE, pool);
+
+        data[5 * LEAF_SIZE + 10] ^= 1;
+        Files.write(file, data);
+
+        assertTrue(fileCrypto.verifyLeaves(file, tree, 0, 5, pool));
+        assertTrue(fileCrypto.verifyLeaves(file, tree, 6, 11, null));
+        assertFalse(fileCrypto.verifyLeaves(file, tree, 4, 6, pool));
+        assertTrue(fileCrypto.verifyLeaves(file, tree, 3, 3, pool));
+
+        Files.write(file, Arrays.copyOf(data, data.length - 1));
+        assertFalse(fileCrypto.verifyLeaves(file, tree, 0, 1, pool));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromByteArray_malformed() throws CryptoException {
+        byte[] encodedTree = fileCrypto.computeHashTree(file, HashAlgorithm.SHA256, LEAF_SIZE, pool).toByteArray();
+        HashTree.fromByteArray(Arrays.copyOf(encodedTree, encodedTree.length - 1));
+    }
+
+    @Test
+    public void fromByteArray_malformedParameters() throws CryptoException {
+        byte[] encodedTree = fileCrypto.computeHashTree(file, HashAlgorithm.SHA256, LEAF_SIZE, pool).toByteArray();
+        int offset = 1 + 1 + HashAlgorithm.SHA256.name().length();
+
+        assertMalformed(ByteBuffer.wrap(encodedTree.clone()).putInt(offset, 0).array());
+        assertMalformed(ByteBuffer.wrap(encodedTree.clone()).putInt(offset, -LEAF_SIZE).array());
+        assertMalformed(ByteBuffer.wrap(encodedTree.clone()).putLong(offset + 4, -1).array());
+        assertMalformed(ByteBuffer.wrap(encodedTree.clone()).putLong(offset + 4, Long.MAX_VALUE).array());
+        assertMalformed(ByteBuffer.wrap(encodedTree.clone()).put(offset + 4 + 8, (byte) 0).array());
+    }
+
+    private static void assertMalformed(byte[] encodedTree) {
+        try {
+            HashTree.fromByteArray(encodedTree);
+            fail("Malformed tree accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+
+/**
+ * Unit tests for {@link KeyPairPool}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class KeyPairPoolTest {
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private VirgilCrypto crypto;
+
+    @Before
+    public void setUp() {
+        crypto = new VirgilCrypto();
+    }
+
+    @Test
+    public void generateKeys_hit() throws CryptoException {
+        KeyPairPool pool = new KeyPairPool(crypto, SAME_THREAD);
+        pool.setCapacity(KeysType.FAST_EC_ED25519, 2);
+        assertEquals(2, pool.size(KeysType.FAST_EC_ED25519));
+
+        KeyPair keyPair = pool.generateKeys(KeysType.FAST_EC_ED25519);
+        assertNotNull(keyPair);
+        assertArrayEquals(keyPair.getPublicKey().getId(), keyPair.getPrivateKey().getId());
+        byte[] data = "Test data".getBytes();
+        assertArrayEquals(data,
+                crypto.decrypt(crypto.encrypt(data, keyPair.getPublicKey()), keyPair.getPrivateKey()));
+
+        // Taken key pair is replaced
+        assertEquals(2, pool.size(KeysType.FAST_EC_ED25519));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(0, pool.getMissCount());
+    }
+
+    @Test
+    public void generateKeys_miss() {
+        KeyPairPool pool = new KeyPairPool(crypto, SAME_THREAD);
+        pool.setCapacity(KeysType.FAST_EC_ED25519, 1);
+
+        assertNotNull(pool.generateKeys(KeysType.EC_SECP256R1));
+        assertEquals(0, pool.size(KeysType.EC_SECP256R1));
+        assertEquals(0, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertTrue(pool.getAverageMissNanos() > 0);
+    }
+
+    @Test
+    public void generateKeys_background() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            KeyPairPool pool = new KeyPairPool(crypto, executor);
+            pool.setCapacity(KeysType.FAST_EC_ED25519, 3);
+
+            for (int i = 0; i < 100 && pool.size(KeysType.FAST_EC_ED25519) < 3; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(3, pool.size(KeysType.FAST_EC_ED25519));
+
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(pool.generateKeys(KeysType.FAST_EC_ED25519));
+            }
+            assertEquals(10, pool.getHitCount() + pool.getMissCount());
+            assertTrue(pool.getHitCount() >= 3);
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void setCapacity_decrease() {
+        KeyPairPool pool = new KeyPairPool(crypto, SAME_THREAD);
+        pool.setCapacity(KeysType.FAST_EC_ED25519, 3);
+        pool.setCapacity(KeysType.FAST_EC_ED25519, 1);
+
+        assertEquals(1, pool.getCapacity(KeysType.FAST_EC_ED25519));
+        assertEquals(1, pool.size(KeysType.FAST_EC_ED25519));
+    }
+
+    @Test
+    public void shutdown() {
+        KeyPairPool pool = new KeyPairPool(crypto, SAME_THREAD);
+        pool.setCapacity(KeysType.FAST_EC_ED25519, 2);
+        pool.shutdown();
+
+        assertEquals(0, pool.size(KeysType.FAST_EC_ED25519));
+        assertNotNull(pool.generateKeys(KeysType.FAST_EC_ED25519));
+        assertEquals(0, pool.size(KeysType.FAST_EC_ED25519));
+        assertEquals(1, pool.getMissCount());
+    }
+
+}
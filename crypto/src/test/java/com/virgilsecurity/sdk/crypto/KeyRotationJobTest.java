@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+import com.virgilsecurity.sdk.crypto.exceptions.DecryptionException;
+
+/**
+ * Unit tests for {@link KeyRotationJob}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class KeyRotationJobTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VirgilCrypto crypto;
+    private VirgilFileCrypto fileCrypto;
+    private ExecutorService executor;
+    private KeyPair oldKeyPair;
+    private KeyPair newKeyPair;
+    private byte[] data;
+
+    @Before
+    public void setUp() {
+        crypto = new VirgilCrypto();
+        fileCrypto = new VirgilFileCrypto(crypto);
+        executor = Executors.newFixedThreadPool(2);
+        oldKeyPair = crypto.generateKeys();
+        newKeyPair = crypto.generateKeys();
+        data = new byte[10 * 1024];
+        new Random().nextBytes(data);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void rotateFiles() throws IOException, CryptoException {
+        Path directory = folder.newFolder().toPath();
+        List<Path> files = createFiles(directory, 6);
+        Path checkpoint = directory.resolve("checkpoint");
+
+        KeyRotationJob job = new KeyRotationJob(crypto, executor, oldKeyPair.getPrivateKey(),
+                newKeyPair.getPublicKey());
+        job.setCheckpoint(checkpoint);
+        job.setCheckpointInterval(2);
+        job.setMaxPending(3);
+        KeyRotationJob.Result result = job.rotateFiles(directory);
+
+        assertEquals(6, result.getRotatedCount());
+        assertEquals(0, result.getSkippedCount());
+        assertEquals(0, result.getFailedCount());
+        for (Path file : files) {
+            assertDecrypted(file, newKeyPair);
+            assertNotDecrypted(file, oldKeyPair);
+        }
+
+        // Everything is done according to checkpoint
+        result = job.rotateFiles(directory);
+        assertEquals(6, result.getRotatedCount());
+    }
+
+    @Test
+    public void rotateFiles_rejected() throws IOException, CryptoException {
+        Path directory = folder.newFolder().toPath();
+        List<Path> files = createFiles(directory, 5);
+        Path checkpoint = folder.newFile().toPath();
+
+        // Executor accepts 3 items and runs them on the calling thread
+        Executor limitedExecutor = new Executor() {
+            private int accepted;
+
+            @Override
+            public void execute(Runnable command) {
+                if (accepted++ >= 3) {
+                    throw new RejectedExecutionException();
+                }
+                command.run();
+            }
+        };
+        KeyRotationJob job = new KeyRotationJob(crypto, limitedExecutor, oldKeyPair.getPrivateKey(),
+                newKeyPair.getPublicKey());
+        job.setCheckpoint(checkpoint);
+        try {
+            job.rotateFiles(directory);
+            fail();
+        } catch (RejectedExecutionException e) {
+            // Executor is shut down
+        }
+
+        // Items done before the failure are saved
+        Properties saved = new Properties();
+        try (InputStream is = Files.newInputStream(checkpoint)) {
+            saved.load(is);
+        }
+        assertEquals("3", saved.getProperty("position"));
+
+        job = new KeyRotationJob(crypto, executor, oldKeyPair.getPrivateKey(), newKeyPair.getPublicKey());
+        job.setCheckpoint(checkpoint);
+        assertEquals(5, job.rotateFiles(directory).getRotatedCount());
+        for (Path file : files) {
+            assertDecrypted(file, newKeyPair);
+        }
+    }
+
+    @Test
+    public void rotateFiles_resume() throws IOException, CryptoException {
+        Path directory = folder.newFolder().toPath();
+        List<Path> files = createFiles(directory, 5);
+        Path checkpoint = folder.newFile().toPath();
+        Files.write(checkpoint, "position=2\nrotated=2\n".getBytes());
+
+        KeyRotationJob job = new KeyRotationJob(crypto, executor, oldKeyPair.getPrivateKey(),
+                newKeyPair.getPublicKey());
+        job.setCheckpoint(checkpoint);
+        KeyRotationJob.Result result = job.rotateFiles(directory);
+
+        assertEquals(5, result.getRotatedCount());
+        assertDecrypted(files.get(0), oldKeyPair);
+        assertDecrypted(files.get(1), oldKeyPair);
+        for (Path file : files.subList(2, 5)) {
+            assertDecrypted(file, newKeyPair);
+        }
+    }
+
+    @Test
+    public void rotateFiles_alreadyRotatedAndFailed() throws IOException, CryptoException {
+        Path directory = folder.newFolder().toPath();
+        List<Path> files = createFiles(directory, 4);
+        Path rotated = folder.newFile().toPath();
+        fileCrypto.rewrapFile(files.get(0), rotated, oldKeyPair.getPrivateKey(),
+                new PublicKey[] { newKeyPair.getPublicKey() }, new byte[][] { oldKeyPair.getPrivateKey().getId() });
+        Files.copy(rotated, files.get(0), StandardCopyOption.REPLACE_EXISTING);
+        fileCrypto.encryptFile(files.get(0), files.get(1), crypto.generateKeys().getPublicKey());
+
+        KeyRotationJob job = new KeyRotationJob(crypto, executor, oldKeyPair.getPrivateKey(),
+                newKeyPair.getPublicKey());
+        KeyRotationJob.Result result = job.rotateFiles(files.iterator());
+
+        assertEquals(2, result.getRotatedCount());
+        assertEquals(1, result.getSkippedCount());
+        assertEquals(1, result.getFailedCount());
+        assertEquals(1, result.getFailures().size());
+    }
+
+    @Test
+    public void rotateFiles_retryFailed() throws IOException, CryptoException {
+        Path directory = folder.newFolder().toPath();
+        List<Path> files = createFiles(directory, 4);
+        Path backup = folder.newFile().toPath();
+        Files.copy(files.get(1), backup, StandardCopyOption.REPLACE_EXISTING);
+        fileCrypto.encryptFile(files.get(0), files.get(1), crypto.generateKeys().getPublicKey());
+        Path checkpoint = folder.newFile().toPath();
+
+        KeyRotationJob job = new KeyRotationJob(crypto, executor, oldKeyPair.getPrivateKey(),
+                newKeyPair.getPublicKey());
+        job.setCheckpoint(checkpoint);
+        job.setCheckpointInterval(1);
+        KeyRotationJob.Result result = job.rotateFiles(directory);
+        assertEquals(3, result.getRotatedCount());
+        assertEquals(1, result.getFailedCount());
+
+        // Failed file is retried, and rotated files are not counted twice
+        Files.copy(backup, files.get(1), StandardCopyOption.REPLACE_EXISTING);
+        result = job.rotateFiles(directory);
+        assertEquals(4, result.getRotatedCount());
+        assertEquals(0, result.getSkippedCount());
+        assertEquals(0, result.getFailedCount());
+        assertDecrypted(files.get(1), newKeyPair);
+    }
+
+    @Test
+    public void rotateBlobs() throws CryptoException {
+        final Map<String, byte[]> blobs = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String id = "blob" + i;
+            ids.add(id);
+            blobs.put(id, crypto.encrypt(data, new PublicKey[] { oldKeyPair.getPublicKey() }));
+        }
+
+        KeyRotationJob job = new KeyRotationJob(crypto, executor, oldKeyPair.getPrivateKey(),
+                newKeyPair.getPublicKey());
+        KeyRotationJob.Result result = job.rotateBlobs(ids.iterator(), new KeyRotationJob.BlobStore() {
+            @Override
+            public synchronized void write(String id, byte[] blob) {
+                blobs.put(id, blob);
+            }
+
+            @Override
+            public synchronized byte[] read(String id) {
+                return blobs.get(id);
+            }
+        });
+
+        assertEquals(10, result.getRotatedCount());
+        for (byte[] blob : blobs.values()) {
+            assertArrayEquals(data, crypto.decrypt(blob, newKeyPair.getPrivateKey()));
+        }
+    }
+
+    /**
+     * Create files in nested directories, both in stream and in chunked format.
+     */
+    private List<Path> createFiles(Path directory, int count) throws IOException, CryptoException {
+        Path plain = folder.newFile().toPath();
+        Files.write(plain, data);
+
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Path subdirectory = Files.createDirectories(directory.resolve("dir" + (i % 2)));
+            Path file = subdirectory.resolve("file" + i);
+            if (i % 3 == 0) {
+                fileCrypto.encryptFileParallel(plain, file, null, oldKeyPair.getPublicKey());
+            } else {
+                fileCrypto.encryptFile(plain, file, oldKeyPair.getPublicKey());
+            }
+            files.add(file);
+        }
+        // Order in which directory is visited
+        Collections.sort(files);
+        return files;
+    }
+
+    private void assertDecrypted(Path file, KeyPair keyPair) throws IOException, CryptoException {
+        Path decrypted = folder.newFile().toPath();
+        if (Files.readAllBytes(file)[0] == 0x30) {
+            fileCrypto.decryptFile(file, decrypted, keyPair.getPrivateKey());
+        } else {
+            fileCrypto.decryptFileParallel(file, decrypted, keyPair.getPrivateKey(), null);
+        }
+        assertArrayEquals(data, Files.readAllBytes(decrypted));
+    }
+
+    private void assertNotDecrypted(Path file, KeyPair keyPair) throws IOException, CryptoException {
+        try {
+            assertDecrypted(file, keyPair);
+            fail();
+        } catch (DecryptionException e) {
+            // Key has no access anymore
+        }
+    }
+
+}
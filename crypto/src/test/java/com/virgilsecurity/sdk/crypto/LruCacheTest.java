@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LruCache}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class LruCacheTest {
+
+    @Test
+    public void get() {
+        LruCache<String, String> cache = new LruCache<>(10);
+        cache.put("key", "value");
+
+        assertEquals("value", cache.get("key"));
+        assertNull(cache.get("other"));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(0.5, cache.hitRatio(), 0);
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        LruCache<Integer, Integer> cache = new LruCache<>(1000);
+        cache.put(-1, -1);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, i);
+
+            // Recently added and recently used entries are never evicted
+            assertEquals(Integer.valueOf(i), cache.get(i));
+            assertEquals(Integer.valueOf(-1), cache.get(-1));
+        }
+        assertEquals(1000, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void put_evicted() {
+        final List<Integer> evicted = new ArrayList<>();
+        LruCache<Integer, Integer> cache = new LruCache<Integer, Integer>(10) {
+            @Override
+            protected void evicted(Integer value) {
+                evicted.add(value);
+            }
+        };
+        for (int i = 0; i < 15; i++) {
+            cache.put(i, i);
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), evicted);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_zeroCapacity() {
+        new LruCache<String, String>(0);
+    }
+
+}
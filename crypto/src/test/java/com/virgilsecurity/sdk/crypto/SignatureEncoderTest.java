@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+import com.virgilsecurity.crypto.VirgilHash;
+import com.virgilsecurity.crypto.VirgilKeyPair;
+import com.virgilsecurity.crypto.VirgilSigner;
+
+/**
+ * Unit tests for {@link SignatureEncoder}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class SignatureEncoderTest {
+
+    @Test
+    public void decode_encode() {
+        for (VirgilKeyPair.Type type : new VirgilKeyPair.Type[] { VirgilKeyPair.Type.FAST_EC_ED25519,
+                VirgilKeyPair.Type.EC_SECP256R1, VirgilKeyPair.Type.RSA_4096 }) {
+            VirgilKeyPair keyPair = VirgilKeyPair.generate(type);
+            try (VirgilSigner signer = new VirgilSigner();
+                    VirgilHash hash = new VirgilHash(VirgilHash.Algorithm.SHA384)) {
+                byte[] signature = signer.sign(new byte[] { 1, 2, 3 }, keyPair.privateKey());
+                byte[][] parts = SignatureEncoder.decode(signature);
+
+                assertArrayEquals(hash.toAsn1(), parts[0]);
+                assertArrayEquals(signature, SignatureEncoder.encode(parts[0], parts[1]));
+            }
+        }
+    }
+
+    @Test
+    public void encode_longSignature() {
+        byte[] algorithm = new byte[] { 0x30, 0x00 };
+        byte[] raw = new byte[1024];
+        raw[0] = 7;
+
+        byte[][] parts = SignatureEncoder.decode(SignatureEncoder.encode(algorithm, raw));
+
+        assertArrayEquals(algorithm, parts[0]);
+        assertArrayEquals(raw, parts[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_malformed() {
+        SignatureEncoder.decode(new byte[] { 0x30, 0x05, 0x30, 0x00, 0x04, 0x05 });
+    }
+
+}
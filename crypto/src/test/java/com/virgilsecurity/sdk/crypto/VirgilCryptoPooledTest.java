@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.virgilsecurity.sdk.crypto.exceptions.VirgilException;
+
+/**
+ * Unit tests for {@link VirgilCrypto} which reuses native objects.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilCryptoPooledTest extends VirgilCryptoTest {
+
+    private static final String TEXT = "This text is used for unit tests";
+
+    private VirgilCrypto pooledCrypto;
+
+    @Override
+    @Before
+    public void setUp() {
+        pooledCrypto = new VirgilCrypto(KeysType.Default, true);
+        crypto = pooledCrypto;
+    }
+
+    @Test
+    public void isPooled() {
+        assertTrue(pooledCrypto.isPooled());
+    }
+
+    @Test
+    public void encrypt_decrypt_reuse() throws VirgilException {
+        KeyPair alice = pooledCrypto.generateKeys();
+        KeyPair bob = pooledCrypto.generateKeys();
+
+        for (int i = 0; i < 10; i++) {
+            byte[] forAlice = pooledCrypto.encrypt(TEXT.getBytes(), alice.getPublicKey());
+            byte[] forBob = pooledCrypto.signThenEncrypt(TEXT.getBytes(), alice.getPrivateKey(),
+                    bob.getPublicKey());
+
+            assertArrayEquals(TEXT.getBytes(), pooledCrypto.decrypt(forAlice, alice.getPrivateKey()));
+            assertArrayEquals(TEXT.getBytes(),
+                    pooledCrypto.decryptThenVerify(forBob, bob.getPrivateKey(), alice.getPublicKey()));
+        }
+    }
+
+    @Test(expected = VirgilException.class)
+    public void encrypt_recipientsNotShared() throws VirgilException {
+        KeyPair alice = pooledCrypto.generateKeys();
+        KeyPair bob = pooledCrypto.generateKeys();
+
+        pooledCrypto.encrypt(TEXT.getBytes(), alice.getPublicKey());
+        byte[] forBob = pooledCrypto.encrypt(TEXT.getBytes(), bob.getPublicKey());
+
+        pooledCrypto.decrypt(forBob, alice.getPrivateKey());
+    }
+
+    @Test
+    public void releaseThreadObjects_close() throws Exception {
+        final KeyPair keyPair = pooledCrypto.generateKeys();
+        final byte[] signature = pooledCrypto.sign(TEXT.getBytes(), keyPair.getPrivateKey());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Callable<Boolean> verify = new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return pooledCrypto.verify(TEXT.getBytes(), signature, keyPair.getPublicKey());
+                }
+            };
+            assertTrue(executor.submit(verify).get());
+
+            pooledCrypto.releaseThreadObjects();
+            assertTrue(pooledCrypto.verify(TEXT.getBytes(), signature, keyPair.getPublicKey()));
+
+            // Objects of other threads are freed too, and created again on next use
+            pooledCrypto.close();
+            assertTrue(executor.submit(verify).get());
+            assertArrayEquals(TEXT.getBytes(), pooledCrypto.decrypt(
+                    pooledCrypto.encrypt(TEXT.getBytes(), keyPair.getPublicKey()), keyPair.getPrivateKey()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void sign_verify_concurrent() throws Exception {
+        final KeyPair keyPair = pooledCrypto.generateKeys();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                final byte[] data = (TEXT + i).getBytes();
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        byte[] signature = pooledCrypto.sign(data, keyPair.getPrivateKey());
+                        return pooledCrypto.verify(data, signature, keyPair.getPublicKey());
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
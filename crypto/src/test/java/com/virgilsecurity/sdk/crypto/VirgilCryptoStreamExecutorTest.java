@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.virgilsecurity.sdk.crypto.exceptions.EncryptionException;
+import com.virgilsecurity.sdk.crypto.exceptions.VirgilException;
+
+/**
+ * Unit tests for {@link VirgilCrypto} which reads and writes streams in background.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilCryptoStreamExecutorTest extends VirgilCryptoTest {
+
+    private ExecutorService executor;
+    private VirgilCrypto virgilCrypto;
+
+    @Override
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        virgilCrypto = new VirgilCrypto();
+        virgilCrypto.setStreamExecutor(executor);
+        crypto = virgilCrypto;
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void getStreamExecutor() {
+        assertSame(executor, virgilCrypto.getStreamExecutor());
+    }
+
+    @Test
+    public void encrypt_decrypt_stream_multipleChunks() throws IOException, VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        byte[] data = new byte[5 * 1024 * 1024 + 3];
+        new Random().nextBytes(data);
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        crypto.encrypt(new ByteArrayInputStream(data), encrypted, keyPair.getPublicKey());
+        assertArrayEquals(data, crypto.decrypt(encrypted.toByteArray(), keyPair.getPrivateKey()));
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        crypto.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted, keyPair.getPrivateKey());
+        assertArrayEquals(data, decrypted.toByteArray());
+    }
+
+    @Test(expected = EncryptionException.class)
+    public void encrypt_stream_writeFailed() throws EncryptionException {
+        KeyPair keyPair = crypto.generateKeys();
+        OutputStream failingStream = new OutputStream() {
+
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk is full");
+            }
+        };
+
+        crypto.encrypt(new ByteArrayInputStream(new byte[3 * 1024 * 1024]), failingStream, keyPair.getPublicKey());
+    }
+
+}
@@ -30,25 +30,40 @@
 package com.virgilsecurity.sdk.crypto;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.virgilsecurity.crypto.VirgilCipherBase;
 import com.virgilsecurity.crypto.VirgilHash;
 import com.virgilsecurity.crypto.VirgilKeyPair;
 import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+import com.virgilsecurity.sdk.crypto.exceptions.DecryptionException;
 import com.virgilsecurity.sdk.crypto.exceptions.EncryptionException;
+import com.virgilsecurity.sdk.crypto.exceptions.SignatureIsNotValidException;
 import com.virgilsecurity.sdk.crypto.exceptions.SigningException;
 import com.virgilsecurity.sdk.crypto.exceptions.VerificationException;
 import com.virgilsecurity.sdk.crypto.exceptions.VirgilException;
@@ -70,7 +85,10 @@ public class VirgilCryptoTest {
             98, 20, -25, 60, 125, -19, 67, 12, -30, 65, 93, -29, -92, -58, -91, 91, 50, -111, -79, 50, -123, -39, 36,
             48, -20 };
 
-    private Crypto crypto;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected Crypto crypto;
 
     @Before
     public void setUp() {
@@ -108,19 +126,93 @@ public class VirgilCryptoTest {
 
     @Test(expected = NullArgumentException.class)
     public void computeHash_nullData() {
-        crypto.computeHash(null, HashAlgorithm.MD5);
+        crypto.computeHash((byte[]) null, HashAlgorithm.MD5);
     }
 
     @Test(expected = NullArgumentException.class)
     public void computeHash() {
         for (HashAlgorithm algorithm : HashAlgorithm.values()) {
-            byte[] hash = crypto.computeHash(null, algorithm);
+            byte[] hash = crypto.computeHash((byte[]) null, algorithm);
 
             assertNotNull(hash);
             assertTrue(hash.length > 0);
         }
     }
 
+    @Test
+    public void computeHash_stream() throws CryptoException {
+        byte[] data = new byte[3 * 1024 * 1024 + 100];
+        new Random().nextBytes(data);
+
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            assertArrayEquals(crypto.computeHash(data, algorithm),
+                    crypto.computeHash(new NoAvailableInputStream(data), algorithm));
+        }
+        assertArrayEquals(crypto.computeHash(new byte[0], HashAlgorithm.SHA256),
+                crypto.computeHash(new ByteArrayInputStream(new byte[0]), HashAlgorithm.SHA256));
+    }
+
+    @Test
+    public void computeHash_channel() throws IOException, CryptoException {
+        byte[] data = new byte[2 * 1024 * 1024 + 100];
+        new Random().nextBytes(data);
+        Path file = folder.newFile().toPath();
+        Files.write(file, data);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            channel.position(10);
+            assertArrayEquals(crypto.computeHash(Arrays.copyOfRange(data, 10, data.length), HashAlgorithm.SHA512),
+                    crypto.computeHash(channel, HashAlgorithm.SHA512));
+            assertEquals(data.length, channel.position());
+        }
+    }
+
+    @Test
+    public void createHasher() {
+        byte[] data = new byte[200 * 1024];
+        new Random().nextBytes(data);
+        byte[] expected = crypto.computeHash(data, HashAlgorithm.SHA256);
+
+        try (Hasher hasher = crypto.createHasher(HashAlgorithm.SHA256)) {
+            hasher.update(Arrays.copyOf(data, 100));
+            hasher.update(data, 100, 100 * 1024);
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data).flip().position(100 + 100 * 1024);
+            hasher.update(direct);
+            assertFalse(direct.hasRemaining());
+            assertArrayEquals(expected, hasher.finish());
+
+            // Hasher is reset after finish
+            hasher.update(ByteBuffer.wrap(data));
+            assertArrayEquals(expected, hasher.finish());
+        }
+    }
+
+    @Test
+    public void createMac() {
+        byte[] key = "secret".getBytes();
+        byte[] data = new byte[100 * 1024];
+        new Random().nextBytes(data);
+
+        byte[] expected;
+        try (VirgilHash hash = new VirgilHash(VirgilHash.Algorithm.SHA384)) {
+            expected = hash.hmac(key, data);
+        }
+
+        try (Mac mac = crypto.createMac(key, HashAlgorithm.SHA384)) {
+            mac.update(data, 0, 10);
+            mac.update(ByteBuffer.wrap(data, 10, data.length - 10));
+            assertArrayEquals(expected, mac.finish());
+
+            mac.update(data);
+            assertArrayEquals(expected, mac.finish());
+        }
+        try (Mac mac = crypto.createMac("other".getBytes(), HashAlgorithm.SHA384)) {
+            mac.update(data);
+            assertFalse(Arrays.equals(expected, mac.finish()));
+        }
+    }
+
     @Test
     public void decrypt() throws VirgilException {
         List<PrivateKey> privateKeys = new ArrayList<>();
@@ -177,6 +269,80 @@ public class VirgilCryptoTest {
         assertNotNull(encrypted);
     }
 
+    @Test
+    public void encrypt_recipientSet() throws VirgilException {
+        VirgilCrypto virgilCrypto = (VirgilCrypto) crypto;
+        List<KeyPair> keyPairs = new ArrayList<>();
+        List<PublicKey> recipients = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            KeyPair keyPair = crypto.generateKeys();
+            keyPairs.add(keyPair);
+            recipients.add(keyPair.getPublicKey());
+        }
+        // Duplicated recipient is added once
+        recipients.add(keyPairs.get(0).getPublicKey());
+
+        RecipientSet recipientSet = virgilCrypto.createRecipientSet(recipients.toArray(new PublicKey[0]));
+        assertEquals(5, recipientSet.size());
+
+        byte[] encrypted1 = virgilCrypto.encrypt(TEXT.getBytes(), recipientSet);
+        byte[] encrypted2 = virgilCrypto.encrypt(TEXT.getBytes(), recipientSet);
+        assertFalse(Arrays.equals(encrypted1, encrypted2));
+
+        for (KeyPair keyPair : keyPairs) {
+            assertArrayEquals(TEXT.getBytes(), crypto.decrypt(encrypted1, keyPair.getPrivateKey()));
+            assertArrayEquals(TEXT.getBytes(), crypto.decrypt(encrypted2, keyPair.getPrivateKey()));
+        }
+    }
+
+    @Test(expected = CryptoException.class)
+    public void createRecipientSet_invalidKey() throws CryptoException {
+        PublicKey publicKey = crypto.generateKeys().getPublicKey();
+        ((VirgilCrypto) crypto).createRecipientSet(publicKey, new VirgilPublicKey(new byte[] { 1 }, TEXT.getBytes()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createRecipientSet_noRecipients() throws CryptoException {
+        ((VirgilCrypto) crypto).createRecipientSet();
+    }
+
+    @Test
+    public void rewrap() throws VirgilException {
+        KeyPair holder = crypto.generateKeys();
+        KeyPair removed = crypto.generateKeys();
+        KeyPair added = crypto.generateKeys();
+        byte[] encrypted = crypto.encrypt(TEXT.getBytes(),
+                new PublicKey[] { holder.getPublicKey(), removed.getPublicKey() });
+
+        int contentInfoSize = (int) VirgilCipherBase.defineContentInfoSize(encrypted);
+        byte[] contentInfo = Arrays.copyOf(encrypted, contentInfoSize);
+        byte[] newContentInfo = ((VirgilCrypto) crypto).rewrap(contentInfo, holder.getPrivateKey(),
+                new PublicKey[] { added.getPublicKey() }, new byte[][] { removed.getPublicKey().getId() });
+
+        byte[] rewrapped = new byte[newContentInfo.length + encrypted.length - contentInfoSize];
+        System.arraycopy(newContentInfo, 0, rewrapped, 0, newContentInfo.length);
+        System.arraycopy(encrypted, contentInfoSize, rewrapped, newContentInfo.length,
+                encrypted.length - contentInfoSize);
+
+        assertArrayEquals(TEXT.getBytes(), crypto.decrypt(rewrapped, holder.getPrivateKey()));
+        assertArrayEquals(TEXT.getBytes(), crypto.decrypt(rewrapped, added.getPrivateKey()));
+        try {
+            crypto.decrypt(rewrapped, removed.getPrivateKey());
+            fail();
+        } catch (DecryptionException e) {
+            // Removed recipient has no access
+        }
+    }
+
+    @Test(expected = DecryptionException.class)
+    public void rewrap_notRecipient() throws VirgilException {
+        byte[] encrypted = crypto.encrypt(TEXT.getBytes(), crypto.generateKeys().getPublicKey());
+        byte[] contentInfo = Arrays.copyOf(encrypted, (int) VirgilCipherBase.defineContentInfoSize(encrypted));
+
+        ((VirgilCrypto) crypto).rewrap(contentInfo, crypto.generateKeys().getPrivateKey(),
+                new PublicKey[] { crypto.generateKeys().getPublicKey() }, null);
+    }
+
     @Test
     public void encrypt_stream() throws IOException, EncryptionException {
         List<PublicKey> recipients = new ArrayList<>();
@@ -188,6 +354,116 @@ public class VirgilCryptoTest {
         }
     }
 
+    @Test
+    public void encrypt_decrypt_stream_noAvailableBytes() throws IOException, VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        byte[] data = new byte[100000];
+        new Random().nextBytes(data);
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        crypto.encrypt(new NoAvailableInputStream(data), encrypted, keyPair.getPublicKey());
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        crypto.decrypt(new NoAvailableInputStream(encrypted.toByteArray()), decrypted, keyPair.getPrivateKey());
+        assertArrayEquals(data, decrypted.toByteArray());
+    }
+
+    @Test
+    public void encrypt_decrypt_offsetLength() throws VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        byte[] data = ("xx" + TEXT + "yyy").getBytes();
+
+        byte[] encrypted = crypto.encrypt(data, 2, TEXT.length(), new PublicKey[] { keyPair.getPublicKey() });
+        byte[] padded = new byte[encrypted.length + 5];
+        System.arraycopy(encrypted, 0, padded, 3, encrypted.length);
+        byte[] decrypted = crypto.decrypt(padded, 3, encrypted.length, keyPair.getPrivateKey());
+
+        assertArrayEquals(TEXT.getBytes(), decrypted);
+    }
+
+    @Test
+    public void encrypt_decrypt_byteBuffer() throws VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        ByteBuffer data = ByteBuffer.allocateDirect(TEXT.length());
+        data.put(TEXT.getBytes()).flip();
+        ByteBuffer encrypted = ByteBuffer.allocateDirect(1024);
+
+        int encryptedLength = crypto.encrypt(data, encrypted, new PublicKey[] { keyPair.getPublicKey() });
+        assertEquals(0, data.remaining());
+        assertEquals(encryptedLength, encrypted.position());
+
+        encrypted.flip();
+        ByteBuffer decrypted = ByteBuffer.allocate(TEXT.length());
+        int decryptedLength = crypto.decrypt(encrypted, decrypted, keyPair.getPrivateKey());
+        assertEquals(TEXT.length(), decryptedLength);
+        assertEquals(0, encrypted.remaining());
+        assertArrayEquals(TEXT.getBytes(), decrypted.array());
+    }
+
+    @Test
+    public void encrypt_byteBuffer_overflow() throws VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        ByteBuffer data = ByteBuffer.wrap(TEXT.getBytes());
+        ByteBuffer encrypted = ByteBuffer.allocate(TEXT.length());
+
+        try {
+            crypto.encrypt(data, encrypted, new PublicKey[] { keyPair.getPublicKey() });
+            fail();
+        } catch (BufferOverflowException e) {
+            assertEquals(0, data.position());
+            assertEquals(0, encrypted.position());
+        }
+    }
+
+    @Test
+    public void signThenEncrypt_decryptThenVerify_stream() throws CryptoException {
+        KeyPair signerKeyPair = crypto.generateKeys();
+        KeyPair recipientKeyPair = crypto.generateKeys();
+
+        for (int size : new int[] { 0, 10, 5000, 3 * 1024 * 1024 + 100 }) {
+            byte[] data = new byte[size];
+            new Random().nextBytes(data);
+
+            ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+            crypto.signThenEncrypt(new NoAvailableInputStream(data), encrypted, signerKeyPair.getPrivateKey(),
+                    new PublicKey[] { recipientKeyPair.getPublicKey() });
+
+            ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            crypto.decryptThenVerify(new ByteArrayInputStream(encrypted.toByteArray()), decrypted,
+                    recipientKeyPair.getPrivateKey(), signerKeyPair.getPublicKey());
+            assertArrayEquals(data, decrypted.toByteArray());
+        }
+    }
+
+    @Test
+    public void decryptThenVerify_stream_wrongSigner() throws CryptoException {
+        KeyPair signerKeyPair = crypto.generateKeys();
+        KeyPair recipientKeyPair = crypto.generateKeys();
+        byte[] data = "Test data".getBytes();
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        crypto.signThenEncrypt(new ByteArrayInputStream(data), encrypted, signerKeyPair.getPrivateKey(),
+                new PublicKey[] { recipientKeyPair.getPublicKey() });
+
+        try {
+            crypto.decryptThenVerify(new ByteArrayInputStream(encrypted.toByteArray()), new ByteArrayOutputStream(),
+                    recipientKeyPair.getPrivateKey(), recipientKeyPair.getPublicKey());
+            fail();
+        } catch (SignatureIsNotValidException e) {
+            // Signed by other key
+        }
+    }
+
+    @Test(expected = DecryptionException.class)
+    public void decryptThenVerify_stream_notSigned() throws CryptoException {
+        KeyPair keyPair = crypto.generateKeys();
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        crypto.encrypt(new ByteArrayInputStream(new byte[100]), encrypted, keyPair.getPublicKey());
+
+        crypto.decryptThenVerify(new ByteArrayInputStream(encrypted.toByteArray()), new ByteArrayOutputStream(),
+                keyPair.getPrivateKey(), keyPair.getPublicKey());
+    }
+
     @Test
     public void exportPrivateKey() {
         KeyPair keyPair = crypto.generateKeys();
@@ -226,6 +502,38 @@ public class VirgilCryptoTest {
         assertArrayEquals(keyPair.getPublicKey().getValue(), publicKey.getValue());
     }
 
+    @Test
+    public void importPublicKey_cached() {
+        VirgilCrypto virgilCrypto = (VirgilCrypto) crypto;
+        virgilCrypto.setPublicKeyCacheCapacity(2);
+        assertEquals(2, virgilCrypto.getPublicKeyCacheCapacity());
+
+        KeyPair keyPair = crypto.generateKeys();
+        byte[] keyData = crypto.exportPublicKey(keyPair.getPublicKey());
+
+        PublicKey publicKey = crypto.importPublicKey(keyData);
+        assertArrayEquals(keyPair.getPublicKey().getId(), publicKey.getId());
+        assertArrayEquals(keyPair.getPublicKey().getValue(), publicKey.getValue());
+
+        // Modification of returned key doesn't affect cache
+        publicKey.getId()[0] ^= 1;
+        PublicKey cachedKey = crypto.importPublicKey(keyData.clone());
+        assertArrayEquals(keyPair.getPublicKey().getId(), cachedKey.getId());
+        assertArrayEquals(keyPair.getPublicKey().getValue(), cachedKey.getValue());
+
+        assertEquals(1, virgilCrypto.getPublicKeyCacheSize());
+        assertEquals(0.5, virgilCrypto.getPublicKeyCacheHitRatio(), 0.001);
+
+        for (int i = 0; i < 3; i++) {
+            crypto.importPublicKey(crypto.exportPublicKey(crypto.generateKeys().getPublicKey()));
+        }
+        assertEquals(2, virgilCrypto.getPublicKeyCacheSize());
+
+        virgilCrypto.setPublicKeyCacheCapacity(0);
+        assertEquals(0, virgilCrypto.getPublicKeyCacheSize());
+        assertArrayEquals(keyPair.getPublicKey().getId(), crypto.importPublicKey(keyData).getId());
+    }
+
     @Test
     public void generateKeys() {
         KeyPair keyPair = crypto.generateKeys();
@@ -243,6 +551,25 @@ public class VirgilCryptoTest {
         assertNotNull(privateKey.getValue());
     }
 
+    @Test
+    public void generateKeys_count() throws CryptoException {
+        VirgilCrypto virgilCrypto = (VirgilCrypto) crypto;
+        List<KeyPair> keyPairs = virgilCrypto.generateKeys(KeysType.FAST_EC_ED25519, 3);
+
+        assertEquals(3, keyPairs.size());
+        assertFalse(Arrays.equals(keyPairs.get(0).getPublicKey().getId(), keyPairs.get(1).getPublicKey().getId()));
+        for (KeyPair keyPair : keyPairs) {
+            assertArrayEquals(crypto.importPublicKey(keyPair.getPublicKey().getValue()).getId(),
+                    keyPair.getPublicKey().getId());
+        }
+        assertTrue(virgilCrypto.generateKeys(KeysType.FAST_EC_ED25519, 0).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void generateKeys_negativeCount() {
+        ((VirgilCrypto) crypto).generateKeys(KeysType.FAST_EC_ED25519, -1);
+    }
+
     @Test
     public void importPrivateKey() throws CryptoException {
         KeyPair keyPair = crypto.generateKeys();
@@ -313,6 +640,127 @@ public class VirgilCryptoTest {
         assertNotNull(signature);
     }
 
+    @Test
+    public void sign_verify_offsetLength() throws VerificationException {
+        KeyPair keyPair = crypto.generateKeys();
+        byte[] data = ("xx" + TEXT + "yyy").getBytes();
+
+        byte[] signature = crypto.sign(data, 2, TEXT.length(), keyPair.getPrivateKey());
+
+        assertTrue(crypto.verify(TEXT.getBytes(), signature, keyPair.getPublicKey()));
+        assertTrue(crypto.verify(data, 2, TEXT.length(), signature, keyPair.getPublicKey()));
+        assertFalse(crypto.verify(data, 0, TEXT.length(), signature, keyPair.getPublicKey()));
+    }
+
+    @Test
+    public void sign_verify_byteBuffer() throws VerificationException {
+        KeyPair keyPair = crypto.generateKeys();
+        ByteBuffer data = ByteBuffer.allocateDirect(TEXT.length() + 2);
+        data.put((byte) 0).put(TEXT.getBytes()).put((byte) 0).flip().position(1).limit(TEXT.length() + 1);
+
+        byte[] signature = crypto.sign(data, keyPair.getPrivateKey());
+        assertEquals(0, data.remaining());
+        assertTrue(crypto.verify(TEXT.getBytes(), signature, keyPair.getPublicKey()));
+
+        ByteBuffer slice = ByteBuffer.wrap(("x" + TEXT).getBytes(), 1, TEXT.length()).slice();
+        assertTrue(crypto.verify(slice, signature, keyPair.getPublicKey()));
+        assertEquals(0, slice.remaining());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void sign_offsetLength_outOfBounds() {
+        KeyPair keyPair = crypto.generateKeys();
+        crypto.sign(TEXT.getBytes(), 1, TEXT.length(), keyPair.getPrivateKey());
+    }
+
+    @Test
+    public void sign_preparedKey() throws CryptoException {
+        VirgilCrypto virgilCrypto = (VirgilCrypto) crypto;
+        KeyPair keyPair = crypto.generateKeys();
+        PreparedPrivateKey preparedKey = virgilCrypto.preparePrivateKey(keyPair.getPrivateKey());
+
+        byte[] signature = crypto.sign(TEXT.getBytes(), preparedKey);
+
+        // Ed25519 signatures are deterministic
+        assertArrayEquals(crypto.sign(TEXT.getBytes(), keyPair.getPrivateKey()), signature);
+        assertTrue(crypto.verify(TEXT.getBytes(), signature, keyPair.getPublicKey()));
+    }
+
+    @Test
+    public void sign_preparedKey_rsa() throws CryptoException {
+        VirgilCrypto virgilCrypto = (VirgilCrypto) crypto;
+        KeyPair keyPair = virgilCrypto.generateKeys(KeysType.RSA_2048);
+        PreparedPrivateKey preparedKey = virgilCrypto.preparePrivateKey(keyPair.getPrivateKey());
+
+        byte[] signature = crypto.sign(TEXT.getBytes(), preparedKey);
+
+        assertTrue(crypto.verify(TEXT.getBytes(), signature, keyPair.getPublicKey()));
+    }
+
+    @Test
+    public void preparePrivateKey_cached() throws CryptoException {
+        VirgilCrypto virgilCrypto = (VirgilCrypto) crypto;
+        KeyPair keyPair = crypto.generateKeys();
+        PreparedPrivateKey preparedKey = virgilCrypto.preparePrivateKey(keyPair.getPrivateKey());
+
+        assertSame(preparedKey, virgilCrypto.preparePrivateKey(keyPair.getPrivateKey()));
+        assertSame(preparedKey, virgilCrypto.preparePrivateKey(preparedKey));
+        assertArrayEquals(keyPair.getPrivateKey().getId(), preparedKey.getId());
+        assertArrayEquals(keyPair.getPrivateKey().getValue(), preparedKey.getValue());
+    }
+
+    @Test
+    public void preparedKeys_close() throws CryptoException {
+        VirgilCrypto virgilCrypto = (VirgilCrypto) crypto;
+        KeyPair keyPair = crypto.generateKeys();
+        PreparedPrivateKey privateKey = virgilCrypto.preparePrivateKey(keyPair.getPrivateKey());
+        PreparedPublicKey publicKey = virgilCrypto.preparePublicKey(keyPair.getPublicKey());
+        privateKey.close();
+        publicKey.close();
+
+        // Closed keys load native contexts for every operation
+        byte[] signature = crypto.sign(TEXT.getBytes(), privateKey);
+        assertTrue(crypto.verify(TEXT.getBytes(), signature, publicKey));
+        assertTrue(crypto.verify(TEXT.getBytes(), signature, keyPair.getPublicKey()));
+    }
+
+    @Test(expected = CryptoException.class)
+    public void preparePublicKey_invalid() throws CryptoException {
+        ((VirgilCrypto) crypto).preparePublicKey(new VirgilPublicKey(new byte[] { 1 }, TEXT.getBytes()));
+    }
+
+    @Test
+    public void signBatch_verifyBatch() throws CryptoException {
+        KeyPair keyPair = crypto.generateKeys();
+        List<byte[]> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add((TEXT + i).getBytes());
+        }
+
+        List<byte[]> signatures = crypto.signBatch(items, keyPair.getPrivateKey());
+
+        assertEquals(items.size(), signatures.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertTrue(crypto.verify(items.get(i), signatures.get(i), keyPair.getPublicKey()));
+        }
+        assertTrue(crypto.verifyBatch(items, signatures, keyPair.getPublicKey()));
+
+        signatures.set(50, INVALID_SIGNATURE);
+        assertFalse(crypto.verifyBatch(items, signatures, keyPair.getPublicKey()));
+    }
+
+    @Test(expected = NullArgumentException.class)
+    public void signBatch_nullItem() throws SigningException {
+        KeyPair keyPair = crypto.generateKeys();
+        crypto.signBatch(Arrays.asList(TEXT.getBytes(), null), keyPair.getPrivateKey());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifyBatch_sizeMismatch() throws VerificationException {
+        KeyPair keyPair = crypto.generateKeys();
+        crypto.verifyBatch(Arrays.asList(TEXT.getBytes()), new ArrayList<byte[]>(), keyPair.getPublicKey());
+    }
+
     @Test(expected = NullArgumentException.class)
     public void sign_stream_nullStream() throws SigningException {
         KeyPair keyPair = crypto.generateKeys();
@@ -361,6 +809,27 @@ public class VirgilCryptoTest {
         assertFalse(valid);
     }
 
+    @Test
+    public void verify_preparedKey() throws CryptoException {
+        VirgilCrypto virgilCrypto = (VirgilCrypto) crypto;
+        KeyPair keyPair = crypto.generateKeys();
+        PreparedPublicKey preparedKey = virgilCrypto.preparePublicKey(keyPair.getPublicKey());
+        byte[] signature = crypto.sign(TEXT.getBytes(), keyPair.getPrivateKey());
+
+        assertTrue(crypto.verify(TEXT.getBytes(), signature, preparedKey));
+        assertFalse(crypto.verify("Other text".getBytes(), signature, preparedKey));
+        assertFalse(crypto.verify(TEXT.getBytes(), INVALID_SIGNATURE, preparedKey));
+        assertSame(preparedKey, virgilCrypto.preparePublicKey(keyPair.getPublicKey()));
+    }
+
+    @Test(expected = VerificationException.class)
+    public void verify_preparedKey_malformedSignature() throws CryptoException {
+        KeyPair keyPair = crypto.generateKeys();
+        PreparedPublicKey preparedKey = ((VirgilCrypto) crypto).preparePublicKey(keyPair.getPublicKey());
+
+        crypto.verify(TEXT.getBytes(), TEXT.getBytes(), preparedKey);
+    }
+
     @Test
     public void verify_stream() throws VerificationException {
         KeyPair keyPair = crypto.generateKeys();
@@ -380,4 +849,20 @@ public class VirgilCryptoTest {
         assertFalse(valid);
     }
 
+    /**
+     * Input stream which never reports available bytes, like a socket.
+     */
+    private static class NoAvailableInputStream extends ByteArrayInputStream {
+
+        NoAvailableInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public synchronized int available() {
+            return 0;
+        }
+
+    }
+
 }
@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
+import com.virgilsecurity.sdk.crypto.exceptions.DecryptionException;
+import com.virgilsecurity.sdk.crypto.exceptions.EncryptionException;
+import com.virgilsecurity.sdk.crypto.exceptions.VirgilException;
+import com.virgilsecurity.sdk.exception.NullArgumentException;
+
+/**
+ * Unit tests for {@link VirgilFileCrypto}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VirgilFileCryptoTest {
+
+    private static final String TEXT = "This text is used for unit tests";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VirgilCrypto crypto;
+    private VirgilFileCrypto fileCrypto;
+
+    @Before
+    public void setUp() {
+        crypto = new VirgilCrypto();
+        fileCrypto = new VirgilFileCrypto(crypto);
+    }
+
+    @Test(expected = NullArgumentException.class)
+    public void instantiate_nullCrypto() {
+        new VirgilFileCrypto(null);
+    }
+
+    @Test
+    public void rewrapFile() throws IOException, VirgilException {
+        KeyPair holder = crypto.generateKeys();
+        KeyPair added = crypto.generateKeys();
+        byte[] data = new byte[100 * 1024];
+        new Random().nextBytes(data);
+
+        Path in = folder.newFile().toPath();
+        Path encrypted = folder.newFile().toPath();
+        Path rewrapped = folder.newFile().toPath();
+        Path decrypted = folder.newFile().toPath();
+        Files.write(in, data);
+
+        fileCrypto.encryptFile(in, encrypted, holder.getPublicKey());
+        fileCrypto.rewrapFile(encrypted, rewrapped, holder.getPrivateKey(), new PublicKey[] { added.getPublicKey() },
+                new byte[][] { holder.getPublicKey().getId() });
+
+        fileCrypto.decryptFile(rewrapped, decrypted, added.getPrivateKey());
+        assertArrayEquals(data, Files.readAllBytes(decrypted));
+    }
+
+    @Test
+    public void encryptFile_decryptFile() throws IOException, VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random().nextBytes(data);
+
+        Path in = folder.newFile().toPath();
+        Path encrypted = folder.newFile().toPath();
+        Path decrypted = folder.newFile().toPath();
+        Files.write(in, data);
+
+        fileCrypto.encryptFile(in, encrypted, keyPair.getPublicKey());
+        assertArrayEquals(data, crypto.decrypt(Files.readAllBytes(encrypted), keyPair.getPrivateKey()));
+
+        fileCrypto.decryptFile(encrypted, decrypted, keyPair.getPrivateKey());
+        assertArrayEquals(data, Files.readAllBytes(decrypted));
+    }
+
+    @Test
+    public void encryptFileParallel_decryptFileParallel() throws IOException, VirgilException {
+        KeyPair alice = crypto.generateKeys();
+        KeyPair bob = crypto.generateKeys();
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random().nextBytes(data);
+
+        Path in = folder.newFile().toPath();
+        Path encrypted = folder.newFile().toPath();
+        Path decrypted = folder.newFile().toPath();
+        Files.write(in, data);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            fileCrypto.encryptFileParallel(in, encrypted, pool, alice.getPublicKey(), bob.getPublicKey());
+            fileCrypto.decryptFileParallel(encrypted, decrypted, bob.getPrivateKey(), pool);
+            assertArrayEquals(data, Files.readAllBytes(decrypted));
+
+            fileCrypto.decryptFileParallel(encrypted, decrypted, alice.getPrivateKey(), null);
+            assertArrayEquals(data, Files.readAllBytes(decrypted));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void encryptFileParallel_failed() throws IOException, VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        Path in = folder.newFile().toPath();
+        Path encrypted = folder.newFile().toPath();
+        Files.write(in, new byte[2 * 1024 * 1024]);
+        byte[] existingData = new byte[] { 1, 2, 3 };
+        Files.write(encrypted, existingData);
+
+        // Header is written before the pool rejects chunk encryption
+        ForkJoinPool pool = new ForkJoinPool(2);
+        pool.shutdown();
+        try {
+            fileCrypto.encryptFileParallel(in, encrypted, pool, keyPair.getPublicKey());
+            fail();
+        } catch (EncryptionException e) {
+            assertArrayEquals(existingData, Files.readAllBytes(encrypted));
+            assertFalse(Files.exists(encrypted.resolveSibling(encrypted.getFileName() + ".partial")));
+        }
+    }
+
+    @Test
+    public void encryptFileParallel_emptyFile() throws IOException, VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        Path in = folder.newFile().toPath();
+        Path encrypted = folder.newFile().toPath();
+        Path decrypted = folder.newFile().toPath();
+
+        fileCrypto.encryptFileParallel(in, encrypted, null, keyPair.getPublicKey());
+        fileCrypto.decryptFileParallel(encrypted, decrypted, keyPair.getPrivateKey(), null);
+
+        assertEquals(0, Files.size(decrypted));
+    }
+
+    @Test
+    public void decryptFileParallel_tampered() throws IOException, VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        byte[] data = new byte[2 * 1024 * 1024];
+        Path in = folder.newFile().toPath();
+        Path encrypted = folder.newFile().toPath();
+        Path decrypted = folder.newFile().toPath();
+        Files.write(in, data);
+
+        fileCrypto.encryptFileParallel(in, encrypted, null, keyPair.getPublicKey());
+        byte[] encryptedData = Files.readAllBytes(encrypted);
+        encryptedData[encryptedData.length - 100] ^= 1;
+        Files.write(encrypted, encryptedData);
+
+        try {
+            fileCrypto.decryptFileParallel(encrypted, decrypted, keyPair.getPrivateKey(), null);
+            fail();
+        } catch (DecryptionException e) {
+            assertEquals(0, Files.size(decrypted));
+        }
+
+        Files.write(encrypted, Arrays.copyOf(encryptedData, encryptedData.length - 1));
+        try {
+            fileCrypto.decryptFileParallel(encrypted, decrypted, keyPair.getPrivateKey(), null);
+            fail();
+        } catch (DecryptionException e) {
+            assertEquals(0, Files.size(decrypted));
+        }
+    }
+
+    @Test
+    public void openDecryptingChannel() throws IOException, VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        byte[] data = new byte[3 * ParallelChunkCipher.CHUNK_SIZE_DEFAULT + 100];
+        new Random().nextBytes(data);
+        Path in = folder.newFile().toPath();
+        Path encrypted = folder.newFile().toPath();
+        Files.write(in, data);
+
+        fileCrypto.encryptFileParallel(in, encrypted, null, keyPair.getPublicKey());
+
+        try (SeekableByteChannel channel = fileCrypto.openDecryptingChannel(encrypted, keyPair.getPrivateKey())) {
+            assertEquals(data.length, channel.size());
+
+            // Range crosses chunk boundary
+            int offset = 2 * ParallelChunkCipher.CHUNK_SIZE_DEFAULT - 10;
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            assertEquals(4096, channel.position(offset).read(buffer));
+            assertArrayEquals(Arrays.copyOfRange(data, offset, offset + 4096), buffer.array());
+            assertEquals(offset + 4096, channel.position());
+
+            // Last chunk is partial
+            buffer.clear();
+            assertEquals(100, channel.position(data.length - 100).read(buffer));
+            assertArrayEquals(Arrays.copyOfRange(data, data.length - 100, data.length),
+                    Arrays.copyOf(buffer.array(), 100));
+
+            buffer.clear();
+            assertEquals(-1, channel.read(buffer));
+            assertEquals(-1, channel.position(data.length + 1).read(buffer));
+
+            buffer = ByteBuffer.allocate(data.length);
+            channel.position(0);
+            while (buffer.hasRemaining()) {
+                assertTrue(channel.read(buffer) > 0);
+            }
+            assertArrayEquals(data, buffer.array());
+
+            try {
+                channel.write(ByteBuffer.allocate(1));
+                fail();
+            } catch (NonWritableChannelException e) {
+                // Channel is read-only
+            }
+        }
+    }
+
+    @Test
+    public void openDecryptingChannel_tampered() throws IOException, VirgilException {
+        KeyPair keyPair = crypto.generateKeys();
+        byte[] data = new byte[2 * ParallelChunkCipher.CHUNK_SIZE_DEFAULT];
+        Path in = folder.newFile().toPath();
+        Path encrypted = folder.newFile().toPath();
+        Files.write(in, data);
+
+        fileCrypto.encryptFileParallel(in, encrypted, null, keyPair.getPublicKey());
+        byte[] encryptedData = Files.readAllBytes(encrypted);
+        encryptedData[encryptedData.length - 100] ^= 1;
+        Files.write(encrypted, encryptedData);
+
+        try (SeekableByteChannel channel = fileCrypto.openDecryptingChannel(encrypted, keyPair.getPrivateKey())) {
+            ByteBuffer buffer = ByteBuffer.allocate(100);
+            assertEquals(100, channel.read(buffer));
+            assertArrayEquals(new byte[100], buffer.array());
+
+            buffer.clear();
+            channel.position(data.length - 100);
+            try {
+                channel.read(buffer);
+                fail();
+            } catch (IOException e) {
+                // Second chunk is tampered
+            }
+        }
+
+        Files.write(encrypted, Arrays.copyOf(encryptedData, encryptedData.length - 1));
+        try {
+            fileCrypto.openDecryptingChannel(encrypted, keyPair.getPrivateKey());
+            fail();
+        } catch (DecryptionException e) {
+            // File is truncated
+        }
+    }
+
+    @Test(expected = EncryptionException.class)
+    public void encryptFile_missingFile() throws IOException, EncryptionException {
+        KeyPair keyPair = crypto.generateKeys();
+        Path in = folder.getRoot().toPath().resolve("missing");
+
+        fileCrypto.encryptFile(in, folder.newFile().toPath(), keyPair.getPublicKey());
+    }
+
+    @Test
+    public void generateKeys_bulk() throws CryptoException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<KeyPair> keyPairs = fileCrypto.generateKeys(KeysType.FAST_EC_ED25519, 50, pool);
+            assertEquals(50, keyPairs.size());
+            assertFalse(Arrays.equals(keyPairs.get(0).getPublicKey().getValue(),
+                    keyPairs.get(1).getPublicKey().getValue()));
+
+            byte[] data = "Test data".getBytes();
+            for (KeyPair keyPair : keyPairs) {
+                // Identifier matches the one calculated on import
+                assertArrayEquals(crypto.importPublicKey(keyPair.getPublicKey().getValue()).getId(),
+                        keyPair.getPublicKey().getId());
+                assertArrayEquals(data,
+                        crypto.decrypt(crypto.encrypt(data, keyPair.getPublicKey()), keyPair.getPrivateKey()));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue(fileCrypto.generateKeys(KeysType.FAST_EC_ED25519, 0, null).isEmpty());
+    }
+
+    @Test
+    public void signBatch_verifyBatch_parallel() throws CryptoException {
+        KeyPair keyPair = crypto.generateKeys();
+        List<byte[]> items = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            items.add((TEXT + i).getBytes());
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<byte[]> signatures = fileCrypto.signBatch(items, keyPair.getPrivateKey(), pool);
+
+            assertEquals(crypto.signBatch(items, keyPair.getPrivateKey()).size(), signatures.size());
+            assertTrue(fileCrypto.verifyBatch(items, signatures, keyPair.getPublicKey(), pool));
+
+            signatures.set(499, signatures.get(0));
+            assertFalse(fileCrypto.verifyBatch(items, signatures, keyPair.getPublicKey(), pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void signBatch_verifyBatch_callingThreadInWorker() throws Exception {
+        final KeyPair keyPair = crypto.generateKeys();
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        final List<byte[]> items = new ArrayList<byte[]>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public byte[] get(int index) {
+                threads.add(Thread.currentThread());
+                return super.get(index);
+            }
+        };
+        for (int i = 0; i < 500; i++) {
+            items.add((TEXT + i).getBytes());
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Without pool the batch stays on the calling thread, even if it's a pool worker
+            boolean valid = pool.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    List<byte[]> signatures = fileCrypto.signBatch(items, keyPair.getPrivateKey(), null);
+                    return fileCrypto.verifyBatch(items, signatures, keyPair.getPublicKey(), null);
+                }
+            }).get();
+
+            assertTrue(valid);
+            assertEquals(1, threads.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void sign_verify_file() throws IOException, CryptoException {
+        KeyPair keyPair = crypto.generateKeys();
+        byte[] data = new byte[17 * 1024 * 1024];
+        new Random().nextBytes(data);
+        Path file = folder.newFile().toPath();
+        Files.write(file, data);
+
+        byte[] signature = fileCrypto.sign(file, keyPair.getPrivateKey());
+
+        assertTrue(crypto.verify(data, signature, keyPair.getPublicKey()));
+        assertTrue(fileCrypto.verify(file, signature, keyPair.getPublicKey()));
+        assertFalse(fileCrypto.verify(file, signature, crypto.generateKeys().getPublicKey()));
+    }
+
+}
@@ -83,7 +83,7 @@ public class CryptoTest extends AndroidTestCase {
 
     public void testComputeHash_nullData() {
         try {
-            crypto.computeHash(null, HashAlgorithm.MD5);
+            crypto.computeHash((byte[]) null, HashAlgorithm.MD5);
         } catch (NullArgumentException e) {
             return;
         }
@@ -93,7 +93,7 @@ public class CryptoTest extends AndroidTestCase {
     public void testComputeHash() {
         try {
             for (HashAlgorithm algorithm : HashAlgorithm.values()) {
-                byte[] hash = crypto.computeHash(null, algorithm);
+                byte[] hash = crypto.computeHash((byte[]) null, algorithm);
 
                 assertNotNull(hash);
                 assertTrue(hash.length > 0);
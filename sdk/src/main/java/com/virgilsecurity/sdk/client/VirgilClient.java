@@ -387,11 +387,16 @@ public class VirgilClient extends ClientBase {
         if (this.cardValidator == null) {
             return;
         }
-        List<CardModel> invalidCards = new ArrayList<>();
-
-        for (CardModel card : cards) {
-            if (!this.cardValidator.validate(card)) {
-                invalidCards.add(card);
+        List<CardModel> invalidCards;
+
+        if (this.cardValidator instanceof BatchCardValidator) {
+            invalidCards = ((BatchCardValidator) this.cardValidator).findInvalidCards(cards);
+        } else {
+            invalidCards = new ArrayList<>();
+            for (CardModel card : cards) {
+                if (!this.cardValidator.validate(card)) {
+                    invalidCards.add(card);
+                }
             }
         }
 
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import com.virgilsecurity.sdk.client.BatchCardValidator;
+import com.virgilsecurity.sdk.client.model.CardModel;
+import com.virgilsecurity.sdk.crypto.Crypto;
+import com.virgilsecurity.sdk.crypto.PublicKey;
+import com.virgilsecurity.sdk.exception.NullArgumentException;
+
+/**
+ * {@link VirgilCardValidator} which verifies card signatures in parallel. Validation stops as soon as the first invalid
+ * signature is found.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class ParallelCardValidator extends VirgilCardValidator implements BatchCardValidator {
+
+    private Executor executor;
+
+    /**
+     * Create a new instance of {@code ParallelCardValidator}
+     *
+     * @param crypto
+     *            The crypto instance.
+     * @param executor
+     *            The executor signatures are verified on.
+     */
+    public ParallelCardValidator(Crypto crypto, Executor executor) {
+        super(crypto);
+
+        if (executor == null) {
+            throw new NullArgumentException("executor");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Create a new instance of {@code ParallelCardValidator} which remembers successfully verified signatures.
+     *
+     * @param crypto
+     *            The crypto instance.
+     * @param executor
+     *            The executor signatures are verified on.
+     * @param cacheCapacity
+     *            The maximum number of remembered signatures.
+     * 
+     * @see VirgilCardValidator#VirgilCardValidator(Crypto, int)
+     */
+    public ParallelCardValidator(Crypto crypto, Executor executor, int cacheCapacity) {
+        super(crypto, cacheCapacity);
+
+        if (executor == null) {
+            throw new NullArgumentException("executor");
+        }
+        this.executor = executor;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.virgilsecurity.sdk.utils.VirgilCardValidator#validate(com.virgilsecurity.sdk.client.model.CardModel)
+     */
+    @Override
+    public boolean validate(CardModel card) {
+        return findInvalidCards(Collections.singletonList(card)).isEmpty();
+    }
+
+    /**
+     * Validates the specified cards. Validation stops on the first invalid card, so the result contains only one card
+     * even if there are more invalid cards.
+     * 
+     * @see com.virgilsecurity.sdk.client.BatchCardValidator#findInvalidCards(java.util.Collection)
+     */
+    @Override
+    public List<CardModel> findInvalidCards(Collection<CardModel> cards) {
+        List<CardModel> invalidCards = new ArrayList<>();
+
+        CompletionService<CardModel> completionService = new ExecutorCompletionService<>(this.executor);
+        List<Future<CardModel>> futures = new ArrayList<>();
+        try {
+            for (CardModel card : cards) {
+                // Support for legacy Cards.
+                if (isLegacy(card)) {
+                    continue;
+                }
+
+                if (!submitSignatures(completionService, futures, card)) {
+                    invalidCards.add(card);
+                    return invalidCards;
+                }
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                CardModel invalidCard = completionService.take().get();
+                if (invalidCard != null) {
+                    invalidCards.add(invalidCard);
+                    return invalidCards;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Card validation was interrupted", e);
+        } catch (ExecutionException e) {
+            // Unchecked failures are thrown as is, like VirgilCardValidator does
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Card validation failed", cause);
+        } finally {
+            for (Future<CardModel> future : futures) {
+                future.cancel(false);
+            }
+        }
+
+        return invalidCards;
+    }
+
+    /**
+     * Submit verification of all signatures which should be verified to consider the card as valid.
+     * 
+     * @return {@code false} if the card is invalid regardless of signatures.
+     */
+    private boolean submitSignatures(CompletionService<CardModel> completionService, List<Future<CardModel>> futures,
+            CardModel card) {
+        byte[] fingerprint = fingerprint(card);
+        if (fingerprint == null) {
+            return false;
+        }
+        String cardId = card.getId();
+        Map<String, byte[]> cardSignatures = card.getMeta().getSignatures();
+        VerifierSet verifiers = verifiers();
+        for (int i = 0; i < verifiers.size(); i++) {
+            String verifierId = verifiers.id(i);
+            if (verifierId.equals(cardId)) {
+                continue;
+            }
+            byte[] signature = cardSignatures.get(verifierId);
+            if (signature == null) {
+                return false;
+            }
+            futures.add(completionService
+                    .submit(new VerifyTask(card, fingerprint, verifierId, signature, verifiers.key(i), null)));
+        }
+
+        // add self signature
+        byte[] selfSignature = cardSignatures.get(cardId);
+        if (selfSignature == null) {
+            return false;
+        }
+        byte[] publicKeyData = card.getSnapshotModel().getPublicKeyData();
+        futures.add(completionService
+                .submit(new VerifyTask(card, fingerprint, cardId, selfSignature, null, publicKeyData)));
+        return true;
+    }
+
+    private class VerifyTask implements Callable<CardModel> {
+
+        private final CardModel card;
+        private final byte[] fingerprint;
+        private final String signerId;
+        private final byte[] signature;
+        private final PublicKey signer;
+        private final byte[] selfKeyData;
+
+        /**
+         * @param signer
+         *            the signer's public key, or {@code null} for the card self signature.
+         * @param selfKeyData
+         *            the card's public key data for the card self signature.
+         */
+        VerifyTask(CardModel card, byte[] fingerprint, String signerId, byte[] signature, PublicKey signer,
+                byte[] selfKeyData) {
+            this.card = card;
+            this.fingerprint = fingerprint;
+            this.signerId = signerId;
+            this.signature = signature;
+            this.signer = signer;
+            this.selfKeyData = selfKeyData;
+        }
+
+        /**
+         * @return the card if signature is invalid, {@code null} otherwise.
+         */
+        @Override
+        public CardModel call() {
+            boolean isValid = (this.signer == null)
+                    ? verifySelfSignature(this.signerId, this.fingerprint, this.signature, this.selfKeyData)
+                    : verify(this.card.getId(), this.signerId, this.fingerprint, this.signature, this.signer);
+            return isValid ? null : this.card;
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.utils;
+
+import java.util.Arrays;
+
+import com.virgilsecurity.sdk.crypto.LruCache;
+
+/**
+ * Bounded cache of successful card signature verifications. Card snapshots are immutable, so once a signature of the
+ * card was verified with the signer's public key, it stays valid for that key.
+ * 
+ * Least recently used verifications are evicted when the cache is full. See {@link LruCache} for details.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VerificationCache {
+
+    private final LruCache<Key, Boolean> verifications;
+
+    /**
+     * Create a new instance of {@code VerificationCache}
+     *
+     * @param capacity
+     *            the maximum number of cached verifications.
+     */
+    public VerificationCache(int capacity) {
+        this.verifications = new LruCache<>(capacity);
+    }
+
+    /**
+     * @return the maximum number of cached verifications.
+     */
+    public int getCapacity() {
+        return verifications.capacity();
+    }
+
+    /**
+     * @return the number of cached verifications.
+     */
+    public int size() {
+        return verifications.size();
+    }
+
+    /**
+     * @return the number of lookups which found a cached verification.
+     */
+    public long getHits() {
+        return verifications.hits();
+    }
+
+    /**
+     * @return the number of lookups which didn't find a cached verification.
+     */
+    public long getMisses() {
+        return verifications.misses();
+    }
+
+    /**
+     * Remove all cached verifications.
+     */
+    public void clear() {
+        verifications.clear();
+    }
+
+    /**
+     * @param cardId
+     *            the card identifier.
+     * @param signerId
+     *            the signer's card identifier.
+     * @param signature
+     *            the signature of the card fingerprint.
+     * @param signerKey
+     *            the signer's public key data.
+     * @return {@code true} if the signature was successfully verified before.
+     */
+    boolean contains(String cardId, String signerId, byte[] signature, byte[] signerKey) {
+        // Lookup moves the verification to the end of eviction order
+        return verifications.get(new Key(cardId, signerId, signature, signerKey)) != null;
+    }
+
+    /**
+     * Remember successfully verified signature.
+     * 
+     * @param cardId
+     *            the card identifier.
+     * @param signerId
+     *            the signer's card identifier.
+     * @param signature
+     *            the signature of the card fingerprint.
+     * @param signerKey
+     *            the signer's public key data.
+     */
+    void put(String cardId, String signerId, byte[] signature, byte[] signerKey) {
+        verifications.put(new Key(cardId, signerId, signature, signerKey), Boolean.TRUE);
+    }
+
+    /**
+     * Verification is identified by the signer's public key as well, so a verification which was started before the
+     * verifier key was replaced never matches signatures checked with the new key.
+     */
+    private static final class Key {
+
+        private final String cardId;
+        private final String signerId;
+        private final byte[] signature;
+        private final byte[] signerKey;
+        private final int hash;
+
+        Key(String cardId, String signerId, byte[] signature, byte[] signerKey) {
+            this.cardId = cardId;
+            this.signerId = signerId;
+            this.signature = signature;
+            this.signerKey = signerKey;
+            this.hash = 31 * (31 * (31 * cardId.hashCode() + signerId.hashCode()) + Arrays.hashCode(this.signature))
+                    + Arrays.hashCode(this.signerKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && cardId.equals(other.cardId) && signerId.equals(other.signerId)
+                    && Arrays.equals(signature, other.signature) && Arrays.equals(signerKey, other.signerKey);
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.utils;
+
+import java.util.Arrays;
+
+import com.virgilsecurity.sdk.crypto.PublicKey;
+
+/**
+ * Immutable set of signature verifiers. Verifiers are stored in plain arrays, so walking them during card validation
+ * doesn't allocate anything.
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+final class VerifierSet {
+
+    static final VerifierSet EMPTY = new VerifierSet(new String[0], new PublicKey[0]);
+
+    private final String[] ids;
+    private final PublicKey[] keys;
+
+    private VerifierSet(String[] ids, PublicKey[] keys) {
+        this.ids = ids;
+        this.keys = keys;
+    }
+
+    /**
+     * @return the number of verifiers.
+     */
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * @param index
+     *            the verifier index.
+     * @return the verifier identifier.
+     */
+    String id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @param index
+     *            the verifier index.
+     * @return the verifier public key.
+     */
+    PublicKey key(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Create a new set which contains all verifiers of this set and the specified one. If this set already contains a
+     * verifier with the same identifier, its key is replaced.
+     * 
+     * @param id
+     *            the verifier identifier.
+     * @param key
+     *            the verifier public key.
+     * @return the new verifier set.
+     */
+    VerifierSet with(String id, PublicKey key) {
+        int index = indexOf(id);
+        if (index >= 0) {
+            PublicKey[] newKeys = keys.clone();
+            newKeys[index] = key;
+            return new VerifierSet(ids, newKeys);
+        }
+        String[] newIds = Arrays.copyOf(ids, ids.length + 1);
+        PublicKey[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+        newIds[ids.length] = id;
+        newKeys[keys.length] = key;
+        return new VerifierSet(newIds, newKeys);
+    }
+
+    /**
+     * Create a new set which contains all verifiers of this set except the specified one.
+     * 
+     * @param id
+     *            the verifier identifier.
+     * @return the new verifier set, or this set if it doesn't contain the verifier.
+     */
+    VerifierSet without(String id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return this;
+        }
+        String[] newIds = new String[ids.length - 1];
+        PublicKey[] newKeys = new PublicKey[keys.length - 1];
+        System.arraycopy(ids, 0, newIds, 0, index);
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(ids, index + 1, newIds, index, ids.length - index - 1);
+        System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+        return new VerifierSet(newIds, newKeys);
+    }
+
+    private int indexOf(String id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i].equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
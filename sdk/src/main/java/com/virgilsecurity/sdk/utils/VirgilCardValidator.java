@@ -29,15 +29,13 @@
  */
 package com.virgilsecurity.sdk.utils;
 
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import com.virgilsecurity.sdk.client.CardValidator;
 import com.virgilsecurity.sdk.client.model.CardModel;
 import com.virgilsecurity.sdk.crypto.Crypto;
-import com.virgilsecurity.sdk.crypto.Fingerprint;
 import com.virgilsecurity.sdk.crypto.PublicKey;
+import com.virgilsecurity.sdk.crypto.PublicKeyPreparer;
 import com.virgilsecurity.sdk.crypto.exceptions.CryptoException;
 import com.virgilsecurity.sdk.exception.EmptyArgumentException;
 
@@ -48,11 +46,19 @@ import com.virgilsecurity.sdk.exception.EmptyArgumentException;
  */
 public class VirgilCardValidator implements CardValidator {
 
+    /**
+     * The identifier of Virgil Cards Service card which signs all published cards.
+     */
+    public final static String SERVICE_CARD_ID = "3e29d43373348cfb373b7eae189214dc01d7237765e572db685839b64adca853";
+
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
     private Crypto crypto;
 
-    private Map<String, PublicKey> verifiers;
+    private volatile VerifierSet verifiers;
+
+    private VerificationCache verificationCache;
 
-    private final static String SERVICE_CARD_ID = "3e29d43373348cfb373b7eae189214dc01d7237765e572db685839b64adca853";
     private final static String SERVICE_PUBLIC_KEY = "LS0tLS1CRUdJTiBQVUJMSUMgS0VZLS0tLS0KTUNvd0JRWURLMlZ3QXlFQVlSNTAx"
             + "a1YxdFVuZTJ1T2RrdzRrRXJSUmJKcmMyU3lhejVWMWZ1RytyVnM9Ci0tLS0tRU5E" + "IFBVQkxJQyBLRVktLS0tLQo=";
 
@@ -67,8 +73,21 @@ public class VirgilCardValidator implements CardValidator {
 
         PublicKey servicePublicKey = crypto.importPublicKey(ConvertionUtils.base64ToBytes(SERVICE_PUBLIC_KEY));
 
-        this.verifiers = new HashMap<>();
-        this.verifiers.put(SERVICE_CARD_ID, servicePublicKey);
+        this.verifiers = VerifierSet.EMPTY.with(SERVICE_CARD_ID, prepare(servicePublicKey));
+    }
+
+    /**
+     * Create a new instance of {@code VirgilCardValidator} which remembers successfully verified signatures, so
+     * repeated validation of the same card doesn't verify signatures again.
+     *
+     * @param crypto
+     *            The crypto instance.
+     * @param cacheCapacity
+     *            The maximum number of remembered signatures.
+     */
+    public VirgilCardValidator(Crypto crypto, int cacheCapacity) {
+        this(crypto);
+        this.verificationCache = new VerificationCache(cacheCapacity);
     }
 
     /**
@@ -79,7 +98,7 @@ public class VirgilCardValidator implements CardValidator {
      * @param verifierPublicKey
      *            the verifier public key.
      */
-    public void addVerifier(String verifierId, byte[] verifierPublicKey) {
+    public synchronized void addVerifier(String verifierId, byte[] verifierPublicKey) {
         if (StringUtils.isBlank(verifierId)) {
             throw new EmptyArgumentException("verifierId");
         }
@@ -89,7 +108,31 @@ public class VirgilCardValidator implements CardValidator {
         }
 
         PublicKey publicKey = this.crypto.importPublicKey(verifierPublicKey);
-        this.verifiers.put(verifierId, publicKey);
+        this.verifiers = this.verifiers.with(verifierId, prepare(publicKey));
+
+        if (this.verificationCache != null) {
+            this.verificationCache.clear();
+        }
+    }
+
+    /**
+     * Removes the signature verifier. Use {@link #SERVICE_CARD_ID} to skip Virgil Cards Service signature verification,
+     * e.g. for cards published with a private Virgil Cards Service instance.
+     * 
+     * @param verifierId
+     *            the verifier identifier.
+     */
+    public synchronized void removeVerifier(String verifierId) {
+        this.verifiers = this.verifiers.without(verifierId);
+    }
+
+    /**
+     * Gets the verification cache.
+     * 
+     * @return the verification cache, or {@code null} if cache is not used.
+     */
+    public VerificationCache getVerificationCache() {
+        return verificationCache;
     }
 
     /*
@@ -100,39 +143,158 @@ public class VirgilCardValidator implements CardValidator {
     @Override
     public boolean validate(CardModel card) {
         // Support for legacy Cards.
-        if ("3.0".equals(card.getMeta().getVersion())) {
+        if (isLegacy(card)) {
             return true;
         }
 
-        Fingerprint fingerprint = this.crypto.calculateFingerprint(card.getSnapshot());
-        String fingerprintHex = fingerprint.toHex();
-
-        if (!fingerprintHex.equals(card.getId())) {
+        byte[] fingerprint = fingerprint(card);
+        if (fingerprint == null) {
             return false;
         }
+        String cardId = card.getId();
+        Map<String, byte[]> cardSignatures = card.getMeta().getSignatures();
+        VerifierSet currentVerifiers = this.verifiers;
+        for (int i = 0; i < currentVerifiers.size(); i++) {
+            String verifierId = currentVerifiers.id(i);
+            if (verifierId.equals(cardId)) {
+                continue;
+            }
+            byte[] signature = cardSignatures.get(verifierId);
+            if (signature == null || !verify(cardId, verifierId, fingerprint, signature, currentVerifiers.key(i))) {
+                return false;
+            }
+        }
 
-        // add self signature verifier
-        Map<String, PublicKey> allVerifiers = new HashMap<>(verifiers);
-        allVerifiers.put(fingerprintHex, this.crypto.importPublicKey(card.getSnapshotModel().getPublicKeyData()));
+        // verify self signature
+        byte[] selfSignature = cardSignatures.get(cardId);
+        return selfSignature != null
+                && verifySelfSignature(cardId, fingerprint, selfSignature, card.getSnapshotModel().getPublicKeyData());
+    }
 
-        for (Entry<String, PublicKey> verifier : allVerifiers.entrySet()) {
+    /**
+     * @param card
+     *            the card.
+     * @return {@code true} if card was created with legacy version of Virgil Cards Service and couldn't be validated.
+     */
+    boolean isLegacy(CardModel card) {
+        return "3.0".equals(card.getMeta().getVersion());
+    }
 
-            if (!card.getMeta().getSignatures().containsKey(verifier.getKey())) {
-                return false;
+    /**
+     * @return the current signature verifiers.
+     */
+    VerifierSet verifiers() {
+        return this.verifiers;
+    }
+
+    /**
+     * Calculate the card fingerprint and check that the card identifier matches it.
+     * 
+     * @param card
+     *            the card.
+     * @return the card fingerprint, or {@code null} if the card identifier doesn't match the fingerprint.
+     */
+    byte[] fingerprint(CardModel card) {
+        byte[] fingerprint = this.crypto.calculateFingerprint(card.getSnapshot()).getValue();
+        return isHex(card.getId(), fingerprint) ? fingerprint : null;
+    }
+
+    /**
+     * Verify card signature.
+     * 
+     * @param cardId
+     *            the card identifier.
+     * @param signerId
+     *            the signer's card identifier.
+     * @param fingerprint
+     *            the card fingerprint.
+     * @param signature
+     *            the signature of the fingerprint.
+     * @param signer
+     *            the signer's public key.
+     * @return {@code true} if signature is valid.
+     */
+    boolean verify(String cardId, String signerId, byte[] fingerprint, byte[] signature, PublicKey signer) {
+        VerificationCache cache = this.verificationCache;
+        if (cache != null && cache.contains(cardId, signerId, signature, signer.getValue())) {
+            return true;
+        }
+        return verifyAndRemember(cardId, signerId, fingerprint, signature, signer);
+    }
+
+    /**
+     * Verify the card signature made with the card's own key. The key is wrapped only if the signature wasn't verified
+     * before.
+     * 
+     * @param cardId
+     *            the card identifier.
+     * @param fingerprint
+     *            the card fingerprint.
+     * @param signature
+     *            the self signature of the fingerprint.
+     * @param publicKeyData
+     *            the card's public key data.
+     * @return {@code true} if signature is valid.
+     */
+    boolean verifySelfSignature(String cardId, byte[] fingerprint, byte[] signature, byte[] publicKeyData) {
+        VerificationCache cache = this.verificationCache;
+        if (cache != null && cache.contains(cardId, cardId, signature, publicKeyData)) {
+            return true;
+        }
+        return verifyAndRemember(cardId, cardId, fingerprint, signature, new CardPublicKey(publicKeyData));
+    }
+
+    private boolean verifyAndRemember(String cardId, String signerId, byte[] fingerprint, byte[] signature,
+            PublicKey signer) {
+        try {
+            boolean isValid = this.crypto.verify(fingerprint, signature, signer);
+            VerificationCache cache = this.verificationCache;
+            if (isValid && cache != null) {
+                cache.put(cardId, signerId, signature, signer.getValue());
             }
+            return isValid;
+        } catch (CryptoException e) {
+            return false;
+        }
+    }
 
+    /**
+     * Prepare verifier public key for repeated signature verification, if crypto supports it.
+     * 
+     * @param publicKey
+     *            the public key.
+     * @return the prepared public key, or the same key if it couldn't be prepared.
+     */
+    private PublicKey prepare(PublicKey publicKey) {
+        if (this.crypto instanceof PublicKeyPreparer) {
             try {
-                boolean isValid = this.crypto.verify(fingerprint.getValue(),
-                        card.getMeta().getSignatures().get(verifier.getKey()), verifier.getValue());
-
-                if (!isValid) {
-                    return false;
-                }
+                return ((PublicKeyPreparer) this.crypto).preparePublicKey(publicKey);
             } catch (CryptoException e) {
-                return false;
+                return publicKey;
             }
         }
+        return publicKey;
+    }
 
+    /**
+     * Check that the string is a lowercase hex representation of the bytes, without converting bytes to a string.
+     * 
+     * @param hex
+     *            the hex string.
+     * @param bytes
+     *            the bytes.
+     * @return {@code true} if hex string represents the bytes.
+     */
+    private static boolean isHex(String hex, byte[] bytes) {
+        if (hex == null || hex.length() != bytes.length * 2) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            if (hex.charAt(2 * i) != HEX_CHARS[b >>> 4] || hex.charAt(2 * i + 1) != HEX_CHARS[b & 0x0F]) {
+                return false;
+            }
+        }
         return true;
     }
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.virgilsecurity.sdk.client.model.CardModel;
+import com.virgilsecurity.sdk.client.model.CardScope;
+import com.virgilsecurity.sdk.client.model.dto.PublishCardSnapshotModel;
+import com.virgilsecurity.sdk.crypto.Crypto;
+import com.virgilsecurity.sdk.crypto.Fingerprint;
+import com.virgilsecurity.sdk.crypto.KeyPair;
+import com.virgilsecurity.sdk.crypto.PublicKey;
+import com.virgilsecurity.sdk.crypto.VirgilCrypto;
+import com.virgilsecurity.sdk.crypto.exceptions.VerificationException;
+import com.virgilsecurity.sdk.exception.NullArgumentException;
+
+/**
+ * Unit tests for {@link ParallelCardValidator}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class ParallelCardValidatorTest {
+
+    private Crypto crypto;
+    private KeyPair appKeyPair;
+    private String appCardId;
+    private ExecutorService executor;
+    private ParallelCardValidator validator;
+
+    @Before
+    public void setUp() {
+        crypto = new VirgilCrypto();
+        appKeyPair = crypto.generateKeys();
+        appCardId = "1ef2e45f6100792bc600828f1425b27ce7655a80543118f375bd894d7313aa00";
+        executor = Executors.newFixedThreadPool(4);
+
+        validator = createValidator(0);
+    }
+
+    /**
+     * Production service private key is not available, so service signature is not verified.
+     */
+    private ParallelCardValidator createValidator(int cacheCapacity) {
+        ParallelCardValidator validator;
+        if (cacheCapacity > 0) {
+            validator = new ParallelCardValidator(crypto, executor, cacheCapacity);
+        } else {
+            validator = new ParallelCardValidator(crypto, executor);
+        }
+        validator.removeVerifier(VirgilCardValidator.SERVICE_CARD_ID);
+        validator.addVerifier(appCardId, crypto.exportPublicKey(appKeyPair.getPublicKey()));
+        return validator;
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void validate() {
+        assertTrue(validator.validate(createCard()));
+    }
+
+    @Test
+    public void validate_legacyCard() {
+        CardModel card = new CardModel();
+        card.getMeta().setVersion("3.0");
+
+        assertTrue(validator.validate(card));
+    }
+
+    @Test
+    public void validate_wrongId() {
+        CardModel card = createCard();
+        card.setId(appCardId);
+
+        assertFalse(validator.validate(card));
+    }
+
+    @Test
+    public void validate_missingSignature() {
+        CardModel card = createCard();
+        card.getMeta().getSignatures().remove(appCardId);
+
+        assertFalse(validator.validate(card));
+    }
+
+    @Test
+    public void validate_invalidSignature() {
+        CardModel card = createCard();
+        card.getMeta().getSignatures().put(appCardId, card.getMeta().getSignatures().get(card.getId()));
+
+        assertFalse(validator.validate(card));
+    }
+
+    @Test
+    public void findInvalidCards() {
+        List<CardModel> cards = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            cards.add(createCard());
+        }
+        assertTrue(validator.findInvalidCards(cards).isEmpty());
+
+        CardModel invalidCard = cards.get(25);
+        invalidCard.getMeta().getSignatures().put(appCardId, cards.get(0).getMeta().getSignatures().get(appCardId));
+
+        List<CardModel> invalidCards = validator.findInvalidCards(cards);
+        assertEquals(1, invalidCards.size());
+        assertSame(invalidCard, invalidCards.get(0));
+    }
+
+    @Test
+    public void validate_cached() {
+        ParallelCardValidator cachedValidator = createValidator(100);
+        CardModel card = createCard();
+
+        assertTrue(cachedValidator.validate(card));
+        assertEquals(0, cachedValidator.getVerificationCache().getHits());
+        assertEquals(2, cachedValidator.getVerificationCache().getMisses());
+        assertEquals(2, cachedValidator.getVerificationCache().size());
+
+        assertTrue(cachedValidator.validate(card));
+        assertEquals(2, cachedValidator.getVerificationCache().getHits());
+
+        card.getMeta().getSignatures().put(appCardId, createCard().getMeta().getSignatures().get(appCardId));
+        assertFalse(cachedValidator.validate(card));
+        assertEquals(2, cachedValidator.getVerificationCache().size());
+    }
+
+    @Test
+    public void validate_cached_verifierReplacedDuringVerification() throws Exception {
+        final CountDownLatch verifying = new CountDownLatch(1);
+        final CountDownLatch replaced = new CountDownLatch(1);
+        final byte[] appPublicKey = crypto.exportPublicKey(appKeyPair.getPublicKey());
+        crypto = new VirgilCrypto() {
+            @Override
+            public boolean verify(byte[] data, byte[] signature, PublicKey signer) throws VerificationException {
+                boolean valid = super.verify(data, signature, signer);
+                if (Arrays.equals(appPublicKey, signer.getValue()) && verifying.getCount() > 0) {
+                    // Verification with the old key completes after the key is replaced
+                    verifying.countDown();
+                    try {
+                        replaced.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return valid;
+            }
+        };
+        final ParallelCardValidator cachedValidator = createValidator(100);
+        final CardModel card = createCard();
+
+        Future<Boolean> valid = executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return cachedValidator.validate(card);
+            }
+        });
+        verifying.await();
+        cachedValidator.addVerifier(appCardId, crypto.exportPublicKey(crypto.generateKeys().getPublicKey()));
+        replaced.countDown();
+
+        assertTrue(valid.get());
+        assertFalse(cachedValidator.validate(card));
+    }
+
+    @Test(expected = NullArgumentException.class)
+    public void validate_verificationFailed() {
+        CardModel card = createCard();
+        crypto = new VirgilCrypto() {
+            @Override
+            public boolean verify(byte[] data, byte[] signature, PublicKey signer) throws VerificationException {
+                throw new NullArgumentException("signer");
+            }
+        };
+
+        // Same exception as sequential validation throws
+        createValidator(0).validate(card);
+    }
+
+    private CardModel createCard() {
+        KeyPair keyPair = crypto.generateKeys();
+
+        PublishCardSnapshotModel snapshotModel = new PublishCardSnapshotModel();
+        snapshotModel.setIdentity("alice");
+        snapshotModel.setIdentityType("username");
+        snapshotModel.setScope(CardScope.APPLICATION);
+        snapshotModel.setPublicKeyData(crypto.exportPublicKey(keyPair.getPublicKey()));
+
+        byte[] snapshot = ConvertionUtils.captureSnapshot(snapshotModel);
+        Fingerprint fingerprint = crypto.calculateFingerprint(snapshot);
+
+        CardModel card = new CardModel();
+        card.setSnapshot(snapshot);
+        card.setId(fingerprint.toHex());
+        card.getMeta().setVersion("4.0");
+
+        Map<String, byte[]> signatures = new HashMap<>();
+        signatures.put(card.getId(), crypto.sign(fingerprint.getValue(), keyPair.getPrivateKey()));
+        signatures.put(appCardId, crypto.sign(fingerprint.getValue(), appKeyPair.getPrivateKey()));
+        card.getMeta().setSignatures(signatures);
+
+        return card;
+    }
+
+}
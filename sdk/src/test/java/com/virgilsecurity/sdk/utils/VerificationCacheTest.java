@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016, Virgil Security, Inc.
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of virgil nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.virgilsecurity.sdk.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link VerificationCache}
+ *
+ * @author Andrii Iakovenko
+ *
+ */
+public class VerificationCacheTest {
+
+    private static final byte[] SIGNER_KEY = new byte[] { 7 };
+
+    private VerificationCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new VerificationCache(10);
+    }
+
+    @Test
+    public void contains() {
+        assertFalse(cache.contains("card", "signer", new byte[] { 1, 2, 3 }, SIGNER_KEY));
+
+        cache.put("card", "signer", new byte[] { 1, 2, 3 }, SIGNER_KEY);
+
+        assertTrue(cache.contains("card", "signer", new byte[] { 1, 2, 3 }, new byte[] { 7 }));
+        assertFalse(cache.contains("card", "signer", new byte[] { 1, 2, 4 }, SIGNER_KEY));
+        assertFalse(cache.contains("card", "other", new byte[] { 1, 2, 3 }, SIGNER_KEY));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void put_bounded() {
+        for (int i = 0; i < 100; i++) {
+            cache.put("card" + i, "signer", new byte[] { 1 }, SIGNER_KEY);
+        }
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        cache = new VerificationCache(1000);
+        cache.put("used", "signer", new byte[] { 1 }, SIGNER_KEY);
+        for (int i = 0; i < 10000; i++) {
+            cache.put("card" + i, "signer", new byte[] { 1 }, SIGNER_KEY);
+
+            // Recently added and recently used verifications are never evicted
+            assertTrue(cache.contains("card" + i, "signer", new byte[] { 1 }, SIGNER_KEY));
+            assertTrue(cache.contains("used", "signer", new byte[] { 1 }, SIGNER_KEY));
+            assertTrue(cache.size() <= 1000);
+        }
+        assertEquals(1000, cache.size());
+    }
+
+    @Test
+    public void contains_otherSignerKey() {
+        cache.put("card", "signer", new byte[] { 1, 2, 3 }, SIGNER_KEY);
+
+        assertFalse(cache.contains("card", "signer", new byte[] { 1, 2, 3 }, new byte[] { 8 }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_zeroCapacity() {
+        new VerificationCache(0);
+    }
+
+}
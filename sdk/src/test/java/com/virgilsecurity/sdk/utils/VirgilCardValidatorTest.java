@@ -29,6 +29,7 @@
  */
 package com.virgilsecurity.sdk.utils;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
@@ -39,7 +40,11 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import com.virgilsecurity.sdk.client.model.CardModel;
+import com.virgilsecurity.sdk.client.model.CardScope;
+import com.virgilsecurity.sdk.client.model.dto.PublishCardSnapshotModel;
 import com.virgilsecurity.sdk.crypto.Crypto;
+import com.virgilsecurity.sdk.crypto.Fingerprint;
+import com.virgilsecurity.sdk.crypto.KeyPair;
 import com.virgilsecurity.sdk.crypto.VirgilCrypto;
 import com.virgilsecurity.sdk.utils.ConvertionUtils;
 import com.virgilsecurity.sdk.utils.VirgilCardValidator;
@@ -96,4 +101,62 @@ public class VirgilCardValidatorTest {
 		assertTrue(validator.validate(card));
 	}
 
+	@Test
+	public void validate_withoutServiceVerifier() {
+		KeyPair appKeyPair = crypto.generateKeys();
+		String appCardId = "1ef2e45f6100792bc600828f1425b27ce7655a80543118f375bd894d7313aa00";
+
+		VirgilCardValidator validator = new VirgilCardValidator(crypto);
+		validator.removeVerifier(VirgilCardValidator.SERVICE_CARD_ID);
+		validator.addVerifier(appCardId, crypto.exportPublicKey(appKeyPair.getPublicKey()));
+
+		CardModel card = createCard(appCardId, appKeyPair);
+		assertTrue(validator.validate(card));
+
+		card.getMeta().getSignatures().remove(card.getId());
+		assertFalse(validator.validate(card));
+	}
+
+	@Test
+	public void validate_idNotMatchFingerprint() {
+		KeyPair appKeyPair = crypto.generateKeys();
+		String appCardId = "1ef2e45f6100792bc600828f1425b27ce7655a80543118f375bd894d7313aa00";
+
+		VirgilCardValidator validator = new VirgilCardValidator(crypto);
+		validator.removeVerifier(VirgilCardValidator.SERVICE_CARD_ID);
+		validator.addVerifier(appCardId, crypto.exportPublicKey(appKeyPair.getPublicKey()));
+
+		CardModel card = createCard(appCardId, appKeyPair);
+		card.setId(card.getId().toUpperCase());
+		assertFalse(validator.validate(card));
+
+		card.setId(card.getId().substring(2));
+		assertFalse(validator.validate(card));
+	}
+
+	private CardModel createCard(String appCardId, KeyPair appKeyPair) {
+		KeyPair keyPair = crypto.generateKeys();
+
+		PublishCardSnapshotModel snapshotModel = new PublishCardSnapshotModel();
+		snapshotModel.setIdentity("alice");
+		snapshotModel.setIdentityType("username");
+		snapshotModel.setScope(CardScope.APPLICATION);
+		snapshotModel.setPublicKeyData(crypto.exportPublicKey(keyPair.getPublicKey()));
+
+		byte[] snapshot = ConvertionUtils.captureSnapshot(snapshotModel);
+		Fingerprint fingerprint = crypto.calculateFingerprint(snapshot);
+
+		CardModel card = new CardModel();
+		card.setSnapshot(snapshot);
+		card.setId(fingerprint.toHex());
+		card.getMeta().setVersion("4.0");
+
+		Map<String, byte[]> signatures = new HashMap<>();
+		signatures.put(card.getId(), crypto.sign(fingerprint.getValue(), keyPair.getPrivateKey()));
+		signatures.put(appCardId, crypto.sign(fingerprint.getValue(), appKeyPair.getPrivateKey()));
+		card.getMeta().setSignatures(signatures);
+
+		return card;
+	}
+
 }